@@ -0,0 +1,141 @@
+<?php
+// Registro de cambios para leer.php?since=: cada escritura apunta la tabla y el id de la fila tocada.
+// El id autoincremental de "cambios" hace de versión; el cliente guarda la última que vio y pide solo lo posterior.
+// La misma versión es el ETag de leer.php y estadisticas.php, así que toda escritura tiene que registrarse en la
+// misma transacción que el cambio: asegurarTabla(), begin_transaction, la escritura, registrar() y commit.
+class Cambios
+{
+	private $tabla = "cambios";
+	private $conn;
+
+	// Nombre en la API => tabla en MySQL, para las filas hijas que se borran en cascada
+	private $tablasSql = [
+		"usuarios" => "usuarios",
+		"areas" => "area",
+		"preguntas" => "pregunta",
+		"intentos" => "intentos",
+		"pxa" => "pxa",
+		"tests" => "test",
+		"centros" => "centros"
+	];
+
+	// Al borrar una fila pueden desaparecer otras que apuntan a ella, y a su vez las que apuntan a esas
+	private $dependientes = [
+		"usuarios" => ["intentos" => "idusuario"],
+		"tests" => ["preguntas" => "idtest", "intentos" => "idtest"],
+		"preguntas" => ["pxa" => "idpregunta"],
+		"areas" => ["pxa" => "idarea"]
+	];
+
+	public function __construct($db)
+	{
+		$this->conn = $db;
+	}
+
+	// Si no se puede registrar lanza mysqli_sql_exception, y quien lo llama deshace la escritura: un cambio sin
+	// registrar no llegaría por since= y leer.php seguiría contestando 304 con la versión anterior
+	function registrar($tabla, $ids, $operacion)
+	{
+		$ids = $this->idsValidos($ids);
+		if (count($ids) == 0) {
+			return;
+		}
+		$this->insertar($tabla, $ids, $operacion);
+	}
+
+	// Hay que llamarlo antes del DELETE: después ya no se sabe qué filas hijas tenía. Recorre toda la cascada:
+	// al borrar un test se registran sus preguntas y sus intentos, y también las pxa de esas preguntas
+	function registrarDependientes($tabla, $ids)
+	{
+		$ids = $this->idsValidos($ids);
+		if (count($ids) == 0 || !isset($this->dependientes[$tabla])) {
+			return;
+		}
+		foreach ($this->dependientes[$tabla] as $hija => $columna) {
+			$marcas = implode(",", array_fill(0, count($ids), "?"));
+			$stmt = $this->preparar("SELECT id FROM " . $this->tablasSql[$hija] . " WHERE " . $columna . " IN (" . $marcas . ")");
+			$stmt->bind_param(str_repeat("i", count($ids)), ...$ids);
+			$this->ejecutar($stmt);
+			$hijas = array();
+			$result = $stmt->get_result();
+			while ($fila = $result->fetch_assoc()) {
+				$hijas[] = $fila['id'];
+			}
+			$this->registrar($hija, $hijas, "borrar");
+			$this->registrarDependientes($hija, $hijas);
+		}
+	}
+
+	// Última versión registrada; 0 si todavía no hay registro de cambios
+	function version()
+	{
+		try {
+			$result = $this->conn->query("SELECT COALESCE(MAX(id), 0) AS version FROM " . $this->tabla);
+			return $result ? (int)$result->fetch_assoc()['version'] : 0;
+		} catch (mysqli_sql_exception $e) {
+			return 0;
+		}
+	}
+
+	// Ids de la tabla tocados entre las dos versiones (desde excluida, hasta incluida)
+	function idsCambiados($tabla, $desde, $hasta)
+	{
+		$stmt = $this->conn->prepare("SELECT DISTINCT idfila FROM " . $this->tabla . " WHERE tabla = ? AND id > ? AND id <= ?");
+		$stmt->bind_param("sii", $tabla, $desde, $hasta);
+		$stmt->execute();
+		$ids = array();
+		$result = $stmt->get_result();
+		while ($fila = $result->fetch_assoc()) {
+			$ids[] = (int)$fila['idfila'];
+		}
+		return $ids;
+	}
+
+	private function idsValidos($ids)
+	{
+		return array_values(array_filter(array_map('intval', (array)$ids), function ($id) {
+			return $id > 0;
+		}));
+	}
+
+	private function insertar($tabla, $ids, $operacion)
+	{
+		$stmt = $this->preparar("INSERT INTO " . $this->tabla . "(`tabla`, `idfila`, `operacion`) VALUES(?,?,?)");
+		$idfila = 0;
+		$stmt->bind_param("sis", $tabla, $idfila, $operacion);
+		foreach ($ids as $idfila) {
+			$this->ejecutar($stmt);
+		}
+	}
+
+	// Sin MYSQLI_REPORT_STRICT prepare y execute no lanzan: se convierte en la misma excepción
+	private function preparar($sql)
+	{
+		$stmt = $this->conn->prepare($sql);
+		if ($stmt === false) {
+			throw new mysqli_sql_exception($this->conn->error, $this->conn->errno);
+		}
+		return $stmt;
+	}
+
+	private function ejecutar($stmt)
+	{
+		if (!$stmt->execute()) {
+			throw new mysqli_sql_exception($stmt->error, $stmt->errno);
+		}
+	}
+
+	// CREATE TABLE confirma la transacción abierta: hay que llamarlo antes de begin_transaction
+	function asegurarTabla()
+	{
+		$this->conn->query("CREATE TABLE IF NOT EXISTS " . $this->tabla . " (
+			`id` BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+			`tabla` VARCHAR(32) NOT NULL,
+			`idfila` INT NOT NULL,
+			`operacion` VARCHAR(16) NOT NULL,
+			`fecha` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+			INDEX `tabla_version` (`tabla`, `id`)
+		)");
+	}
+}
+?>
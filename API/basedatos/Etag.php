@@ -0,0 +1,26 @@
+<?php
+// Respuestas condicionales de las lecturas (leer.php, estadisticas.php): si el cliente ya tiene la versión
+// actual, se contesta 304 sin cuerpo
+
+// If-None-Match puede traer varias etiquetas separadas por comas, débiles (W/) o "*"
+function etagCoincide($etag)
+{
+    if (!isset($_SERVER['HTTP_IF_NONE_MATCH'])) {
+        return false;
+    }
+    foreach (explode(",", $_SERVER['HTTP_IF_NONE_MATCH']) as $candidata) {
+        $candidata = trim($candidata);
+        if ($candidata === "*" || $candidata === $etag || $candidata === "W/" . $etag) {
+            return true;
+        }
+    }
+    return false;
+}
+
+function responderNoModificado($etag)
+{
+    header("ETag: " . $etag);
+    http_response_code(304);
+    exit();
+}
+?>
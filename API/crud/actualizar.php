@@ -6,6 +6,7 @@ header("Access-Control-Max-Age: 3600");
 header("Access-Control-Allow-Headers: Content-Type");
 
 include_once '../basedatos/EscolaVision.php';
+include_once '../basedatos/Cambios.php';
 include_once '../tablas/Usuario.php'; // Cambié 'Alumnos.php' y 'Profesor.php' por 'Usuario.php'
 include_once '../tablas/Area.php';
 include_once '../tablas/Preguntas.php';
@@ -49,10 +50,20 @@ if (isset($datos['tabla']) && array_key_exists($datos['tabla'], $tables)) {
             $classInstance->{$key} = $value; 
         }
 
-        if ($classInstance->actualizar()) {
+        $cambios = new Cambios($conex);
+        $cambios->asegurarTabla();
+        // El cambio y su registro van juntos: sin registro, leer.php seguiría dando por buena la versión anterior
+        $conex->begin_transaction();
+        try {
+            if (!$classInstance->actualizar()) {
+                throw new mysqli_sql_exception($conex->error, $conex->errno);
+            }
+            $cambios->registrar($tabla, $id, "actualizar");
+            $conex->commit();
             http_response_code(200);
             $response["message"] = "El registro de la tabla " . ucfirst($tabla) . " fue actualizado con éxito.";
-        } else {
+        } catch (Exception $e) {
+            $conex->rollback();
             http_response_code(503);
             $response['status'] = "error";
             $response["message"] = "No se puede actualizar el registro en la tabla " . ucfirst($tabla) . ".";
@@ -8,6 +8,7 @@ error_reporting(E_ALL);
 header('Content-Type: text/html; charset=UTF-8');
 
 include_once '../basedatos/EscolaVision.php';
+include_once '../basedatos/Cambios.php';
 
 // Crear instancia de la conexión a la base de datos
 $database = new EscolaVision();
@@ -43,6 +44,10 @@ if (!isset($datos_json['Listado de centros'])) {
     die("No se encontró la clave 'Listado de centros' en el archivo JSON.");
 }
 
+// La tabla de cambios se crea fuera de las transacciones: un CREATE TABLE las confirmaría
+$cambios = new Cambios($conex);
+$cambios->asegurarTabla();
+
 // Preparar el lote de datos
 $batchSize = 1000; // Número de registros por lote para insertar
 $datosLote = []; // Almacena los datos por lote
@@ -94,18 +99,18 @@ foreach ($datos_json['Listado de centros'] as $centro) {
 
     // Si el lote alcanza el tamaño máximo, insertar los datos en la base de datos
     if (count($datosLote) >= $batchSize) {
-        insertarLote($conex, $datosLote);
+        insertarLote($conex, $cambios, $datosLote);
         $datosLote = []; // Limpiar el lote para el siguiente grupo de registros
     }
 }
 
 // Insertar cualquier dato restante que no haya sido procesado
 if (count($datosLote) > 0) {
-    insertarLote($conex, $datosLote);
+    insertarLote($conex, $cambios, $datosLote);
 }
 
 // Función para insertar un lote de datos en la base de datos
-function insertarLote($conex, $datosLote) {
+function insertarLote($conex, $cambios, $datosLote) {
     // Iniciar transacción
     $conex->begin_transaction();
 
@@ -114,6 +119,7 @@ function insertarLote($conex, $datosLote) {
         $query = "INSERT INTO centros (comunidad_autonoma, provincia, localidad, denominacion_generica, denominacion_especifica, codigo, naturaleza, domicilio, codigo_postal, telefono, telefono_secundario)
                   VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         $stmt = $conex->prepare($query);
+        $ids = [];
 
         foreach ($datosLote as $centro) {
             // Vincular los parámetros y ejecutar la consulta
@@ -131,8 +137,12 @@ function insertarLote($conex, $datosLote) {
                 $centro["telefono_secundario"]
             );
             $stmt->execute();
+            $ids[] = $stmt->insert_id;
         }
 
+        // Sin este registro leer.php seguiría sirviendo la versión anterior de centros con el mismo ETag
+        $cambios->registrar("centros", $ids, "insertar");
+
         // Confirmar la transacción
         $conex->commit();
     } catch (Exception $e) {
@@ -6,6 +6,7 @@ header("Access-Control-Max-Age: 3600");
 header("Access-Control-Allow-Headers: Content-Type");
 
 include_once '../basedatos/EscolaVision.php';
+include_once '../basedatos/Cambios.php';
 include_once '../tablas/Usuario.php'; // Cambié 'Alumnos.php' y 'Profesor.php' por 'Usuario.php'
 include_once '../tablas/Area.php';
 include_once '../tablas/Preguntas.php';
@@ -40,16 +41,24 @@ if (isset($datos['tabla']) && array_key_exists($datos['tabla'], $tables)) {
     // Verificar que se haya pasado un ID para la eliminación
     if (isset($datos['id'])) {
         $classInstance->id = $datos['id'];
+        $cambios = new Cambios($conex);
+        $cambios->asegurarTabla();
 
-        // Intentar borrar el registro
+        // Intentar borrar el registro, en una transacción con su registro de cambios
+        $conex->begin_transaction();
         try {
-            // Intentamos borrar el registro
-            if ($classInstance->borrar()) {
-                http_response_code(200);
-                $response["status"] = "success";  // Se añade status success
-                $response["message"] = "El registro con ID " . $classInstance->id . " fue borrado con éxito.";
+            // Las filas que se borran en cascada se apuntan antes de que desaparezcan
+            $cambios->registrarDependientes($tabla, (int)$datos['id']);
+            if (!$classInstance->borrar()) {
+                throw new mysqli_sql_exception($conex->error, $conex->errno);
             }
+            $cambios->registrar($tabla, $classInstance->id, "borrar");
+            $conex->commit();
+            http_response_code(200);
+            $response["status"] = "success";  // Se añade status success
+            $response["message"] = "El registro con ID " . $classInstance->id . " fue borrado con éxito.";
         } catch (Exception $e) {
+            $conex->rollback();
             http_response_code(503);
             $response["status"] = "error";  // Se añade status error
             $response["message"] = "Error al eliminar el registro: " . $e->getMessage();
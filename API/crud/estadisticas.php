@@ -0,0 +1,101 @@
+<?php
+header("Access-Control-Allow-Origin: *");
+header("Content-Type: application/json; charset=UTF-8");
+header("Access-Control-Allow-Methods: GET");
+header("Access-Control-Max-Age: 3600");
+// Como leer.php: se puede guardar, pero hay que revalidar con If-None-Match
+header("Cache-Control: no-cache");
+header("Access-Control-Allow-Headers: Content-Type");
+
+include_once '../basedatos/EscolaVision.php';
+include_once '../basedatos/Cambios.php';
+include_once '../basedatos/Etag.php';
+include_once '../tablas/Intentos.php';
+
+// Resumen de los intentos para los paneles de orientación, sin descargar los intentos uno a uno.
+// Filtros opcionales: id_centro, idtest, desde y hasta (AAAA-MM-DD, ambos incluidos).
+// Respuesta: {"version": 42, "areas": 5, "cubetas": {"desde": 0, "ancho": 1, "numero": 10},
+//             "grupos": [{"idtest": 1, "id_centro": 3, "mes": "2024-03", "intentos": 120,
+//                         "areas": [{"n": 120, "media": 6.25, "distribucion": [0, 2, ...]}, ...]}, ...]}
+// Las medias de varios grupos se combinan ponderando por n y las distribuciones se suman.
+
+$database = new EscolaVision();
+$conex = $database->dameConexion();
+
+// Los resultados van de 0 a 10: diez tramos de ancho 1
+$cubetas = 10;
+$maxAreas = 20;
+
+$id_centro = isset($_GET['id_centro']) ? filter_var($_GET['id_centro'], FILTER_VALIDATE_INT) : null;
+$idtest = isset($_GET['idtest']) ? filter_var($_GET['idtest'], FILTER_VALIDATE_INT) : null;
+$desde = isset($_GET['desde']) ? $_GET['desde'] : null;
+$hasta = isset($_GET['hasta']) ? $_GET['hasta'] : null;
+$fechaValida = function ($fecha) {
+    return $fecha === null || preg_match('/^\d{4}-\d{2}-\d{2}$/', $fecha) === 1;
+};
+if ($id_centro === false || $idtest === false || !$fechaValida($desde) || !$fechaValida($hasta)) {
+    http_response_code(400);
+    echo json_encode(array("message" => "Filtros no válidos: id_centro e idtest son enteros; desde y hasta, AAAA-MM-DD"));
+    exit();
+}
+
+// Mismo ETag que leer.php: con registro de cambios, versión y consulta identifican la respuesta
+$cambios = new Cambios($conex);
+$version = $cambios->version();
+$etag = $version > 0 ? '"e' . $version . '-' . md5(isset($_SERVER['QUERY_STRING']) ? $_SERVER['QUERY_STRING'] : '') . '"' : null;
+if ($etag !== null && etagCoincide($etag)) {
+    responderNoModificado($etag);
+}
+
+// Tantas áreas como haya en la tabla; los intentos guardan una parte por área
+$numAreas = 0;
+$resultadoAreas = $conex->query("SELECT COUNT(*) AS total FROM area");
+if ($resultadoAreas) {
+    $numAreas = (int)$resultadoAreas->fetch_assoc()['total'];
+}
+$numAreas = max(1, min($maxAreas, $numAreas));
+
+$intentos = new Intentos($conex);
+$result = $intentos->estadisticas($numAreas, $cubetas, $id_centro, $idtest, $desde, $hasta);
+
+$grupos = array();
+if ($result) {
+    while ($fila = $result->fetch_assoc()) {
+        $areas = array();
+        for ($a = 1; $a <= $numAreas; $a++) {
+            $distribucion = array();
+            for ($c = 0; $c < $cubetas; $c++) {
+                $distribucion[] = (int)$fila["c" . $a . "_" . $c];
+            }
+            $areas[] = array(
+                "n" => (int)$fila["n" . $a],
+                "media" => $fila["media" . $a] === null ? null : round((float)$fila["media" . $a], 4),
+                "distribucion" => $distribucion
+            );
+        }
+        $grupos[] = array(
+            "idtest" => (int)$fila["idtest"],
+            "id_centro" => $fila["id_centro"] === null ? null : (int)$fila["id_centro"],
+            "mes" => $fila["mes"],
+            "intentos" => (int)$fila["intentos"],
+            "areas" => $areas
+        );
+    }
+}
+
+$cuerpo = json_encode(array(
+    "version" => $version,
+    "areas" => $numAreas,
+    "cubetas" => array("desde" => 0, "ancho" => 1, "numero" => $cubetas),
+    "grupos" => $grupos
+));
+if ($etag === null) {
+    $etag = '"' . md5($cuerpo) . '"';
+    if (etagCoincide($etag)) {
+        responderNoModificado($etag);
+    }
+}
+header("ETag: " . $etag);
+http_response_code(200);
+echo $cuerpo;
+?>
@@ -0,0 +1,50 @@
+<?php
+// Crea los índices de las búsquedas por nombre de leer.php (?nombre=). Se ejecuta una vez tras instalar la base
+// de datos; volver a ejecutarlo no hace nada si los índices ya existen
+header('Content-Type: text/plain; charset=UTF-8');
+
+include_once '../basedatos/EscolaVision.php';
+
+$database = new EscolaVision();
+$conex = $database->dameConexion();
+
+if ($conex->connect_error) {
+    die("Error de conexión: " . $conex->connect_error);
+}
+
+// Tabla, columna y nombre del índice
+$indices = [
+    ["usuarios", "nombre", "idx_usuarios_nombre"],
+    ["tests", "nombretest", "idx_tests_nombretest"],
+    ["areas", "nombre", "idx_areas_nombre"]
+];
+
+// Las columnas TEXT solo se pueden indexar por un prefijo
+$prefijo = 191;
+
+foreach ($indices as [$tabla, $columna, $indice]) {
+    $stmt = $conex->prepare("SELECT COUNT(*) AS hay FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?");
+    $stmt->bind_param("ss", $tabla, $indice);
+    $stmt->execute();
+    if ($stmt->get_result()->fetch_assoc()['hay'] > 0) {
+        echo "El índice " . $indice . " ya existe.\n";
+        continue;
+    }
+
+    $stmt = $conex->prepare("SELECT DATA_TYPE FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?");
+    $stmt->bind_param("ss", $tabla, $columna);
+    $stmt->execute();
+    $tipo = $stmt->get_result()->fetch_assoc();
+    if ($tipo === null) {
+        echo "No existe la columna " . $tabla . "." . $columna . ".\n";
+        continue;
+    }
+    $parte = substr(strtolower($tipo['DATA_TYPE']), -4) === "text" ? "`" . $columna . "`(" . $prefijo . ")" : "`" . $columna . "`";
+
+    if ($conex->query("CREATE INDEX `" . $indice . "` ON `" . $tabla . "` (" . $parte . ")")) {
+        echo "Creado el índice " . $indice . ".\n";
+    } else {
+        echo "No se pudo crear el índice " . $indice . ": " . $conex->error . "\n";
+    }
+}
+?>
@@ -6,6 +6,7 @@ header("Access-Control-Max-Age: 3600");
 header("Access-Control-Allow-Headers: Content-Type");
 
 include_once '../basedatos/EscolaVision.php';
+include_once '../basedatos/Cambios.php';
 include_once '../tablas/Usuario.php'; // Cambié 'Alumnos.php' y 'Profesor.php' por 'Usuario.php'
 include_once '../tablas/Area.php';
 include_once '../tablas/Preguntas.php';
@@ -43,11 +44,25 @@ if (isset($datos['tabla']) && array_key_exists($datos['tabla'], $tables)) {
             $classInstance->{$key} = $value; // Asignar cada dato al objeto
         }
 
-        if ($classInstance->insertar()) {
+        $cambios = new Cambios($conex);
+        $cambios->asegurarTabla();
+        // La fila y su registro de cambios van juntos: sin registro, leer.php no vería la fila nueva
+        $conex->begin_transaction();
+        try {
+            if (!$classInstance->insertar()) {
+                throw new mysqli_sql_exception($conex->error, $conex->errno);
+            }
+            // Se lee antes de registrar el cambio, que hace su propio INSERT
+            $id = $conex->insert_id;
+            $cambios->registrar($tabla, $id, "insertar");
+            $conex->commit();
             http_response_code(200);
             $response['status'] = "success";
+            // El cliente lo usa para leer solo la fila nueva en vez de recargar la tabla
+            $response['id'] = $id;
             $response["message"] = "El registro de la tabla " . ucfirst($tabla) . " fue creado con éxito.";
-        } else {
+        } catch (Exception $e) {
+            $conex->rollback();
             http_response_code(503);
             $response['status'] = "error";
             $response["message"] = "No se puede crear el registro en la tabla " . ucfirst($tabla) . ".";
@@ -3,9 +3,13 @@ header("Access-Control-Allow-Origin: *");
 header("Content-Type: application/json; charset=UTF-8");
 header("Access-Control-Allow-Methods: GET");
 header("Access-Control-Max-Age: 3600");
+// Se puede guardar, pero hay que revalidar con If-None-Match antes de usarla
+header("Cache-Control: no-cache");
 header("Access-Control-Allow-Headers: Content-Type");
 
 include_once '../basedatos/EscolaVision.php';
+include_once '../basedatos/Cambios.php';
+include_once '../basedatos/Etag.php';
 include_once '../tablas/Usuario.php';
 include_once '../tablas/Area.php';
 include_once '../tablas/Preguntas.php';
@@ -29,11 +33,71 @@ $tables = [
 
 $response = array();
 
+// Con más filas cambiadas que esto, since devuelve la tabla entera
+$maxCambios = 1000;
+
 if (isset($_GET['tabla']) && array_key_exists($_GET['tabla'], $tables)) {
     $tabla = $_GET['tabla'];
     $classInstance = $tables[$tabla];
 
-    if (isset($_GET['id'])) {
+    // ETag fuerte por consulta: con registro de cambios, la versión y la consulta exacta identifican la respuesta
+    // y el 304 se contesta sin tocar la tabla; sin registro, el ETag es el hash del cuerpo (ver más abajo)
+    $cambios = new Cambios($conex);
+    $versionActual = $cambios->version();
+    $etag = $versionActual > 0 ? '"v' . $versionActual . '-' . md5($_SERVER['QUERY_STRING']) . '"' : null;
+    if ($etag !== null && etagCoincide($etag)) {
+        responderNoModificado($etag);
+    }
+
+    // limit/offset o after_id paginan y fields elige las columnas; no se combinan con los filtros de abajo
+    $paginada = isset($_GET['limit']) || isset($_GET['offset']) || isset($_GET['after_id']) || isset($_GET['fields']);
+    $filtrada = isset($_GET['dni']) || isset($_GET['id_centro']) || isset($_GET['localidad']) || isset($_GET['ultima']) || isset($_GET['idpregunta']);
+
+    if (isset($_GET['since'])) {
+        // Sincronización por versiones: since=0 devuelve la tabla entera y la versión actual;
+        // since=N solo las filas tocadas después de N, y en "borrados" los ids que ya no existen
+        $desde = filter_var($_GET['since'], FILTER_VALIDATE_INT, ["options" => ["min_range" => 0]]);
+        if ($desde === false) {
+            http_response_code(400);
+            echo json_encode(array("message" => "Parámetro since no válido"));
+            exit();
+        }
+        // La versión se lee antes que las filas: lo que cambie mientras tanto se volverá a pedir la próxima vez
+        $version = $versionActual;
+        $classInstance->campos = isset($_GET['fields']) ? $_GET['fields'] : null;
+        $idsCambiados = ($desde > 0 && $desde <= $version) ? $cambios->idsCambiados($tabla, $desde, $version) : null;
+        if ($idsCambiados !== null && count($idsCambiados) <= $maxCambios) {
+            $result = count($idsCambiados) > 0 ? $classInstance->leerIds($idsCambiados) : null;
+        } else {
+            // Sin versión previa válida o con demasiados cambios sale más a cuenta la tabla entera
+            $idsCambiados = null;
+            $result = $classInstance->leerPagina();
+        }
+        $sincronizacion = array("version" => $version, "delta" => $idsCambiados !== null);
+    } elseif (isset($_GET['nombre']) && in_array($tabla, array("usuarios", "tests", "areas"))) {
+        // Búsqueda de una fila por nombre; admite fields para no traer fotos ni logos.
+        // Distingue mayúsculas salvo con mayusculas=no
+        $classInstance->campos = isset($_GET['fields']) ? $_GET['fields'] : null;
+        $distinguirMayusculas = !(isset($_GET['mayusculas']) && $_GET['mayusculas'] === "no");
+        $result = $classInstance->leerPorNombre($_GET['nombre'], $distinguirMayusculas);
+    } elseif ($paginada && !$filtrada) {
+        $limite = isset($_GET['limit']) ? filter_var($_GET['limit'], FILTER_VALIDATE_INT, ["options" => ["min_range" => 1, "max_range" => 1000]]) : null;
+        $desplazamiento = isset($_GET['offset']) ? filter_var($_GET['offset'], FILTER_VALIDATE_INT, ["options" => ["min_range" => 0]]) : null;
+        $despuesDe = isset($_GET['after_id']) ? filter_var($_GET['after_id'], FILTER_VALIDATE_INT, ["options" => ["min_range" => 0]]) : null;
+        if ($limite === false || $desplazamiento === false || $despuesDe === false || ($desplazamiento !== null && $limite === null)) {
+            http_response_code(400);
+            echo json_encode(array("message" => "Parámetros de paginación no válidos"));
+            exit();
+        }
+        if (isset($_GET['id'])) {
+            $classInstance->id = $_GET['id'];
+        }
+        $classInstance->limite = $limite;
+        $classInstance->desplazamiento = $desplazamiento;
+        $classInstance->despues_de = $despuesDe;
+        $classInstance->campos = isset($_GET['fields']) ? $_GET['fields'] : null;
+        $result = $classInstance->leerPagina();
+    } elseif (isset($_GET['id'])) {
         $classInstance->id = $_GET['id'];
         $result = $classInstance->leer();
     } else {
@@ -71,12 +135,28 @@ if (isset($_GET['tabla']) && array_key_exists($_GET['tabla'], $tables)) {
     } else {
         $response[$tabla] = array();
     }
+
+    if (isset($sincronizacion)) {
+        if ($sincronizacion["delta"]) {
+            $presentes = array_map('intval', array_column($response[$tabla], 'id'));
+            $sincronizacion["borrados"] = array_values(array_diff($idsCambiados, $presentes));
+        }
+        $response = array_merge($response, $sincronizacion);
+    }
 } else {
     http_response_code(400);
     echo json_encode(array("message" => "Tabla no reconocida o no especificada"));
     exit();
 }
 
+$cuerpo = json_encode($response);
+if ($etag === null) {
+    $etag = '"' . md5($cuerpo) . '"';
+    if (etagCoincide($etag)) {
+        responderNoModificado($etag);
+    }
+}
+header("ETag: " . $etag);
 http_response_code(200);
-echo json_encode($response);
+echo $cuerpo;
 ?>
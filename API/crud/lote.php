@@ -0,0 +1,64 @@
+<?php
+header("Access-Control-Allow-Origin: *");
+header("Content-Type: application/json; charset=UTF-8");
+header("Access-Control-Allow-Methods: POST");
+header("Access-Control-Max-Age: 3600");
+header("Access-Control-Allow-Headers: Content-Type");
+
+include_once '../basedatos/EscolaVision.php';
+include_once '../basedatos/Cambios.php';
+include_once '../tablas/PxA.php';
+
+$database = new EscolaVision();
+$conex = $database->dameConexion();
+
+// Solo las tablas con aplicarLote()
+$tables = [
+    "pxa" => new PxA($conex)
+];
+
+$maxOperaciones = 1000;
+
+$response = array();
+
+// Cuerpo: {"tabla": "pxa", "operaciones": [{"op": "insertar", "datos": {"idpregunta": 3, "idarea": 2}}, {"op": "borrar", "datos": {"id": 7}}]}
+$datos = json_decode(file_get_contents("php://input"), true);
+
+if (isset($datos['tabla']) && array_key_exists($datos['tabla'], $tables)) {
+    $tabla = $datos['tabla'];
+    $classInstance = $tables[$tabla];
+
+    if (isset($datos['operaciones']) && is_array($datos['operaciones']) && count($datos['operaciones']) > 0 && count($datos['operaciones']) <= $maxOperaciones) {
+        $cambios = new Cambios($conex);
+        $cambios->asegurarTabla();
+        // Todo el lote en una transacción: o se aplican todas las operaciones o ninguna
+        $conex->begin_transaction();
+        try {
+            $ids = $classInstance->aplicarLote($datos['operaciones']);
+            $aplicadas = count($ids);
+            // Dentro de la misma transacción, para que el cambio y su registro vayan juntos
+            $cambios->registrar($tabla, $ids, "lote");
+            $conex->commit();
+            http_response_code(200);
+            $response['status'] = "success";
+            $response['aplicadas'] = $aplicadas;
+            $response["message"] = "Se aplicaron " . $aplicadas . " operaciones en la tabla " . ucfirst($tabla) . ".";
+        } catch (Exception $e) {
+            $conex->rollback();
+            http_response_code(503);
+            $response['status'] = "error";
+            $response["message"] = "No se aplicó ninguna operación en la tabla " . ucfirst($tabla) . ": " . $e->getMessage();
+        }
+    } else {
+        http_response_code(400);
+        $response['status'] = "error";
+        $response["message"] = "Se esperaban entre 1 y " . $maxOperaciones . " operaciones.";
+    }
+} else {
+    http_response_code(400);
+    $response['status'] = "error";
+    $response["message"] = "Tabla no reconocida o no admite lotes.";
+}
+
+echo json_encode($response);
+?>
@@ -1,11 +1,16 @@
 <?php
+include_once __DIR__ . '/Paginacion.php';
+
 class Area
 {
+	use Paginacion;
+
 	private $tabla = "area";
 	public $id;
 	public $nombre;
 	public $descripcion;
 	public $logo;
+	public $quitar_logo;
 	private $conn;
 
 	public function __construct($db)
@@ -26,6 +31,12 @@ class Area
 		return $result;
 	}
 
+	// Áreas con ese nombre, solo con las columnas pedidas en fields
+	function leerPorNombre($nombre, $distinguirMayusculas = true)
+	{
+		return $this->leerPorTexto("nombre", $nombre, $distinguirMayusculas);
+	}
+
 	function insertar()
 	{
 		$stmt = $this->conn->prepare("INSERT INTO " . $this->tabla . "(`nombre`, `descripción`, `logo` ) VALUES(?,?,?)");
@@ -41,14 +52,23 @@ class Area
 	
 	function actualizar()
 	{
-		$stmt = $this->conn->prepare("UPDATE " . $this->tabla . " SET nombre = ?, descripción = ?, logo = ? WHERE id = ?");
-
-
 		$this->nombre = strip_tags($this->nombre);	
     	$this->descripcion = strip_tags($this->descripcion);
-		$this->logo = strip_tags($this->logo);
 		$this->id = strip_tags($this->id);
-		$stmt->bind_param("sssi", $this->nombre, $this->descripcion, $this->logo, $this->id);
+
+		// Las lecturas de tabla ya no traen el logo: sin "logo" en la petición se conserva el guardado,
+		// como hace Usuario con la foto. Para borrarlo el cliente lo pide con "quitar_logo"
+		if (!empty($this->quitar_logo)) {
+			$stmt = $this->conn->prepare("UPDATE " . $this->tabla . " SET nombre = ?, descripción = ?, logo = NULL WHERE id = ?");
+			$stmt->bind_param("ssi", $this->nombre, $this->descripcion, $this->id);
+		} else if (empty($this->logo)) {
+			$stmt = $this->conn->prepare("UPDATE " . $this->tabla . " SET nombre = ?, descripción = ? WHERE id = ?");
+			$stmt->bind_param("ssi", $this->nombre, $this->descripcion, $this->id);
+		} else {
+			$stmt = $this->conn->prepare("UPDATE " . $this->tabla . " SET nombre = ?, descripción = ?, logo = ? WHERE id = ?");
+			$this->logo = strip_tags($this->logo);
+			$stmt->bind_param("sssi", $this->nombre, $this->descripcion, $this->logo, $this->id);
+		}
 
 		return $stmt->execute();
 	}
@@ -1,6 +1,10 @@
 <?php
+include_once __DIR__ . '/Paginacion.php';
+
 class Centro
 {
+    use Paginacion;
+
     private $tabla = "centros";
     public $id;
     public $comunidad_autonoma;
@@ -1,6 +1,10 @@
 <?php
+include_once __DIR__ . '/Paginacion.php';
+
 class Intentos
 {
+	use Paginacion;
+
 	private $tabla = "intentos";
 	public $id;
 	public $idtest;
@@ -89,5 +93,65 @@ class Intentos
         $stmt->execute();
         return $stmt->get_result();
     }
+
+	// Medias, cuentas y distribución de cada área agrupadas por test, centro y mes, calculadas en MySQL.
+	// Cada intento guarda "3.2;4.1;..." (una parte por área, de 0 a 10); la distribución cuenta cuántos
+	// caen en cada tramo de ancho 1, con el 10 en el último. Los filtros que lleguen a null no se aplican
+	function estadisticas($numAreas, $cubetas, $id_centro, $idtest, $desde, $hasta)
+	{
+		$valores = array();
+		$agregados = array();
+		for ($a = 1; $a <= $numAreas; $a++) {
+			// SUBSTRING_INDEX repetiría la última parte si el intento trae menos áreas: por eso se cuentan los ';'
+			$valores[] = "CASE WHEN LENGTH(i.resultados) - LENGTH(REPLACE(i.resultados, ';', '')) >= " . ($a - 1)
+				. " THEN CAST(NULLIF(TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(i.resultados, ';', " . $a . "), ';', -1)), '') AS DECIMAL(10,4)) END AS a" . $a;
+			$agregados[] = "COUNT(a" . $a . ") AS n" . $a;
+			$agregados[] = "AVG(a" . $a . ") AS media" . $a;
+			for ($c = 0; $c < $cubetas; $c++) {
+				$agregados[] = "SUM(LEAST(GREATEST(FLOOR(a" . $a . "), 0), " . ($cubetas - 1) . ") = " . $c . ") AS c" . $a . "_" . $c;
+			}
+		}
+
+		$condiciones = array("1 = 1");
+		$tipos = "";
+		$parametros = array();
+		if ($id_centro !== null) {
+			$condiciones[] = "u.id_centro = ?";
+			$tipos .= "i";
+			$parametros[] = $id_centro;
+		}
+		if ($idtest !== null) {
+			$condiciones[] = "i.idtest = ?";
+			$tipos .= "i";
+			$parametros[] = $idtest;
+		}
+		if ($desde !== null) {
+			$condiciones[] = "i.fecha >= ?";
+			$tipos .= "s";
+			$parametros[] = $desde;
+		}
+		if ($hasta !== null) {
+			$condiciones[] = "i.fecha <= ?";
+			$tipos .= "s";
+			$parametros[] = $hasta;
+		}
+
+		$stmt = $this->conn->prepare("
+			SELECT v.idtest, v.id_centro, v.mes, COUNT(*) AS intentos, " . implode(", ", $agregados) . "
+			FROM (
+				SELECT i.idtest, u.id_centro, DATE_FORMAT(i.fecha, '%Y-%m') AS mes, " . implode(", ", $valores) . "
+				FROM " . $this->tabla . " i
+				LEFT JOIN usuarios u ON u.id = i.idusuario
+				WHERE " . implode(" AND ", $condiciones) . "
+			) v
+			GROUP BY v.idtest, v.id_centro, v.mes
+			ORDER BY v.idtest, v.id_centro, v.mes
+		");
+		if (count($parametros) > 0) {
+			$stmt->bind_param($tipos, ...$parametros);
+		}
+		$stmt->execute();
+		return $stmt->get_result();
+	}
 }
 ?>
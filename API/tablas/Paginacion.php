@@ -0,0 +1,91 @@
+<?php
+// Lectura por páginas y con solo las columnas pedidas, común a todas las tablas.
+// Las clases la incluyen con "use Paginacion;" y usa su $conn, $tabla e $id.
+trait Paginacion
+{
+    public $limite;
+    public $desplazamiento;
+    public $despues_de;
+    public $campos;
+
+    function leerPagina()
+    {
+        $sql = "SELECT " . $this->columnasPedidas() . " FROM " . $this->tabla;
+        $tipos = "";
+        $valores = array();
+
+        if (isset($this->id) && $this->id >= 0) {
+            $sql .= " WHERE id = ?";
+            $tipos .= "i";
+            $valores[] = (int)$this->id;
+        } elseif (isset($this->despues_de)) {
+            // Paginación por clave: la siguiente página empieza tras el último id recibido
+            $sql .= " WHERE id > ?";
+            $tipos .= "i";
+            $valores[] = (int)$this->despues_de;
+        }
+        $sql .= " ORDER BY id";
+        if (isset($this->limite)) {
+            $sql .= " LIMIT ?";
+            $tipos .= "i";
+            $valores[] = (int)$this->limite;
+            if (isset($this->desplazamiento)) {
+                $sql .= " OFFSET ?";
+                $tipos .= "i";
+                $valores[] = (int)$this->desplazamiento;
+            }
+        }
+
+        $stmt = $this->conn->prepare($sql);
+        if ($tipos !== "") {
+            $stmt->bind_param($tipos, ...$valores);
+        }
+        $stmt->execute();
+        return $stmt->get_result();
+    }
+
+    // Filas con esos ids (las que sigan existiendo), para las respuestas de leer.php?since=
+    function leerIds($ids)
+    {
+        $marcas = implode(",", array_fill(0, count($ids), "?"));
+        $stmt = $this->conn->prepare("SELECT " . $this->columnasPedidas() . " FROM " . $this->tabla . " WHERE id IN (" . $marcas . ") ORDER BY id");
+        $stmt->bind_param(str_repeat("i", count($ids)), ...$ids);
+        $stmt->execute();
+        return $stmt->get_result();
+    }
+
+    // Filas cuya columna de nombre vale $valor, en orden de id. La comparación no depende de la collation de la
+    // columna: "columna = ?" solo sirve para usar el índice (crud/indices.php) y la otra condición decide si cuentan
+    // las mayúsculas. Sin distinguirlas, las variantes de mayúsculas solo llegan si la collation es _ci
+    function leerPorTexto($columna, $valor, $distinguirMayusculas)
+    {
+        $exacta = $distinguirMayusculas
+            ? "CAST(`" . $columna . "` AS BINARY) = CAST(? AS BINARY)"
+            : "CAST(LOWER(`" . $columna . "`) AS BINARY) = CAST(LOWER(?) AS BINARY)";
+        $stmt = $this->conn->prepare("SELECT " . $this->columnasPedidas() . " FROM " . $this->tabla . " WHERE `" . $columna . "` = ? AND " . $exacta . " ORDER BY id");
+        $stmt->bind_param("ss", $valor, $valor);
+        $stmt->execute();
+        return $stmt->get_result();
+    }
+
+    // Solo se aceptan columnas que existan en la tabla; el id va siempre para poder pedir la página siguiente
+    private function columnasPedidas()
+    {
+        if (!isset($this->campos) || trim($this->campos) === "") {
+            return "*";
+        }
+        $existentes = array();
+        foreach ($this->conn->query("SELECT * FROM " . $this->tabla . " LIMIT 0")->fetch_fields() as $columna) {
+            $existentes[] = $columna->name;
+        }
+        $pedidas = array("id");
+        foreach (explode(",", $this->campos) as $campo) {
+            $campo = trim($campo);
+            if (in_array($campo, $existentes, true) && !in_array($campo, $pedidas, true)) {
+                $pedidas[] = $campo;
+            }
+        }
+        return "`" . implode("`, `", $pedidas) . "`";
+    }
+}
+?>
@@ -1,6 +1,10 @@
 <?php
+include_once __DIR__ . '/Paginacion.php';
+
 class Preguntas
 {
+    use Paginacion;
+
     private $tabla = "pregunta";
     public $id;
     public $idtest;
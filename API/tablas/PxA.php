@@ -1,6 +1,10 @@
 <?php
+include_once __DIR__ . '/Paginacion.php';
+
 class PxA
 {
+	use Paginacion;
+
 	private $tabla = "pxa";
 	public $id;
 	public $idpregunta;
@@ -78,5 +82,56 @@ class PxA
 		$stmt->bind_param("i", $this->id);
 		return $stmt->execute();
 	}
+
+	// Aplica en orden las operaciones de lote.php ({"op": "insertar" | "actualizar" | "borrar", "datos": {...}}).
+	// Cada sentencia se prepara una sola vez y se reutiliza; la transacción la abre y la confirma lote.php.
+	function aplicarLote($operaciones)
+	{
+		$ids = array();
+		$insertar = null;
+		$actualizar = null;
+		$borrar = null;
+		$id = 0;
+		$idpregunta = 0;
+		$idarea = 0;
+
+		foreach ($operaciones as $posicion => $operacion) {
+			$datos = isset($operacion['datos']) ? $operacion['datos'] : array();
+			// bind_param enlaza por referencia: basta con cambiar las variables antes de cada execute
+			$id = isset($datos['id']) ? (int)$datos['id'] : 0;
+			$idpregunta = isset($datos['idpregunta']) ? (int)$datos['idpregunta'] : 0;
+			$idarea = isset($datos['idarea']) ? (int)$datos['idarea'] : 0;
+			$op = isset($operacion['op']) ? $operacion['op'] : "";
+
+			if ($op == "insertar") {
+				if ($insertar === null) {
+					$insertar = $this->conn->prepare("INSERT INTO " . $this->tabla . "(`idpregunta`, `idarea`) VALUES(?,?)");
+					$insertar->bind_param("ii", $idpregunta, $idarea);
+				}
+				$stmt = $insertar;
+			} elseif ($op == "actualizar") {
+				if ($actualizar === null) {
+					$actualizar = $this->conn->prepare("UPDATE " . $this->tabla . " SET idpregunta = ?, idarea = ? WHERE id = ?");
+					$actualizar->bind_param("iii", $idpregunta, $idarea, $id);
+				}
+				$stmt = $actualizar;
+			} elseif ($op == "borrar") {
+				if ($borrar === null) {
+					$borrar = $this->conn->prepare("DELETE FROM " . $this->tabla . " WHERE id = ?");
+					$borrar->bind_param("i", $id);
+				}
+				$stmt = $borrar;
+			} else {
+				throw new Exception("Operación desconocida en la posición " . $posicion);
+			}
+
+			if (!$stmt->execute()) {
+				throw new Exception("Falló la operación " . $op . " en la posición " . $posicion);
+			}
+			$ids[] = $op == "insertar" ? $this->conn->insert_id : $id;
+		}
+		// Ids tocados, para el registro de cambios
+		return $ids;
+	}
 }
 ?>
\ No newline at end of file
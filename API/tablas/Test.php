@@ -1,6 +1,10 @@
 <?php
+include_once __DIR__ . '/Paginacion.php';
+
 class Test
 {
+    use Paginacion;
+
     private $tabla = "test";
     public $id;
     public $nombretest;
@@ -26,6 +30,12 @@ class Test
         return $result;
     }
 
+    // Tests con ese nombretest, para no descargar la tabla entera al guardar un intento
+    function leerPorNombre($nombre, $distinguirMayusculas = true)
+    {
+        return $this->leerPorTexto("nombretest", $nombre, $distinguirMayusculas);
+    }
+
     // Método para insertar un nuevo test, incluyendo isVisible
     function insertar()
     {
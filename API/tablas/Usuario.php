@@ -1,6 +1,10 @@
 <?php
+include_once __DIR__ . '/Paginacion.php';
+
 class Usuario
 {
+    use Paginacion;
+
     private $tabla = "usuarios";
     public $id;
     public $nombre;
@@ -71,6 +75,12 @@ class Usuario
         }
     }
 
+    // Usuarios con ese nombre; la collation de la columna no distingue mayúsculas, el cliente filtra si hace falta
+    function leerPorNombre($nombre, $distinguirMayusculas = true)
+    {
+        return $this->leerPorTexto("nombre", $nombre, $distinguirMayusculas);
+    }
+
     function leerPorCentro()
     {
         if (isset($this->id_centro)) {
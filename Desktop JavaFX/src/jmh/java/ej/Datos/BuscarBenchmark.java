@@ -0,0 +1,110 @@
+package ej.Datos;
+
+import ej.Tablas.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Los buscar* de miControlador sobre el {@link Repositorio} ya cargado con las
+ * grabaciones: lo que cuesta cada consulta cuando la tabla está vigente en
+ * memoria. {@link #usuarioPorNombreRecorriendo} es la búsqueda anterior, un
+ * recorrido de la lista entera, sin contar la descarga que la precedía.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuscarBenchmark {
+
+	private static final int CONSULTAS = 1024;
+
+	private Repositorio repositorio;
+	private final int[] usuarios = new int[CONSULTAS];
+	private final int[] intentos = new int[CONSULTAS];
+	private final int[] tests = new int[CONSULTAS];
+	private final int[] preguntas = new int[CONSULTAS];
+	private final int[] areas = new int[CONSULTAS];
+	private int siguiente;
+
+	@Setup
+	public void preparar() throws IOException {
+		// Sin caducidad: se mide la consulta, no la recarga
+		repositorio = new Repositorio(Grabaciones.cargador(), Long.MAX_VALUE, null);
+		repositorio.getTests().todos();
+		repositorio.getPreguntas().todos();
+		repositorio.getUsuarios().todos();
+		repositorio.getAreas().todos();
+		repositorio.getPxA().todos();
+		repositorio.getIntentos().todos();
+		Random azar = new Random(7);
+		for (int i = 0; i < CONSULTAS; i++) {
+			usuarios[i] = 1 + azar.nextInt(Grabaciones.USUARIOS);
+			intentos[i] = 1 + azar.nextInt(Grabaciones.INTENTOS);
+			tests[i] = 1 + azar.nextInt(Grabaciones.TESTS);
+			preguntas[i] = 1 + azar.nextInt(Grabaciones.PREGUNTAS);
+			areas[i] = 1 + azar.nextInt(Grabaciones.AREAS);
+		}
+	}
+
+	// Cada llamada consulta otra fila, para no medir siempre la misma entrada de los índices
+	private int siguiente() {
+		return siguiente = (siguiente + 1) & (CONSULTAS - 1);
+	}
+
+	@Benchmark
+	public Test testPorId() throws IOException {
+		return repositorio.getTests().porId(tests[siguiente()]);
+	}
+
+	@Benchmark
+	public Test testPorNombre() throws IOException {
+		return repositorio.getTests().porNombre("Test de orientación " + tests[siguiente()]);
+	}
+
+	@Benchmark
+	public Pregunta preguntaPorId() throws IOException {
+		return repositorio.getPreguntas().porId(preguntas[siguiente()]);
+	}
+
+	@Benchmark
+	public Alumno usuarioPorId() throws IOException {
+		return repositorio.getUsuarios().porId(usuarios[siguiente()]);
+	}
+
+	@Benchmark
+	public Alumno usuarioPorNombre() throws IOException {
+		return repositorio.getUsuarios().porNombre(Grabaciones.nombreUsuario(usuarios[siguiente()]));
+	}
+
+	@Benchmark
+	public Alumno usuarioPorNombreRecorriendo() throws IOException {
+		String nombre = Grabaciones.nombreUsuario(usuarios[siguiente()]);
+		for (Alumno alumno : repositorio.getUsuarios().todos()) {
+			if (alumno.getNombre().equals(nombre)) {
+				return alumno;
+			}
+		}
+		return null;
+	}
+
+	@Benchmark
+	public Area areaPorNombreSinMayusculas() throws IOException {
+		return repositorio.getAreas().porNombreSinMayusculas("ÁREA " + areas[siguiente()]);
+	}
+
+	@Benchmark
+	public List<PxA> pxaPorArea() throws IOException {
+		return repositorio.getPxA().por(Repositorio.PXA_POR_AREA, areas[siguiente()]);
+	}
+
+	@Benchmark
+	public Intentos intentoPorId() throws IOException {
+		return repositorio.getIntentos().porId(intentos[siguiente()]);
+	}
+}
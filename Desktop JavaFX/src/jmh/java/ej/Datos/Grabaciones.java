@@ -0,0 +1,93 @@
+package ej.Datos;
+
+import com.google.gson.Gson;
+import ej.Simulador.BaseSimulada;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Respuestas de leer.php para los benchmarks. Si se pasa
+ * {@code -Pgrabaciones=<carpeta>} a {@code gradle jmh}, se leen de
+ * {@code <carpeta>/<tabla>.json}, grabadas del servidor real con los mismos
+ * campos que pide el cliente, por ejemplo:
+ * <pre>
+ * curl -o usuarios.json 'http://servidor:8000/crud/leer.php?tabla=usuarios&amp;fields=id,nombre,dni,contraseña,fecha_nacimiento,email'
+ * </pre>
+ * Si no, salen de la {@link BaseSimulada} de la API simulada con el tamaño de
+ * un centro grande ({@link #USUARIOS} usuarios, {@link #INTENTOS} intentos),
+ * siempre iguales entre ejecuciones.
+ */
+final class Grabaciones {
+
+	static final int TESTS = BaseSimulada.Dimensiones.POR_DEFECTO.tests();
+	static final int PREGUNTAS = BaseSimulada.Dimensiones.POR_DEFECTO.preguntas();
+	static final int AREAS = BaseSimulada.Dimensiones.POR_DEFECTO.areas();
+	static final int USUARIOS = BaseSimulada.Dimensiones.POR_DEFECTO.usuarios();
+	static final int INTENTOS = BaseSimulada.Dimensiones.POR_DEFECTO.intentos();
+
+	private static final Map<String, byte[]> cuerpos = new ConcurrentHashMap<>();
+
+	private Grabaciones() {
+	}
+
+	static byte[] cuerpo(String tabla) {
+		return cuerpos.computeIfAbsent(tabla, Grabaciones::grabada);
+	}
+
+	// Cargador que responde siempre con la grabación de la tabla, sin mirar los parámetros; con el mismo
+	// etag contesta 304 como el servidor
+	static CargadorTabla cargador() {
+		return (tabla, parametros, etag) -> {
+			String actual = "\"" + tabla + "-1\"";
+			return actual.equals(etag)
+					? new CargadorTabla.Lectura(null, etag)
+					: new CargadorTabla.Lectura(new ByteArrayInputStream(cuerpo(tabla)), actual);
+		};
+	}
+
+	private static byte[] grabada(String tabla) {
+		String carpeta = System.getProperty("escolavision.jmh.grabaciones");
+		if (carpeta != null) {
+			try {
+				return Files.readAllBytes(Path.of(carpeta, tabla + ".json"));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Falta la grabación de " + tabla + " en " + carpeta, e);
+			}
+		}
+		return sintetica(tabla).getBytes(StandardCharsets.UTF_8);
+	}
+
+	// La tabla entera con las columnas que pide el Repositorio, como la contestaría leer.php?since=0
+	private static String sintetica(String tabla) {
+		Proyeccion<?> proyeccion = switch (tabla) {
+			case "tests" -> Repositorio.TEST;
+			case "preguntas" -> Repositorio.PREGUNTA;
+			case "areas" -> Repositorio.AREA;
+			case "pxa" -> Repositorio.PXA;
+			case "usuarios" -> Repositorio.ALUMNO;
+			case "intentos" -> Repositorio.INTENTOS;
+			default -> throw new IllegalArgumentException("Tabla sin grabación sintética: " + tabla);
+		};
+		try {
+			return new Gson().toJson(Sintetica.BASE.leer(tabla, Map.of("since", "0", "fields", String.join(",", proyeccion.getCampos()))));
+		} catch (BaseSimulada.PeticionNoValida e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String nombreUsuario(int i) {
+		return BaseSimulada.nombreUsuario(i);
+	}
+
+	// Los mismos datos que sirve la API simulada; solo se generan si no hay grabaciones
+	private static final class Sintetica {
+		static final BaseSimulada BASE = new BaseSimulada(BaseSimulada.Dimensiones.POR_DEFECTO);
+	}
+}
@@ -0,0 +1,83 @@
+package ej.Datos;
+
+import ej.Tablas.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * De la respuesta de leer.php a objetos de ej.Tablas. Compara la lectura
+ * anterior de obtenerArrayDesdeApi (el cuerpo entero a un String, el árbol de
+ * org.json y un objeto por fila) con {@link LectorTabla} y las proyecciones
+ * del {@link Repositorio}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LectorTablaBenchmark {
+
+	@Param({"tests", "preguntas", "pxa", "usuarios", "intentos"})
+	public String tabla;
+
+	private byte[] cuerpo;
+
+	@Setup
+	public void preparar() {
+		cuerpo = Grabaciones.cuerpo(tabla);
+	}
+
+	@Benchmark
+	public List<?> orgJson() throws IOException {
+		StringBuilder texto = new StringBuilder();
+		try (BufferedReader lector = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(cuerpo), StandardCharsets.UTF_8))) {
+			String linea;
+			while ((linea = lector.readLine()) != null) {
+				texto.append(linea);
+			}
+		}
+		JSONArray filas = new JSONObject(texto.toString()).getJSONArray(tabla);
+		List<Object> objetos = new ArrayList<>(filas.length());
+		for (int i = 0; i < filas.length(); i++) {
+			JSONObject f = filas.getJSONObject(i);
+			objetos.add(switch (tabla) {
+				case "tests" -> new Test(f.getInt("id"), f.getString("nombretest"), f.getInt("isVisible"));
+				case "preguntas" -> new Pregunta(f.getInt("id"), f.getString("enunciado"), f.getString("titulo"), f.getInt("idtest"));
+				case "pxa" -> new PxA(f.getInt("id"), f.getInt("idpregunta"), f.getInt("idarea"));
+				case "usuarios" -> new Alumno(f.getInt("id"), f.getString("nombre"), f.getString("dni"), f.getString("contraseña"),
+						f.optInt("fecha_nacimiento"), null, f.getString("email"));
+				case "intentos" -> new Intentos(f.getInt("id"), f.getInt("idtest"), f.getInt("idusuario"),
+						f.getString("fecha"), f.getString("hora"), f.getString("resultados"));
+				default -> throw new IllegalStateException(tabla);
+			});
+		}
+		return objetos;
+	}
+
+	@Benchmark
+	public List<?> lectorTabla() throws IOException {
+		return LectorTabla.leer(new ByteArrayInputStream(cuerpo), tabla, proyeccion());
+	}
+
+	private Proyeccion<?> proyeccion() {
+		return switch (tabla) {
+			case "tests" -> Repositorio.TEST;
+			case "preguntas" -> Repositorio.PREGUNTA;
+			case "pxa" -> Repositorio.PXA;
+			case "usuarios" -> Repositorio.ALUMNO;
+			case "intentos" -> Repositorio.INTENTOS;
+			default -> throw new IllegalStateException(tabla);
+		};
+	}
+}
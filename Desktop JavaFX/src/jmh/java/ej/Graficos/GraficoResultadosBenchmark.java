@@ -0,0 +1,96 @@
+package ej.Graficos;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * El gráfico de cargarIntento: cambiar los valores del gráfico que ya está en
+ * pantalla ({@link #mostrar}) frente a crear uno nuevo para cada intento
+ * ({@link #crearYMostrar}), en los dos casos hasta dejarlo maquetado, que es
+ * lo que tarda en poder pintarse. Se ejecuta en el hilo de JavaFX, así que
+ * necesita un entorno gráfico.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraficoResultadosBenchmark {
+
+	private static final int INTENTOS = 256;
+
+	private final String[] resultados = new String[INTENTOS];
+	private StackPane raiz;
+	private GraficoResultados grafico;
+	private int siguiente;
+
+	@Setup
+	public void preparar() throws Exception {
+		try {
+			Platform.startup(() -> {
+			});
+		} catch (IllegalStateException e) {
+			// El toolkit ya estaba arrancado en este proceso
+		}
+		Random azar = new Random(42);
+		for (int i = 0; i < INTENTOS; i++) {
+			StringBuilder valores = new StringBuilder();
+			for (int area = 0; area < GraficoResultados.AREAS.length; area++) {
+				valores.append(area == 0 ? "" : ";").append(String.format(Locale.ROOT, "%.1f", azar.nextInt(101) / 10.0));
+			}
+			resultados[i] = valores.toString();
+		}
+		enHiloFx(() -> {
+			raiz = new StackPane();
+			new Scene(raiz, 600, 400);
+			grafico = new GraficoResultados();
+			raiz.getChildren().setAll(grafico.getNodo());
+			return null;
+		});
+	}
+
+	@Benchmark
+	public Object mostrar() throws Exception {
+		String valores = resultados[siguiente = (siguiente + 1) % INTENTOS];
+		return enHiloFx(() -> {
+			grafico.mostrar(valores);
+			raiz.applyCss();
+			raiz.layout();
+			return grafico;
+		});
+	}
+
+	@Benchmark
+	public Object crearYMostrar() throws Exception {
+		String valores = resultados[siguiente = (siguiente + 1) % INTENTOS];
+		return enHiloFx(() -> {
+			GraficoResultados nuevo = new GraficoResultados();
+			nuevo.mostrar(valores);
+			raiz.getChildren().setAll(nuevo.getNodo());
+			raiz.applyCss();
+			raiz.layout();
+			return nuevo;
+		});
+	}
+
+	private static <T> T enHiloFx(Callable<T> tarea) throws Exception {
+		CompletableFuture<T> resultado = new CompletableFuture<>();
+		Platform.runLater(() -> {
+			try {
+				resultado.complete(tarea.call());
+			} catch (Throwable e) {
+				resultado.completeExceptionally(e);
+			}
+		});
+		return resultado.get();
+	}
+}
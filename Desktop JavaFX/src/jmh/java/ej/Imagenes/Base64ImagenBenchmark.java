@@ -0,0 +1,48 @@
+package ej.Imagenes;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ida y vuelta de una foto entre la API y la interfaz: {@code base64ToImage}
+ * es {@link CacheImagenes#decodificar}, lo que cuesta pintar la foto o el logo
+ * recibido; {@code imageToBase64} es lo que hace miControlador al guardar la
+ * imagen que se ve (pasarla a BufferedImage y {@link CodificadorJpeg}). La
+ * imagen de partida es la que devuelve la API: ya reducida y en JPEG.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base64ImagenBenchmark {
+
+	@Param({"64", "192"})
+	public int ruido;
+
+	private String base64;
+	private Image imagen;
+	private CodificadorJpeg codificador;
+
+	@Setup
+	public void preparar() throws IOException {
+		codificador = new CodificadorJpeg();
+		base64 = codificador.codificar(CodificadorJpegBenchmark.fotoSintetica(1200, 900, ruido));
+		imagen = CacheImagenes.decodificar(base64);
+	}
+
+	@Benchmark
+	public Image base64ToImage() {
+		return CacheImagenes.decodificar(base64);
+	}
+
+	@Benchmark
+	public String imageToBase64() throws IOException {
+		return codificador.codificar(SwingFXUtils.fromFXImage(imagen, null));
+	}
+}
@@ -0,0 +1,110 @@
+package ej.Imagenes;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el bucle anterior de miControlador.imageToBase64 (calidad 0.9, 0.8, ...
+ * con un ImageWriter nuevo y el base64 completo en cada vuelta) con
+ * CodificadorJpeg. La foto es sintética, con ruido, para que no quepa en
+ * 20000 caracteres a calidad alta y haya que buscar; con más ruido el bucle
+ * anterior tiene que bajar más escalones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodificadorJpegBenchmark {
+
+	@Param({"1200x900", "4000x3000"})
+	public String tamano;
+
+	@Param({"64", "192"})
+	public int ruido;
+
+	private BufferedImage foto;
+	private CodificadorJpeg codificador;
+
+	@Setup
+	public void preparar() {
+		String[] lados = tamano.split("x");
+		foto = fotoSintetica(Integer.parseInt(lados[0]), Integer.parseInt(lados[1]), ruido);
+		codificador = new CodificadorJpeg();
+	}
+
+	@Benchmark
+	public String bucleAnterior() throws IOException {
+		BufferedImage resizedImage = resizeImage(foto, 300, 300);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		float compressionQuality = 0.9f;
+		String base64Image;
+
+		do {
+			baos.reset();
+			ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+			ImageWriteParam param = writer.getDefaultWriteParam();
+
+			if (param.canWriteCompressed()) {
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(compressionQuality);
+			}
+
+			ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(resizedImage, null, null), param);
+			writer.dispose();
+
+			base64Image = Base64.getEncoder().encodeToString(baos.toByteArray());
+			compressionQuality -= 0.1f;
+		} while (base64Image.length() > 20000 && compressionQuality > 0.1f);
+
+		return base64Image;
+	}
+
+	@Benchmark
+	public String biseccion() throws IOException {
+		return codificador.codificar(foto);
+	}
+
+	private static BufferedImage resizeImage(BufferedImage originalImage, int maxWidth, int maxHeight) {
+		double scale = Math.min((double) maxWidth / originalImage.getWidth(), (double) maxHeight / originalImage.getHeight());
+		int newWidth = (int) (originalImage.getWidth() * scale);
+		int newHeight = (int) (originalImage.getHeight() * scale);
+
+		BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = resizedImage.createGraphics();
+		g.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
+		g.dispose();
+		return resizedImage;
+	}
+
+	// Degradado con ruido: comprime como una foto real, no como un color liso
+	static BufferedImage fotoSintetica(int ancho, int alto, int ruido) {
+		BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB);
+		Random azar = new Random(42);
+		for (int y = 0; y < alto; y++) {
+			for (int x = 0; x < ancho; x++) {
+				int r = (x * 255 / ancho + azar.nextInt(ruido)) & 0xFF;
+				int g = (y * 255 / alto + azar.nextInt(ruido)) & 0xFF;
+				int b = ((x + y) * 127 / (ancho + alto) + azar.nextInt(ruido)) & 0xFF;
+				imagen.setRGB(x, y, 0xFF000000 | r << 16 | g << 8 | b);
+			}
+		}
+		return imagen;
+	}
+}
@@ -0,0 +1,222 @@
+package ej.API;
+
+import ej.Datos.CargadorTabla;
+import ej.Diagnostico.ContadorBytes;
+import ej.Diagnostico.EventoApi;
+import ej.Diagnostico.Medicion;
+import ej.Diagnostico.Medidor;
+import ej.Diagnostico.Metricas;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Cliente HTTP único para los crud/*.php de la API. Reutiliza las conexiones
+ * (keep-alive, HTTP/2 si el servidor lo admite), aplica tiempos de espera y
+ * siempre consume el cuerpo de la respuesta, también en los errores.
+ * <p>
+ * Se configura con propiedades del sistema:
+ * {@code escolavision.api.url}, {@code escolavision.api.timeoutConexion} y
+ * {@code escolavision.api.timeoutLectura} (en segundos) y
+ * {@code escolavision.api.http2} (true por defecto).
+ * <p>
+ * Cada llamada se anota en {@link Metricas} como "api" y el script (en
+ * leer.php también la tabla): el tiempo hasta que llega la respuesta, los
+ * bytes que viajan por la red y los fallos. Las lecturas emiten además un
+ * {@link EventoApi} de JFR, que abarca hasta cerrar el cuerpo.
+ */
+public class ClienteApi {
+
+	public static final String URL_POR_DEFECTO = "http://servidor.ieshlanz.es:8000/crud/";
+
+	private static volatile ClienteApi instancia;
+
+	private final String urlBase;
+	private final Duration timeoutLectura;
+	private final HttpClient http;
+
+	public ClienteApi(String urlBase, Duration timeoutConexion, Duration timeoutLectura, boolean http2) {
+		this.urlBase = urlBase.endsWith("/") ? urlBase : urlBase + "/";
+		this.timeoutLectura = timeoutLectura;
+		this.http = HttpClient.newBuilder()
+				.version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+				.connectTimeout(timeoutConexion)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+	}
+
+	public static ClienteApi getInstancia() {
+		if (instancia == null) {
+			synchronized (ClienteApi.class) {
+				if (instancia == null) {
+					instancia = new ClienteApi(
+							System.getProperty("escolavision.api.url", URL_POR_DEFECTO),
+							Duration.ofSeconds(Long.getLong("escolavision.api.timeoutConexion", 5)),
+							Duration.ofSeconds(Long.getLong("escolavision.api.timeoutLectura", 20)),
+							Boolean.parseBoolean(System.getProperty("escolavision.api.http2", "true")));
+				}
+			}
+		}
+		return instancia;
+	}
+
+	public String getUrlBase() {
+		return urlBase;
+	}
+
+	public Respuesta get(String ruta) throws IOException {
+		return enviar(ruta, peticion(ruta).GET());
+	}
+
+	// Devuelve el cuerpo de leer.php sin leerlo, para que el llamante lo procese en streaming.
+	// Con etag la petición es condicional: un 304 vuelve como lectura sin cuerpo
+	public CargadorTabla.Lectura leer(String tabla, Map<String, String> parametros, String etag) throws IOException {
+		return abrir("leer.php", tabla, "leer.php?tabla=" + codificar(tabla), parametros, etag);
+	}
+
+	// Agregados de intentos por test, centro y mes; igual que leer, condicional con etag. Un servidor sin
+	// estadisticas.php responde 404 y se lanza IOException
+	public CargadorTabla.Lectura estadisticas(Map<String, String> parametros, String etag) throws IOException {
+		return abrir("estadisticas.php", null, "estadisticas.php?", parametros, etag);
+	}
+
+	private CargadorTabla.Lectura abrir(String script, String tabla, String inicio, Map<String, String> parametros, String etag) throws IOException {
+		StringBuilder ruta = new StringBuilder(inicio);
+		parametros.forEach((clave, valor) -> {
+			if (!ruta.toString().endsWith("?")) {
+				ruta.append('&');
+			}
+			ruta.append(codificar(clave)).append('=').append(codificar(valor));
+		});
+		HttpRequest.Builder peticion = peticion(ruta.toString()).GET();
+		if (etag != null) {
+			peticion.header("If-None-Match", etag);
+		}
+		// El cuerpo se lee después, en streaming: sus bytes se suman al medidor y el evento se cierra al cerrarlo
+		Medidor medidor = Metricas.medidor("api " + script + (tabla == null ? "" : " " + tabla));
+		EventoApi evento = new EventoApi();
+		evento.begin();
+		try (Medicion medicion = Metricas.iniciar(medidor.getNombre())) {
+			HttpResponse<InputStream> respuesta;
+			try {
+				respuesta = recibir(peticion, medicion);
+			} catch (IOException e) {
+				evento.terminar(script, tabla, 0, 0);
+				throw e;
+			}
+			LongConsumer alCerrar = leidos -> {
+				medidor.sumarBytes(leidos);
+				evento.terminar(script, tabla, respuesta.statusCode(), leidos);
+			};
+			// Un 304 no tiene cuerpo: se cierra tal cual, sin pasar por descomprimir
+			if (respuesta.statusCode() == 304) {
+				new ContadorBytes(respuesta.body(), alCerrar).close();
+				medicion.correcta();
+				return new CargadorTabla.Lectura(null, etag);
+			}
+			InputStream cuerpo = descomprimir(respuesta, alCerrar);
+			if (respuesta.statusCode() != 200) {
+				try (cuerpo) {
+					cuerpo.transferTo(OutputStream.nullOutputStream());
+				}
+				medicion.fallida("respondió " + respuesta.statusCode());
+				throw new IOException(ruta + " respondió " + respuesta.statusCode());
+			}
+			medicion.correcta();
+			return new CargadorTabla.Lectura(cuerpo, respuesta.headers().firstValue("ETag").orElse(null));
+		}
+	}
+
+	public Respuesta post(String ruta, String json) throws IOException {
+		return enviar(ruta, peticion(ruta).header("Content-Type", "application/json; charset=UTF-8")
+				.POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8)));
+	}
+
+	public Respuesta delete(String ruta, String json) throws IOException {
+		return enviar(ruta, peticion(ruta).header("Content-Type", "application/json; charset=UTF-8")
+				.method("DELETE", HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8)));
+	}
+
+	private HttpRequest.Builder peticion(String ruta) {
+		return HttpRequest.newBuilder(URI.create(urlBase + ruta))
+				.timeout(timeoutLectura)
+				.header("Accept", "application/json")
+				.header("Accept-Encoding", "gzip");
+	}
+
+	private Respuesta enviar(String ruta, HttpRequest.Builder peticion) throws IOException {
+		Medidor medidor = Metricas.medidor("api " + ruta.split("\\?", 2)[0]);
+		try (Medicion medicion = Metricas.iniciar(medidor.getNombre())) {
+			HttpResponse<InputStream> respuesta = recibir(peticion, medicion);
+			try (InputStream cuerpo = descomprimir(respuesta, medidor::sumarBytes)) {
+				Respuesta leida = new Respuesta(respuesta.statusCode(), new String(cuerpo.readAllBytes(), StandardCharsets.UTF_8));
+				if (leida.esOk()) {
+					medicion.correcta();
+				} else {
+					medicion.fallida("respondió " + leida.estado());
+				}
+				return leida;
+			}
+		}
+	}
+
+	private HttpResponse<InputStream> recibir(HttpRequest.Builder peticion, Medicion medicion) throws IOException {
+		try {
+			return http.send(peticion.build(), HttpResponse.BodyHandlers.ofInputStream());
+		} catch (IOException e) {
+			medicion.fallida(e.toString());
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			medicion.fallida("interrumpida");
+			throw new InterruptedIOException("Petición interrumpida");
+		}
+	}
+
+	private static String codificar(String valor) {
+		return URLEncoder.encode(valor, StandardCharsets.UTF_8);
+	}
+
+	// Los bytes se cuentan antes de descomprimir: son los que viajan por la red. Un 304, un 204 o un cuerpo vacío
+	// pueden traer Content-Encoding: gzip sin cabecera gzip que leer, y GZIPInputStream lanzaría EOFException
+	private static InputStream descomprimir(HttpResponse<InputStream> respuesta, LongConsumer alCerrar) throws IOException {
+		boolean gzip = respuesta.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+		InputStream recibido = new ContadorBytes(respuesta.body(), alCerrar);
+		if (!gzip || sinCuerpo(respuesta.statusCode())) {
+			return recibido;
+		}
+		BufferedInputStream conPrimerByte = new BufferedInputStream(recibido);
+		try {
+			conPrimerByte.mark(1);
+			boolean vacio = conPrimerByte.read() < 0;
+			conPrimerByte.reset();
+			return vacio ? conPrimerByte : new GZIPInputStream(conPrimerByte);
+		} catch (IOException e) {
+			conPrimerByte.close();
+			throw e;
+		}
+	}
+
+	private static boolean sinCuerpo(int estado) {
+		return estado == 304 || estado == 204;
+	}
+
+	public record Respuesta(int estado, String cuerpo) {
+		public boolean esOk() {
+			return estado == 200;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package ej.API;
+
+import ej.Datos.ColaEscrituras;
+import ej.Datos.DiarioEscrituras;
+import ej.Diagnostico.Metricas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Escrituras a la API que sobreviven a un corte de red. Cada una se anota en
+ * el {@link DiarioEscrituras} antes de enviarla y pasa por la
+ * {@link ColaEscrituras}, de una en una y en orden. Si no se puede abrir la
+ * conexión se reintenta con espera creciente, hasta {@link #ESPERA_MAXIMA_MS},
+ * sin dejar pasar a las siguientes; al cerrar la aplicación las que quedan se
+ * reenvían con {@link #iniciarSesion(int)} cuando vuelve a entrar el mismo
+ * usuario, salvo las de tablas con datos personales, que el diario no guarda
+ * en disco.
+ * <p>
+ * Solo se reintenta lo que no llegó a salir. Si la conexión se abrió y falla
+ * después (se agota la espera de la respuesta, se corta a medias), el servidor
+ * puede haber aplicado ya la escritura, y insertar.php y lote.php no son
+ * idempotentes: reenviarla duplicaría filas. La entrada se cierra y la
+ * escritura termina con error.
+ * <p>
+ * Una actualización o un borrado que no salió a la primera lleva la huella de
+ * la fila tal como se vio al editarla. Antes de reenviarla se compara con la
+ * fila actual del servidor: si alguien la ha cambiado entretanto, se pregunta
+ * con {@link Decision} si se aplica igualmente.
+ * <p>
+ * El cuerpo de una escritura puede no estar listo al pedirla (faltan ids que
+ * hay que buscar, o una imagen que se está codificando). Su sitio en la cola
+ * se reserva igualmente en el momento: se anota en el diario en cuanto el
+ * cuerpo está completo y, cuando le llega el turno, espera a tenerlo antes de
+ * enviarse, sin que las escrituras pedidas después se le adelanten.
+ */
+public class EscritorApi {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EscritorApi.class);
+
+	public static final long ESPERA_INICIAL_MS = 1000;
+	public static final long ESPERA_MAXIMA_MS = 60_000;
+
+	private final ClienteApi api;
+	private final DiarioEscrituras diario;
+	private final ColaEscrituras cola;
+	private final Comprobador comprobador;
+	private final Decision decision;
+	private final Runnable alCambiarConexion;
+	// Números de las entradas que ya están en la cola, para no encolarlas dos veces al volver a iniciar sesión
+	private final Set<Long> enCola = ConcurrentHashMap.newKeySet();
+	private volatile int usuario;
+	private volatile boolean sinConexion;
+
+	// alCambiarConexion se llama desde el hilo de escrituras al perder o recuperar la conexión
+	public EscritorApi(ClienteApi api, DiarioEscrituras diario, ColaEscrituras cola,
+					   Comprobador comprobador, Decision decision, Runnable alCambiarConexion) {
+		this.api = api;
+		this.diario = diario;
+		this.cola = cola;
+		this.comprobador = comprobador;
+		this.decision = decision;
+		this.alCambiarConexion = alCambiarConexion;
+	}
+
+	public CompletableFuture<ClienteApi.Respuesta> post(String ruta, String json, String tabla, int id, String huella) {
+		return enviar("POST", ruta, CompletableFuture.completedFuture(json), tabla, id, huella);
+	}
+
+	// Si cuerpo falla, la escritura falla con ese motivo sin anotarse ni enviarse
+	public CompletableFuture<ClienteApi.Respuesta> post(String ruta, CompletableFuture<String> cuerpo, String tabla, int id, String huella) {
+		return enviar("POST", ruta, cuerpo, tabla, id, huella);
+	}
+
+	public CompletableFuture<ClienteApi.Respuesta> delete(String ruta, String json, String tabla, int id, String huella) {
+		return enviar("DELETE", ruta, CompletableFuture.completedFuture(json), tabla, id, huella);
+	}
+
+	// Tras el login: las escrituras nuevas quedan a nombre de idUsuario y se reenvían, en su orden, las que
+	// dejó sin confirmar en otra sesión, comprobándolas siempre contra el servidor. Las de otros usuarios
+	// esperan a que entren ellos; las anotadas antes de guardar el usuario (0) se reenvían en la primera sesión
+	public Map<DiarioEscrituras.Entrada, CompletableFuture<ClienteApi.Respuesta>> iniciarSesion(int idUsuario) {
+		usuario = idUsuario;
+		Map<DiarioEscrituras.Entrada, CompletableFuture<ClienteApi.Respuesta>> reenvios = new LinkedHashMap<>();
+		for (DiarioEscrituras.Entrada entrada : diario.abiertas()) {
+			if ((entrada.usuario() == idUsuario || entrada.usuario() == 0) && enCola.add(entrada.numero())) {
+				reenvios.put(entrada, encolar(CompletableFuture.completedFuture(entrada), true));
+			}
+		}
+		return reenvios;
+	}
+
+	public boolean isSinConexion() {
+		return sinConexion;
+	}
+
+	// Con el cuerpo ya completo se anota aquí mismo, antes de volver
+	private CompletableFuture<ClienteApi.Respuesta> enviar(String metodo, String ruta, CompletableFuture<String> cuerpo, String tabla, int id, String huella) {
+		int deUsuario = usuario;
+		CompletableFuture<DiarioEscrituras.Entrada> anotada = cuerpo.thenApply(json -> {
+			try {
+				DiarioEscrituras.Entrada entrada = diario.anotar(deUsuario, metodo, ruta, json, tabla, id, huella);
+				enCola.add(entrada.numero());
+				return entrada;
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		});
+		return encolar(anotada, false);
+	}
+
+	private CompletableFuture<ClienteApi.Respuesta> encolar(CompletableFuture<DiarioEscrituras.Entrada> anotada, boolean deOtraSesion) {
+		CompletableFuture<ClienteApi.Respuesta> envio = cola.enviar(() -> {
+			DiarioEscrituras.Entrada entrada = esperar(anotada);
+			boolean retrasada = deOtraSesion;
+			boolean comprobada = false;
+			for (int intento = 0; ; intento++) {
+				try {
+					if (retrasada && !comprobada && entrada.huella() != null) {
+						String actual = comprobador.huellaEnServidor(entrada.tabla(), entrada.id());
+						if (!entrada.huella().equals(actual) && !decision.aplicarIgualmente(entrada)) {
+							cerrar(entrada);
+							throw new ConflictoException(entrada);
+						}
+						// Si después falla el envío, al reintentar no se vuelve a preguntar
+						comprobada = true;
+					}
+					ClienteApi.Respuesta respuesta = "DELETE".equals(entrada.metodo())
+							? api.delete(entrada.ruta(), entrada.cuerpo())
+							: api.post(entrada.ruta(), entrada.cuerpo());
+					conexion(true);
+					// Un error del servidor también cierra la entrada: reenviarla daría el mismo error
+					cerrar(entrada);
+					return respuesta;
+				} catch (ConnectException | HttpConnectTimeoutException e) {
+					// El servidor no ha visto la petición: reenviarla es seguro
+					conexion(false);
+					retrasada = true;
+					Thread.sleep(Math.min(ESPERA_MAXIMA_MS, ESPERA_INICIAL_MS << Math.min(intento, 16)));
+				} catch (IOException e) {
+					cerrar(entrada);
+					throw new IOException("Sin respuesta de " + entrada.ruta() + "; la escritura puede haberse aplicado en el servidor", e);
+				}
+			}
+		});
+		envio.whenComplete((respuesta, error) -> anotada.thenAccept(entrada -> enCola.remove(entrada.numero())));
+		return envio;
+	}
+
+	// En el hilo de escrituras: lo que haya ido mal al preparar el cuerpo o al anotarlo es el error de la escritura
+	private static DiarioEscrituras.Entrada esperar(CompletableFuture<DiarioEscrituras.Entrada> anotada) throws Exception {
+		try {
+			return anotada.join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof Exception causa ? causa : e;
+		}
+	}
+
+	// Si no se puede marcar como hecha, se reenviará en el próximo arranque
+	private void cerrar(DiarioEscrituras.Entrada entrada) {
+		try {
+			diario.cerrar(entrada);
+		} catch (IOException e) {
+			LOG.warn("No se pudo cerrar la escritura {} en el diario", entrada.numero(), e);
+			Metricas.contarFallo("diario cerrar");
+		}
+	}
+
+	private void conexion(boolean hay) {
+		if (sinConexion == hay) {
+			sinConexion = !hay;
+			alCambiarConexion.run();
+		}
+	}
+
+	@FunctionalInterface
+	public interface Comprobador {
+		// Huella de la fila tal como está ahora en el servidor; null si ya no existe
+		String huellaEnServidor(String tabla, int id) throws IOException;
+	}
+
+	@FunctionalInterface
+	public interface Decision {
+		// Se llama desde el hilo de escrituras, que espera la respuesta antes de seguir con las demás
+		boolean aplicarIgualmente(DiarioEscrituras.Entrada entrada) throws InterruptedException;
+	}
+
+	// La fila cambió en el servidor mientras la escritura esperaba y se decidió no aplicarla
+	public static class ConflictoException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		// Solo para quien la recibe en esta sesión; no se serializa
+		private final transient DiarioEscrituras.Entrada entrada;
+
+		public ConflictoException(DiarioEscrituras.Entrada entrada) {
+			super("La fila " + entrada.id() + " de " + entrada.tabla() + " cambió en el servidor");
+			this.entrada = entrada;
+		}
+
+		public DiarioEscrituras.Entrada getEntrada() {
+			return entrada;
+		}
+	}
+}
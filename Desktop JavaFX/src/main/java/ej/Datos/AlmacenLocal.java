@@ -0,0 +1,91 @@
+package ej.Datos;
+
+import com.google.gson.stream.JsonWriter;
+import ej.Diagnostico.Metricas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Última copia conocida de las tablas de catálogo en disco, para pintar las
+ * listas al arrancar sin esperar a la red. Cada tabla es un archivo
+ * {@code <tabla>-v<FORMATO>-<campos>.json.gz} con el mismo JSON que devuelve
+ * leer.php?since= (filas y versión), así que se lee con {@link LectorTabla}
+ * y, al reconciliar, basta con pedir los cambios desde esa versión.
+ * <p>
+ * Los archivos van en {@code ~/.escolavision/cache/<servidor>}: cada servidor
+ * de la API tiene los suyos. Un archivo ilegible o de otro formato se ignora
+ * y la tabla se descarga como siempre.
+ */
+public class AlmacenLocal {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AlmacenLocal.class);
+
+	// Se sube al cambiar cómo se escriben los archivos; los de otro formato dejan de leerse
+	public static final int FORMATO = 1;
+
+	private final Path directorio;
+
+	public AlmacenLocal(Path directorio) {
+		this.directorio = directorio;
+	}
+
+	public static AlmacenLocal enCarpetaDeUsuario(String urlApi) {
+		return new AlmacenLocal(Path.of(System.getProperty("user.home"), ".escolavision", "cache", nombreServidor(urlApi)));
+	}
+
+	// La URL de la API como nombre de carpeta: sin esquema y sin caracteres que el sistema de archivos no admita
+	public static String nombreServidor(String urlApi) {
+		return urlApi.replaceFirst("^[a-z]+://", "").replaceAll("[^A-Za-z0-9.-]+", "_");
+	}
+
+	// null si no hay copia guardada o no se puede leer
+	public <T> LectorTabla.Cambios<T> leer(String tabla, Proyeccion<T> proyeccion) {
+		Path archivo = archivo(tabla, proyeccion);
+		if (!Files.isRegularFile(archivo)) {
+			return null;
+		}
+		try (InputStream entrada = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+			return LectorTabla.leerCambios(entrada, tabla, proyeccion);
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Copia local de {} descartada", tabla, e);
+			Metricas.contarFallo("disco leer " + tabla);
+			return null;
+		}
+	}
+
+	// Se escribe en un temporal y se renombra: quien lea a la vez ve la copia anterior o la nueva, nunca media
+	public <T> void guardar(String tabla, Proyeccion<T> proyeccion, List<T> filas, long version) throws IOException {
+		Files.createDirectories(directorio);
+		Path temporal = Files.createTempFile(directorio, tabla, ".tmp");
+		try {
+			try (JsonWriter escritor = new JsonWriter(new OutputStreamWriter(
+					new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal))), StandardCharsets.UTF_8))) {
+				escritor.beginObject();
+				escritor.name("version").value(version);
+				escritor.name(tabla).beginArray();
+				for (T fila : filas) {
+					proyeccion.escribir(escritor, fila);
+				}
+				escritor.endArray();
+				escritor.endObject();
+			}
+			Files.move(temporal, archivo(tabla, proyeccion), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporal);
+		}
+	}
+
+	// Los campos van en el nombre: si la proyección cambia, la copia vieja no se confunde con la nueva
+	private Path archivo(String tabla, Proyeccion<?> proyeccion) {
+		String campos = String.join(",", new TreeSet<>(proyeccion.getCampos()));
+		return directorio.resolve(tabla + "-v" + FORMATO + "-" + Integer.toHexString(campos.hashCode()) + ".json.gz");
+	}
+}
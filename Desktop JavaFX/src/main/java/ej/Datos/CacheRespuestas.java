@@ -0,0 +1,115 @@
+package ej.Datos;
+
+import ej.Diagnostico.ContadorBytes;
+import ej.Diagnostico.EventoJson;
+import ej.Diagnostico.Medicion;
+import ej.Diagnostico.Metricas;
+import ej.Estadisticas.ColumnasIntentos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Respuestas de leer.php ya convertidas a objetos de ej.Tablas, guardadas con
+ * el ETag con que llegaron. Cada petición repetida sale con If-None-Match y, si
+ * el servidor contesta 304, se devuelve el mismo objeto sin leer ni interpretar
+ * el JSON otra vez. Lo que se tarda en interpretar cada tabla se anota en
+ * {@link Metricas} como "json" y la tabla, y como un {@link EventoJson} de JFR
+ * con las filas leídas.
+ * <p>
+ * Las lecturas con since= de una misma tabla y mismos parámetros solo sirven
+ * hasta que llega otra más nueva: el llamante ya no vuelve a pedir la versión
+ * anterior, así que al guardar una se descarta la que había (también la de
+ * since=0, que es la tabla entera).
+ */
+public class CacheRespuestas {
+
+	public static final int MAX_ENTRADAS = 256;
+
+	private final CargadorTabla cargador;
+	private final Map<String, Entrada> entradas = new LinkedHashMap<>(64, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entrada> mayor) {
+			return size() > MAX_ENTRADAS;
+		}
+	};
+	// Por tabla y parámetros sin since, la clave de la última lectura con since= guardada
+	private final Map<String, String> ultimaConSince = new HashMap<>();
+
+	public CacheRespuestas(CargadorTabla cargador) {
+		this.cargador = cargador;
+	}
+
+	// Cada clave (tabla y parámetros) se lee siempre con el mismo intérprete, así que el tipo guardado es R
+	@SuppressWarnings("unchecked")
+	public <R> R leer(String tabla, Map<String, String> parametros, Interprete<R> interprete) throws IOException {
+		String clave = tabla + "?" + new TreeMap<>(parametros);
+		Entrada previa;
+		synchronized (this) {
+			previa = entradas.get(clave);
+		}
+		CargadorTabla.Lectura lectura = cargador.abrir(tabla, parametros, previa == null ? null : previa.etag());
+		if (lectura.sinCambios()) {
+			if (previa == null) {
+				throw new IOException("leer.php respondió 304 sin petición condicional para " + clave);
+			}
+			return (R) previa.valor();
+		}
+		R valor;
+		// Incluye la espera por el resto del cuerpo, que llega mientras se interpreta; los bytes ya descomprimidos
+		EventoJson evento = new EventoJson();
+		evento.begin();
+		try (ContadorBytes cuerpo = new ContadorBytes(lectura.cuerpo()); Medicion medicion = Metricas.iniciar("json " + tabla)) {
+			valor = interprete.leer(cuerpo);
+			medicion.bytes(cuerpo.getLeidos()).correcta();
+			evento.terminar(tabla, filas(valor), cuerpo.getLeidos());
+		}
+		synchronized (this) {
+			if (lectura.etag() != null) {
+				entradas.put(clave, new Entrada(lectura.etag(), valor));
+				if (parametros.containsKey("since")) {
+					descartarAnterior(tabla, parametros, clave);
+				}
+			} else {
+				entradas.remove(clave);
+			}
+		}
+		return valor;
+	}
+
+	private void descartarAnterior(String tabla, Map<String, String> parametros, String clave) {
+		Map<String, String> sinSince = new TreeMap<>(parametros);
+		sinSince.remove("since");
+		String anterior = ultimaConSince.put(tabla + "?" + sinSince, clave);
+		if (anterior != null && !anterior.equals(clave)) {
+			entradas.remove(anterior);
+		}
+	}
+
+	// Las filas de lo que devuelven los intérpretes de Repositorio y TablaEnMemoria; -1 si no se sabe contarlas
+	private static int filas(Object valor) {
+		if (valor instanceof LectorTabla.Cambios<?> cambios) {
+			return cambios.filas().size() + cambios.borrados().size();
+		} else if (valor instanceof Collection<?> filas) {
+			return filas.size();
+		} else if (valor instanceof Map<?, ?> filas) {
+			return filas.size();
+		} else if (valor instanceof ColumnasIntentos columnas) {
+			return columnas.getFilas();
+		}
+		return -1;
+	}
+
+	@FunctionalInterface
+	public interface Interprete<R> {
+		R leer(InputStream cuerpo) throws IOException;
+	}
+
+	private record Entrada(String etag, Object valor) {
+	}
+}
@@ -0,0 +1,18 @@
+package ej.Datos;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+@FunctionalInterface
+public interface CargadorTabla {
+	// Abre la respuesta de leer.php?tabla=<tabla>&<parametros> sin leerla. Con etag se manda If-None-Match
+	// y, si el servidor contesta 304, la lectura vuelve con cuerpo null
+	Lectura abrir(String tabla, Map<String, String> parametros, String etag) throws IOException;
+
+	record Lectura(InputStream cuerpo, String etag) {
+		public boolean sinCambios() {
+			return cuerpo == null;
+		}
+	}
+}
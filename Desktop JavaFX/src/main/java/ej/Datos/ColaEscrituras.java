@@ -0,0 +1,42 @@
+package ej.Datos;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Envía las escrituras a la API (insertar, actualizar, borrar, lotes) fuera
+ * del hilo de JavaFX, de una en una y en el orden en que se pidieron: guardar
+ * un elemento y borrarlo justo después llega al servidor en ese orden.
+ * A diferencia de las cargas, una escritura no se cancela al cambiar de pestaña.
+ */
+public class ColaEscrituras {
+
+	private final ExecutorService hilo = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("escrituras").factory());
+	private final AtomicInteger pendientes = new AtomicInteger();
+	private final IntConsumer alCambiarPendientes;
+
+	// alCambiarPendientes recibe el número de escrituras sin terminar; se llama desde cualquier hilo
+	public ColaEscrituras(IntConsumer alCambiarPendientes) {
+		this.alCambiarPendientes = alCambiarPendientes;
+	}
+
+	public <T> CompletableFuture<T> enviar(Callable<T> escritura) {
+		alCambiarPendientes.accept(pendientes.incrementAndGet());
+		CompletableFuture<T> resultado = new CompletableFuture<>();
+		hilo.execute(() -> {
+			try {
+				resultado.complete(escritura.call());
+			} catch (Throwable e) {
+				resultado.completeExceptionally(e);
+			} finally {
+				alCambiarPendientes.accept(pendientes.decrementAndGet());
+			}
+		});
+		return resultado;
+	}
+
+	public int getPendientes() {
+		return pendientes.get();
+	}
+}
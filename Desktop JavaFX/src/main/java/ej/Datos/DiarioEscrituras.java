@@ -0,0 +1,222 @@
+package ej.Datos;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import ej.Diagnostico.Metricas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Diario en disco de las escrituras a la API que aún no se han confirmado.
+ * Cada escritura se anota (y se fuerza a disco) antes de enviarla y se cierra
+ * cuando el servidor contesta, así que un corte de red o cerrar la aplicación
+ * no pierde el cambio: al volver a arrancar se reenvían las que quedaron
+ * abiertas, en el mismo orden.
+ * <p>
+ * Una línea JSON por anotación ({@code {"n":3,"metodo":"POST",...}}) o por
+ * cierre ({@code {"hecha":3}}). Cuando no queda ninguna abierta el archivo se
+ * vacía. Una última línea a medio escribir se ignora.
+ * <p>
+ * Las escrituras de tablas con datos personales ({@link #PERSONALES}: DNI,
+ * contraseñas, fotos, resultados) no se escriben en el archivo, igual que
+ * esas tablas no se guardan en {@link AlmacenLocal}: se reintentan mientras la
+ * aplicación esté abierta, pero no sobreviven a cerrarla. El archivo se crea
+ * solo legible por el usuario donde el sistema de archivos lo permite.
+ * <p>
+ * Si no se puede crear el archivo, {@link #enMemoria()} lleva la misma cuenta
+ * sin disco: los reintentos siguen funcionando mientras la aplicación esté abierta.
+ */
+public class DiarioEscrituras {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DiarioEscrituras.class);
+
+	public static final Set<String> PERSONALES = Set.of("usuario", "usuarios", "intentos");
+
+	private static final Set<PosixFilePermission> SOLO_USUARIO = PosixFilePermissions.fromString("rw-------");
+
+	private final Path archivo;
+	private final Map<Long, Entrada> abiertas = new LinkedHashMap<>();
+	// Números de las abiertas que están en el archivo, que son las que hay que cerrar también allí
+	private final Set<Long> enArchivo = new HashSet<>();
+	private long siguiente = 1;
+
+	public DiarioEscrituras(Path archivo) throws IOException {
+		this.archivo = archivo;
+		if (archivo != null) {
+			Files.createDirectories(archivo.getParent());
+			if (Files.isRegularFile(archivo)) {
+				// Un diario de una versión anterior pudo crearse con los permisos por defecto
+				restringir();
+				leer();
+				if (abiertas.isEmpty()) {
+					vaciar();
+				} else {
+					terminarLinea();
+				}
+			}
+		}
+	}
+
+	public static DiarioEscrituras enCarpetaDeUsuario(String urlApi) throws IOException {
+		return new DiarioEscrituras(Path.of(System.getProperty("user.home"), ".escolavision",
+				AlmacenLocal.nombreServidor(urlApi), "pendientes.jsonl"));
+	}
+
+	public static DiarioEscrituras enMemoria() {
+		try {
+			return new DiarioEscrituras(null);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// usuario es el id de quien hizo el cambio, para reenviarlo solo en una sesión suya. tabla, id y huella sirven
+	// para detectar conflictos al reenviar; con huella null no se comprueba nada
+	public synchronized Entrada anotar(int usuario, String metodo, String ruta, String cuerpo, String tabla, int id, String huella) throws IOException {
+		Entrada entrada = new Entrada(siguiente++, usuario, metodo, ruta, cuerpo, tabla, id, huella);
+		abiertas.put(entrada.numero(), entrada);
+		if (archivo == null || PERSONALES.contains(tabla)) {
+			return entrada;
+		}
+		JsonObject linea = new JsonObject();
+		linea.addProperty("n", entrada.numero());
+		linea.addProperty("usuario", usuario);
+		linea.addProperty("metodo", metodo);
+		linea.addProperty("ruta", ruta);
+		linea.addProperty("cuerpo", cuerpo);
+		linea.addProperty("tabla", tabla);
+		linea.addProperty("id", id);
+		linea.addProperty("huella", huella);
+		try {
+			escribir(linea);
+		} catch (IOException e) {
+			abiertas.remove(entrada.numero());
+			throw e;
+		}
+		enArchivo.add(entrada.numero());
+		return entrada;
+	}
+
+	public synchronized void cerrar(Entrada entrada) throws IOException {
+		if (abiertas.remove(entrada.numero()) == null) {
+			return;
+		}
+		if (!enArchivo.remove(entrada.numero())) {
+			return;
+		}
+		if (enArchivo.isEmpty()) {
+			// Nada pendiente en el archivo: se empieza uno nuevo en vez de dejarlo crecer
+			vaciar();
+			return;
+		}
+		JsonObject linea = new JsonObject();
+		linea.addProperty("hecha", entrada.numero());
+		escribir(linea);
+	}
+
+	public synchronized List<Entrada> abiertas() {
+		return new ArrayList<>(abiertas.values());
+	}
+
+	private void escribir(JsonObject linea) throws IOException {
+		byte[] bytes = (linea + "\n").getBytes(StandardCharsets.UTF_8);
+		if (!Files.exists(archivo)) {
+			crear();
+		}
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				canal.write(buffer);
+			}
+			// Hasta que force() vuelve, la escritura no se da por anotada
+			canal.force(true);
+		}
+	}
+
+	private void vaciar() throws IOException {
+		Files.write(archivo, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	// rw------- en sistemas POSIX; en Windows el archivo hereda los permisos de la carpeta del usuario
+	private void crear() throws IOException {
+		if (posix()) {
+			Files.createFile(archivo, PosixFilePermissions.asFileAttribute(SOLO_USUARIO));
+		} else {
+			Files.createFile(archivo);
+		}
+	}
+
+	private void restringir() throws IOException {
+		if (posix()) {
+			Files.setPosixFilePermissions(archivo, SOLO_USUARIO);
+		}
+	}
+
+	private boolean posix() {
+		return archivo.getFileSystem().supportedFileAttributeViews().contains("posix");
+	}
+
+	// Tras un corte a medio escribir, la siguiente anotación empieza en su propia línea
+	private void terminarLinea() throws IOException {
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer ultimo = ByteBuffer.allocate(1);
+			if (canal.size() > 0 && canal.read(ultimo, canal.size() - 1) == 1 && ultimo.get(0) != '\n') {
+				canal.write(ByteBuffer.wrap(new byte[]{'\n'}), canal.size());
+				canal.force(true);
+			}
+		}
+	}
+
+	private void leer() throws IOException {
+		try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+			String texto;
+			while ((texto = lector.readLine()) != null) {
+				if (texto.isBlank()) {
+					continue;
+				}
+				JsonObject linea;
+				try {
+					linea = JsonParser.parseString(texto).getAsJsonObject();
+				} catch (RuntimeException e) {
+					// Solo puede pasar con la última línea si se cortó a medio escribir
+					LOG.warn("Línea del diario descartada", e);
+					Metricas.contarFallo("diario leer");
+					continue;
+				}
+				if (linea.has("hecha")) {
+					abiertas.remove(linea.get("hecha").getAsLong());
+					enArchivo.remove(linea.get("hecha").getAsLong());
+				} else {
+					// Las anotadas antes de guardar el usuario quedan con 0
+					Entrada entrada = new Entrada(linea.get("n").getAsLong(), linea.has("usuario") ? linea.get("usuario").getAsInt() : 0,
+							linea.get("metodo").getAsString(),
+							linea.get("ruta").getAsString(), linea.get("cuerpo").getAsString(), linea.get("tabla").getAsString(),
+							linea.get("id").getAsInt(), linea.has("huella") && !linea.get("huella").isJsonNull() ? linea.get("huella").getAsString() : null);
+					abiertas.put(entrada.numero(), entrada);
+					enArchivo.add(entrada.numero());
+				}
+				siguiente = Math.max(siguiente, (linea.has("n") ? linea.get("n").getAsLong() : 0) + 1);
+			}
+		}
+	}
+
+	public record Entrada(long numero, int usuario, String metodo, String ruta, String cuerpo, String tabla, int id, String huella) {
+	}
+}
@@ -0,0 +1,99 @@
+package ej.Datos;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import ej.Diagnostico.Metricas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Lee la respuesta de leer.php ({@code {"<tabla>": [ {...}, ... ]}}) en streaming,
+ * fila a fila, sin pasar por un StringBuilder ni por el árbol de org.json.
+ * Con {@code since=} la respuesta trae además {@code version}, {@code delta} y
+ * {@code borrados}, que se leen con {@link #leerCambios}. Con {@link #recorrer}
+ * cada fila se entrega según se lee, sin guardarlas en una lista.
+ */
+public final class LectorTabla {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LectorTabla.class);
+
+	private LectorTabla() {
+	}
+
+	public static <T> List<T> leer(InputStream entrada, String tabla, Proyeccion<T> proyeccion) throws IOException {
+		return leerCambios(entrada, tabla, proyeccion).filas();
+	}
+
+	public static <T> Cambios<T> leerCambios(InputStream entrada, String tabla, Proyeccion<T> proyeccion) throws IOException {
+		List<T> filas = new ArrayList<>();
+		Set<Integer> borrados = new HashSet<>();
+		long version = 0;
+		boolean delta = false;
+		try (JsonReader lector = new JsonReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+			lector.beginObject();
+			while (lector.hasNext()) {
+				String campo = lector.nextName();
+				if (campo.equals(tabla)) {
+					leerFilas(lector, tabla, proyeccion, filas::add);
+				} else if (campo.equals("version") && lector.peek() == JsonToken.NUMBER) {
+					version = lector.nextLong();
+				} else if (campo.equals("delta") && lector.peek() == JsonToken.BOOLEAN) {
+					delta = lector.nextBoolean();
+				} else if (campo.equals("borrados") && lector.peek() == JsonToken.BEGIN_ARRAY) {
+					lector.beginArray();
+					while (lector.hasNext()) {
+						borrados.add(lector.nextInt());
+					}
+					lector.endArray();
+				} else {
+					lector.skipValue();
+				}
+			}
+			lector.endObject();
+		}
+		// Inmutables: CacheRespuestas puede devolver la misma lectura a varios llamantes
+		return new Cambios<>(Collections.unmodifiableList(filas), Collections.unmodifiableSet(borrados), version, delta);
+	}
+
+	public static <T> void recorrer(InputStream entrada, String tabla, Proyeccion<T> proyeccion, Consumer<T> destino) throws IOException {
+		try (JsonReader lector = new JsonReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+			lector.beginObject();
+			while (lector.hasNext()) {
+				if (lector.nextName().equals(tabla)) {
+					leerFilas(lector, tabla, proyeccion, destino);
+				} else {
+					lector.skipValue();
+				}
+			}
+			lector.endObject();
+		}
+	}
+
+	private static <T> void leerFilas(JsonReader lector, String tabla, Proyeccion<T> proyeccion, Consumer<T> destino) throws IOException {
+		lector.beginArray();
+		while (lector.hasNext()) {
+			try {
+				destino.accept(proyeccion.leer(lector));
+			} catch (RuntimeException e) {
+				LOG.warn("Fila descartada en {}", tabla, e);
+				Metricas.contarFallo("json fila descartada " + tabla);
+			}
+		}
+		lector.endArray();
+	}
+
+	// Con delta = false, filas es la tabla entera; con delta = true, solo las filas nuevas o modificadas
+	public record Cambios<T>(List<T> filas, Set<Integer> borrados, long version, boolean delta) {
+	}
+}
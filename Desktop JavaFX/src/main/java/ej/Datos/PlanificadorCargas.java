@@ -0,0 +1,109 @@
+package ej.Datos;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Ejecuta las cargas de las pestañas en hilos virtuales, con un máximo de
+ * cargas simultáneas. Las cargas se agrupan (normalmente por pestaña) para
+ * poder cancelarlas todas al salir de ella, y dos peticiones con la misma
+ * clave mientras la primera sigue en curso comparten una única ejecución.
+ * La tarea solo se interrumpe cuando ya no queda nadie esperando su resultado.
+ */
+public class PlanificadorCargas {
+
+	public static final int MAX_CARGAS_SIMULTANEAS = 4;
+
+	private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+	private final Semaphore permisos;
+	private final Map<String, Carga<?>> enCurso = new HashMap<>();
+	private final Map<Object, Set<CompletableFuture<?>>> porGrupo = new HashMap<>();
+
+	public PlanificadorCargas() {
+		this(MAX_CARGAS_SIMULTANEAS);
+	}
+
+	public PlanificadorCargas(int maxSimultaneas) {
+		this.permisos = new Semaphore(maxSimultaneas);
+	}
+
+	@SuppressWarnings("unchecked")
+	public synchronized <T> CompletableFuture<T> cargar(Object grupo, String clave, Callable<T> tarea) {
+		Carga<T> carga = (Carga<T>) enCurso.get(clave);
+		if (carga == null) {
+			Carga<T> nueva = new Carga<>();
+			enCurso.put(clave, nueva);
+			nueva.tarea = hilos.submit(() -> ejecutar(clave, nueva, tarea));
+			carga = nueva;
+		}
+		CompletableFuture<T> interesado = new CompletableFuture<>();
+		carga.interesados.add(interesado);
+		porGrupo.computeIfAbsent(grupo, g -> new HashSet<>()).add(interesado);
+		interesado.whenComplete((valor, error) -> olvidar(grupo, clave, interesado));
+		return interesado;
+	}
+
+	public void cancelar(Object grupo) {
+		List<CompletableFuture<?>> pendientes;
+		synchronized (this) {
+			Set<CompletableFuture<?>> grupoActual = porGrupo.remove(grupo);
+			if (grupoActual == null) {
+				return;
+			}
+			pendientes = new ArrayList<>(grupoActual);
+		}
+		pendientes.forEach(f -> f.cancel(true));
+	}
+
+	// Tras una escritura, las peticiones nuevas no deben unirse a cargas que empezaron antes de ella
+	public synchronized void descartarEnCurso() {
+		enCurso.clear();
+	}
+
+	private <T> void ejecutar(String clave, Carga<T> carga, Callable<T> tarea) {
+		T valor = null;
+		Throwable error = null;
+		try {
+			permisos.acquire();
+			try {
+				valor = tarea.call();
+			} finally {
+				permisos.release();
+			}
+		} catch (Throwable e) {
+			error = e;
+		}
+
+		List<CompletableFuture<T>> destino;
+		synchronized (this) {
+			enCurso.remove(clave, carga);
+			destino = new ArrayList<>(carga.interesados);
+			carga.interesados.clear();
+		}
+		// Se completan fuera del cerrojo: los whenComplete de los interesados vuelven a entrar en olvidar()
+		for (CompletableFuture<T> interesado : destino) {
+			if (error == null) {
+				interesado.complete(valor);
+			} else {
+				interesado.completeExceptionally(error);
+			}
+		}
+	}
+
+	private synchronized void olvidar(Object grupo, String clave, CompletableFuture<?> interesado) {
+		Set<CompletableFuture<?>> grupoActual = porGrupo.get(grupo);
+		if (grupoActual != null && grupoActual.remove(interesado) && grupoActual.isEmpty()) {
+			porGrupo.remove(grupo);
+		}
+		Carga<?> carga = enCurso.get(clave);
+		if (carga != null && carga.interesados.remove(interesado) && carga.interesados.isEmpty()) {
+			enCurso.remove(clave);
+			carga.tarea.cancel(true);
+		}
+	}
+
+	private static final class Carga<T> {
+		final Set<CompletableFuture<T>> interesados = new HashSet<>();
+		Future<?> tarea;
+	}
+}
@@ -0,0 +1,138 @@
+package ej.Datos;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Convierte una fila de leer.php en un objeto de ej.Tablas leyendo solo los
+ * campos indicados. El resto (fotos y logos en base64, sobre todo) se salta
+ * con {@link JsonReader#skipValue()} sin llegar a crear el String.
+ * <p>
+ * Las proyecciones con {@link #reversible} saben además escribir el objeto de
+ * vuelta como fila y dar su {@link #huella}; las {@link #guardable} pueden
+ * además guardar la tabla en disco con {@link AlmacenLocal}.
+ */
+public class Proyeccion<T> {
+
+	private final Set<String> campos;
+	private final Function<Fila, T> constructor;
+	private Function<T, Map<String, Object>> inversa;
+	private boolean guardable;
+
+	public Proyeccion(Set<String> campos, Function<Fila, T> constructor) {
+		this.campos = campos;
+		this.constructor = constructor;
+	}
+
+	// inversa da, para cada campo de la proyección, el valor que el constructor leería de la fila
+	public Proyeccion<T> reversible(Function<T, Map<String, Object>> inversa) {
+		this.inversa = inversa;
+		return this;
+	}
+
+	public Proyeccion<T> guardable(Function<T, Map<String, Object>> inversa) {
+		guardable = true;
+		return reversible(inversa);
+	}
+
+	public boolean esGuardable() {
+		return guardable;
+	}
+
+	public boolean esReversible() {
+		return inversa != null;
+	}
+
+	// Resumen de los campos de la fila: dos objetos con la misma huella tienen los mismos valores en el servidor
+	public String huella(T objeto) {
+		try {
+			MessageDigest sha = MessageDigest.getInstance("SHA-256");
+			String campos = new TreeMap<>(inversa.apply(objeto)).toString();
+			return HexFormat.of().formatHex(sha.digest(campos.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public Set<String> getCampos() {
+		return campos;
+	}
+
+	// Siempre consume el objeto entero, aunque luego el constructor falle, para no desalinear el lector
+	T leer(JsonReader lector) throws IOException {
+		Fila fila = new Fila();
+		lector.beginObject();
+		while (lector.hasNext()) {
+			String campo = lector.nextName();
+			if (!campos.contains(campo)) {
+				lector.skipValue();
+				continue;
+			}
+			switch (lector.peek()) {
+				case NULL -> {
+					lector.nextNull();
+					fila.valores.put(campo, null);
+				}
+				case BOOLEAN -> fila.valores.put(campo, lector.nextBoolean() ? "1" : "0");
+				case STRING, NUMBER -> fila.valores.put(campo, lector.nextString());
+				default -> lector.skipValue();
+			}
+		}
+		lector.endObject();
+		return constructor.apply(fila);
+	}
+
+	void escribir(JsonWriter escritor, T objeto) throws IOException {
+		escritor.beginObject();
+		for (Map.Entry<String, Object> campo : inversa.apply(objeto).entrySet()) {
+			escritor.name(campo.getKey());
+			if (campo.getValue() == null) {
+				escritor.nullValue();
+			} else if (campo.getValue() instanceof Number numero) {
+				escritor.value(numero);
+			} else {
+				escritor.value(campo.getValue().toString());
+			}
+		}
+		escritor.endObject();
+	}
+
+	public static final class Fila {
+		private final Map<String, String> valores = new HashMap<>();
+
+		public boolean tiene(String campo) {
+			return valores.get(campo) != null;
+		}
+
+		public String texto(String campo) {
+			String valor = valores.get(campo);
+			if (valor == null) {
+				throw new IllegalStateException("Campo " + campo + " ausente o nulo");
+			}
+			return valor;
+		}
+
+		public String textoOpcional(String campo) {
+			return valores.get(campo);
+		}
+
+		public int entero(String campo) {
+			return Integer.parseInt(texto(campo).trim());
+		}
+
+		public int enteroOpcional(String campo, int porDefecto) {
+			return tiene(campo) ? entero(campo) : porDefecto;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package ej.Datos;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lee listas de ids escritas a mano, separadas por comas y con rangos
+ * ("3, 5, 8-12"). Solo mira el texto: si los ids existen lo decide quien los
+ * use, y el tamaño se comprueba antes de generar ninguno, para que un rango
+ * como "1-999999999" no llegue a recorrerse.
+ */
+public final class RangosIds {
+
+	private RangosIds() {
+	}
+
+	/**
+	 * Ids distintos en el orden en que aparecen.
+	 *
+	 * @throws IllegalArgumentException si el texto no es una lista de ids o
+	 *                                  tiene más de {@code maximo}
+	 */
+	public static List<Integer> leer(String texto, int maximo) {
+		Set<Integer> ids = new LinkedHashSet<>();
+		for (String parte : texto.split(",")) {
+			String[] rango = parte.trim().split("\\s*-\\s*", -1);
+			if (rango.length == 1 && rango[0].isEmpty()) {
+				continue;
+			}
+			if (rango.length > 2) {
+				throw new IllegalArgumentException("\"" + parte.trim() + "\" no es un id ni un rango");
+			}
+			int desde = id(rango[0]);
+			int hasta = rango.length == 2 ? id(rango[1]) : desde;
+			if (hasta < desde) {
+				throw new IllegalArgumentException("El rango " + desde + "-" + hasta + " está al revés");
+			}
+			// En long: hasta - desde no cabe en un int con ids grandes
+			if ((long) hasta - desde + 1 > maximo - ids.size()) {
+				throw new IllegalArgumentException("No se pueden indicar más de " + maximo + " ids a la vez");
+			}
+			for (int id = desde; id <= hasta && id > 0; id++) {
+				ids.add(id);
+			}
+		}
+		if (ids.isEmpty()) {
+			throw new IllegalArgumentException("No se ha indicado ningún id");
+		}
+		return new ArrayList<>(ids);
+	}
+
+	private static int id(String texto) {
+		try {
+			int id = Integer.parseInt(texto.trim());
+			if (id <= 0) {
+				throw new IllegalArgumentException("Los ids empiezan en 1: " + texto.trim());
+			}
+			return id;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("\"" + texto.trim() + "\" no es un id", e);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package ej.Datos;
+
+import ej.Estadisticas.AgregadosIntentos;
+import ej.Estadisticas.ColumnasIntentos;
+import ej.Tablas.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tablas de la API cacheadas en memoria para el cliente de escritorio.
+ * Tras guardar o borrar se invalida solo la tabla afectada con {@link #invalidar(String)}.
+ */
+public class Repositorio {
+
+	public static final long CADUCIDAD_MS = 60_000;
+
+	public static final String PXA_POR_AREA = "idarea";
+	public static final String PXA_POR_PREGUNTA = "idpregunta";
+
+	// Usuarios y áreas se proyectan sin foto ni logo: esos campos se piden aparte por id cuando hacen falta
+	// Las tablas de catálogo (tests, preguntas, áreas y pxa) son guardables: se conservan en disco entre sesiones.
+	// Usuarios e intentos solo son reversibles, para dar la huella con la que se detectan conflictos
+	static final Proyeccion<Test> TEST = new Proyeccion<>(Set.of("id", "nombretest", "isVisible"),
+			f -> new Test(f.entero("id"), f.texto("nombretest"), f.entero("isVisible")))
+			.guardable(t -> Map.of("id", t.getId(), "nombretest", t.getNombre(), "isVisible", t.getIsVisible()));
+
+	// El constructor recibe el enunciado como título y viceversa; la inversa los devuelve a su columna
+	static final Proyeccion<Pregunta> PREGUNTA = new Proyeccion<>(Set.of("id", "enunciado", "titulo", "idtest"),
+			f -> new Pregunta(f.entero("id"), f.texto("enunciado"), f.texto("titulo"), f.entero("idtest")))
+			.guardable(p -> Map.of("id", p.getId(), "enunciado", p.getTitulo(), "titulo", p.getEnunciado(), "idtest", p.getIdTest()));
+
+	static final Proyeccion<Alumno> ALUMNO = new Proyeccion<>(Set.of("id", "nombre", "dni", "contraseña", "fecha_nacimiento", "email"),
+			f -> new Alumno(f.entero("id"), f.texto("nombre"), f.texto("dni"), f.texto("contraseña"),
+					f.enteroOpcional("fecha_nacimiento", 0), null, f.texto("email")))
+			.reversible(a -> Map.of("id", a.getId(), "nombre", a.getNombre(), "dni", a.getDni(), "contraseña", a.getContraseña(),
+					"fecha_nacimiento", a.getEdad(), "email", a.getEmail()));
+
+	static final Proyeccion<Area> AREA = new Proyeccion<>(Set.of("id", "nombre", "descripción"),
+			f -> new Area(f.entero("id"), f.texto("nombre"), f.texto("descripción"), null))
+			.guardable(a -> Map.of("id", a.getId(), "nombre", a.getNombre(), "descripción", a.getDescripcion()));
+
+	static final Proyeccion<PxA> PXA = new Proyeccion<>(Set.of("id", "idpregunta", "idarea"),
+			f -> new PxA(f.entero("id"), f.entero("idpregunta"), f.entero("idarea")))
+			.guardable(p -> Map.of("id", p.getId(), "idpregunta", p.getPregunta().getId(), "idarea", p.getArea().getId()));
+
+	static final Proyeccion<Intentos> INTENTOS = new Proyeccion<>(Set.of("id", "idtest", "idusuario", "fecha", "hora", "resultados"),
+			f -> new Intentos(f.entero("id"), f.entero("idtest"), f.entero("idusuario"),
+					f.texto("fecha"), f.texto("hora"), f.texto("resultados")))
+			.reversible(i -> Map.of("id", i.getId(), "idtest", i.getTest().getId(), "idusuario", i.getAlumno().getId(),
+					"fecha", i.getFecha().toString(), "hora", i.getHora(), "resultados", i.getResultados()));
+
+	private final TablaEnMemoria<Test> tests;
+	private final TablaEnMemoria<Pregunta> preguntas;
+	private final TablaEnMemoria<Alumno> usuarios;
+	private final TablaEnMemoria<Area> areas;
+	private final TablaEnMemoria<PxA> pxa;
+	private final TablaEnMemoria<Intentos> intentos;
+	private final CacheRespuestas respuestas;
+	private CacheRespuestas estadisticas;
+
+	public Repositorio(CargadorTabla cargador) {
+		this(cargador, CADUCIDAD_MS, null);
+	}
+
+	public Repositorio(CargadorTabla cargador, AlmacenLocal almacen) {
+		this(cargador, CADUCIDAD_MS, almacen);
+	}
+
+	// Con almacen, las tablas de catálogo arrancan desde la copia en disco; usuarios e intentos nunca se guardan
+	public Repositorio(CargadorTabla cargador, long caducidad, AlmacenLocal almacen) {
+		respuestas = new CacheRespuestas(cargador);
+		tests = new TablaEnMemoria<>("tests", respuestas, TEST, Test::getId, Test::getNombre, caducidad)
+				.buscarNombresEnServidor();
+		preguntas = new TablaEnMemoria<>("preguntas", respuestas, PREGUNTA, Pregunta::getId, null, caducidad);
+		usuarios = new TablaEnMemoria<>("usuarios", respuestas, ALUMNO, Alumno::getId, Alumno::getNombre, caducidad)
+				.buscarNombresEnServidor();
+		areas = new TablaEnMemoria<>("areas", respuestas, AREA, Area::getId, Area::getNombre, caducidad)
+				.buscarNombresEnServidor();
+		pxa = new TablaEnMemoria<>("pxa", respuestas, PXA, PxA::getId, null, caducidad)
+				.indexarPor(PXA_POR_AREA, p -> p.getArea().getId())
+				.indexarPor(PXA_POR_PREGUNTA, p -> p.getPregunta().getId());
+		intentos = new TablaEnMemoria<>("intentos", respuestas, INTENTOS, Intentos::getId, null, caducidad);
+		if (almacen != null) {
+			tests.persistirEn(almacen);
+			preguntas.persistirEn(almacen);
+			areas.persistirEn(almacen);
+			pxa.persistirEn(almacen);
+		}
+	}
+
+	// Cargador de estadisticas.php; sin él, agregadosIntentos devuelve null y las estadísticas se calculan en local
+	public Repositorio conEstadisticas(CargadorTabla cargador) {
+		estadisticas = new CacheRespuestas(cargador);
+		return this;
+	}
+
+	public TablaEnMemoria<Test> getTests() {
+		return tests;
+	}
+
+	public TablaEnMemoria<Pregunta> getPreguntas() {
+		return preguntas;
+	}
+
+	public TablaEnMemoria<Alumno> getUsuarios() {
+		return usuarios;
+	}
+
+	public TablaEnMemoria<Area> getAreas() {
+		return areas;
+	}
+
+	public TablaEnMemoria<PxA> getPxA() {
+		return pxa;
+	}
+
+	public TablaEnMemoria<Intentos> getIntentos() {
+		return intentos;
+	}
+
+	public String leerFoto(int idUsuario) throws IOException {
+		return leerCampo("usuarios", idUsuario, "foto");
+	}
+
+	public String leerLogo(int idArea) throws IOException {
+		return leerCampo("areas", idArea, "logo");
+	}
+
+	private String leerCampo(String tabla, int id, String campo) throws IOException {
+		// Una foto o un logo sin cambios vuelve como 304 y se reutiliza el base64 ya recibido
+		List<String> valores = respuestas.leer(tabla, Map.of("id", String.valueOf(id), "fields", campo), cuerpo ->
+				LectorTabla.leer(cuerpo, tabla, new Proyeccion<>(Set.of(campo), f -> f.textoOpcional(campo))));
+		return valores.isEmpty() ? null : valores.getFirst();
+	}
+
+	// Para la vista de estadísticas: los intentos se leen en streaming directamente a columnas, sin crear un
+	// Intentos por fila. Si la tabla no ha cambiado (304) se reutilizan las mismas columnas y solo se vuelven a
+	// asignar los centros, que dependen de los usuarios
+	public ColumnasIntentos columnasIntentos() throws IOException {
+		Map<Integer, Integer> centros = respuestas.leer("usuarios", Map.of("fields", "id_centro"), cuerpo -> {
+			Map<Integer, Integer> centroPorUsuario = new HashMap<>();
+			LectorTabla.recorrer(cuerpo, "usuarios", new Proyeccion<>(Set.of("id", "id_centro"), f -> f), f ->
+					centroPorUsuario.put(f.entero("id"), f.enteroOpcional("id_centro", ColumnasIntentos.TODOS)));
+			return centroPorUsuario;
+		});
+		ColumnasIntentos columnas = respuestas.leer("intentos", Map.of("fields", "idtest,idusuario,fecha,resultados"), cuerpo -> {
+			ColumnasIntentos.Constructor constructor = new ColumnasIntentos.Constructor();
+			LectorTabla.recorrer(cuerpo, "intentos", new Proyeccion<>(Set.of("idtest", "idusuario", "fecha", "resultados"), f -> f), f ->
+					constructor.anadir(f.entero("idtest"), f.entero("idusuario"), f.texto("fecha"), f.textoOpcional("resultados")));
+			return constructor.construir();
+		});
+		return columnas.conCentros(centros);
+	}
+
+	// Agregados de los intentos calculados en el servidor: una respuesta de unos pocos KB en lugar de la tabla
+	// entera. Con idCentro > 0 solo los de ese centro. Un 304 reutiliza los ya leídos
+	public AgregadosIntentos agregadosIntentos(int idCentro) throws IOException {
+		if (estadisticas == null) {
+			return null;
+		}
+		Map<String, String> parametros = idCentro > 0 ? Map.of("id_centro", String.valueOf(idCentro)) : Map.of();
+		return estadisticas.leer("estadisticas", parametros, AgregadosIntentos::leer);
+	}
+
+	// Huella de la fila tal como está en la copia en memoria, sin descargar nada; null si no está
+	public String huella(String tipo, int id) {
+		TablaEnMemoria<?> tabla = tabla(tipo);
+		return tabla == null ? null : tabla.huellaEnCopia(id);
+	}
+
+	// Huella de la fila que hay ahora en el servidor; null si ya no existe
+	public String huellaEnServidor(String tipo, int id) throws IOException {
+		TablaEnMemoria<?> tabla = tabla(tipo);
+		return tabla == null ? null : tabla.huellaEnServidor(id);
+	}
+
+	private TablaEnMemoria<?> tabla(String tipo) {
+		return switch (tipo) {
+			case "test", "tests" -> tests;
+			case "pregunta", "preguntas" -> preguntas;
+			case "usuario", "usuarios" -> usuarios;
+			case "area", "areas" -> areas;
+			case "pxa" -> pxa;
+			case "intentos" -> intentos;
+			default -> null;
+		};
+	}
+
+	// Acepta tanto el tipo de la interfaz ("test", "usuario") como el nombre de la tabla ("tests", "usuarios")
+	public void invalidar(String tipo) {
+		switch (tipo) {
+			case "test", "tests" -> tests.invalidar();
+			case "pregunta", "preguntas" -> preguntas.invalidar();
+			case "usuario", "usuarios" -> {
+				// Borrar un usuario borra también sus intentos
+				usuarios.invalidar();
+				intentos.invalidar();
+			}
+			case "area", "areas" -> areas.invalidar();
+			case "pxa" -> pxa.invalidar();
+			case "intentos" -> intentos.invalidar();
+			default -> invalidarTodo();
+		}
+	}
+
+	public void invalidarTodo() {
+		tests.invalidar();
+		preguntas.invalidar();
+		usuarios.invalidar();
+		areas.invalidar();
+		pxa.invalidar();
+		intentos.invalidar();
+	}
+}
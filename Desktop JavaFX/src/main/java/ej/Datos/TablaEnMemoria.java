@@ -0,0 +1,483 @@
+package ej.Datos;
+
+import ej.Diagnostico.Metricas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Copia en memoria de una tabla de la API, indexada por id, por nombre y por
+ * los índices secundarios que se registren con {@link #indexarPor}.
+ * <p>
+ * Política de refresco: la copia se descarga la primera vez que se consulta y
+ * caduca pasado {@code caducidad} milisegundos. {@link #invalidar()} la marca
+ * como caducada tras una escritura. Si se pide un id o nombre que no está, se recarga
+ * una sola vez siempre que la copia tenga más de {@link #MARGEN_RECARGA_MS} ms,
+ * para ver filas creadas desde otro equipo sin recargar en cada fallo.
+ * <p>
+ * Si leer.php devuelve versión ({@code since=}), recargar una copia caducada o
+ * invalidada solo trae las filas insertadas, modificadas o borradas desde
+ * entonces, que se fusionan con las que ya había.
+ * <p>
+ * Las listas de la interfaz se rellenan con {@link #pagina(int, int)}: si la
+ * copia completa no está vigente se pide solo esa página a leer.php, y sus
+ * filas sirven para las búsquedas por id o nombre sin descargar la tabla entera.
+ * <p>
+ * Con {@link #persistirEn} cada copia completa se guarda en disco. Al arrancar,
+ * la primera consulta usa esa copia al momento y la pone al día en segundo
+ * plano; hasta entonces las listas muestran lo último que se vio.
+ */
+public class TablaEnMemoria<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TablaEnMemoria.class);
+
+	static final long MARGEN_RECARGA_MS = 2000;
+
+	private final String tabla;
+	private final CacheRespuestas respuestas;
+	private final Proyeccion<T> proyeccion;
+	private final ToIntFunction<T> id;
+	private final Function<T, String> nombre;
+	private final long caducidad;
+	private final Map<String, ToIntFunction<T>> clavesIndices = new LinkedHashMap<>();
+	private boolean nombreEnServidor;
+	private AlmacenLocal almacen;
+	private boolean discoLeido;
+	private final AtomicBoolean reconciliando = new AtomicBoolean();
+
+	private volatile Instantanea<T> instantanea;
+	// Filas recibidas por páginas mientras no hay copia completa
+	private volatile Instantanea<T> parcial;
+	private final AtomicLong version = new AtomicLong();
+
+	public TablaEnMemoria(String tabla, CacheRespuestas respuestas, Proyeccion<T> proyeccion,
+						  ToIntFunction<T> id, Function<T, String> nombre, long caducidad) {
+		this.tabla = tabla;
+		this.respuestas = respuestas;
+		this.proyeccion = proyeccion;
+		this.id = id;
+		this.nombre = nombre;
+		this.caducidad = caducidad;
+	}
+
+	public TablaEnMemoria<T> indexarPor(String indice, ToIntFunction<T> clave) {
+		clavesIndices.put(indice, clave);
+		return this;
+	}
+
+	// Sin copia completa vigente, porNombre pregunta a leer.php?nombre= en vez de descargar la tabla
+	public TablaEnMemoria<T> buscarNombresEnServidor() {
+		nombreEnServidor = true;
+		return this;
+	}
+
+	// Solo para tablas cuya proyección sea guardable; las de datos personales no se dejan en disco
+	public TablaEnMemoria<T> persistirEn(AlmacenLocal almacen) {
+		if (!proyeccion.esGuardable()) {
+			throw new IllegalArgumentException("La proyección de " + tabla + " no se puede guardar en disco");
+		}
+		this.almacen = almacen;
+		return this;
+	}
+
+	public String getTabla() {
+		return tabla;
+	}
+
+	public List<T> todos() throws IOException {
+		return vigente().filas;
+	}
+
+	public T porId(int clave) throws IOException {
+		return buscar(i -> i.porId.get(clave));
+	}
+
+	public T porNombre(String clave) throws IOException {
+		return clave == null ? null : buscarNombre(clave, true, i -> i.porNombre.get(clave), clave::equals);
+	}
+
+	public T porNombreSinMayusculas(String clave) throws IOException {
+		if (clave == null) {
+			return null;
+		}
+		String minusculas = clave.toLowerCase(Locale.ROOT);
+		return buscarNombre(clave, false, i -> i.porNombreSinMayusculas.get(minusculas), n -> n.toLowerCase(Locale.ROOT).equals(minusculas));
+	}
+
+	public List<T> por(String indice, int clave) throws IOException {
+		Map<Integer, List<T>> mapa = vigente().indices.get(indice);
+		if (mapa == null) {
+			throw new IllegalArgumentException("Índice desconocido en " + tabla + ": " + indice);
+		}
+		return mapa.getOrDefault(clave, List.of());
+	}
+
+	// Filas con id mayor que despuesDe, en orden de id; sale de la copia completa si está vigente
+	public Pagina<T> pagina(int despuesDe, int limite) throws IOException {
+		Instantanea<T> actual = actual();
+		// Poner al día una copia con versión cuesta solo los cambios: sale más barato que pedir la página
+		if (actual != null && (!actual.caducada(caducidad) || actual.marca > 0)) {
+			actual = vigente();
+			int desde = actual.primeraDespuesDe(despuesDe);
+			int hasta = (int) Math.min((long) desde + limite, actual.ids.length);
+			return crearPagina(actual.ordenadas.subList(desde, hasta), hasta < actual.ids.length, despuesDe);
+		}
+		long antes = version.get();
+		Map<String, String> parametros = new LinkedHashMap<>(campos());
+		parametros.put("after_id", String.valueOf(despuesDe));
+		parametros.put("limit", String.valueOf(limite));
+		List<T> filas = leer(parametros);
+		acumular(antes, filas, despuesDe == 0);
+		// Un servidor sin paginación devuelve la tabla entera: entonces no hay más páginas
+		return crearPagina(filas, filas.size() == limite, despuesDe);
+	}
+
+	// La fila que ya hay en memoria, aunque la copia esté caducada; null si no está. Nunca descarga nada, así
+	// que se puede llamar desde el hilo de JavaFX
+	public T enCopia(int clave) {
+		for (Instantanea<T> copia : Arrays.asList(instantanea, parcial)) {
+			T fila = copia == null ? null : copia.porId.get(clave);
+			if (fila != null) {
+				return fila;
+			}
+		}
+		return null;
+	}
+
+	// Sirve también una copia caducada o sin conexión: es la fila que se vio en la interfaz al editarla
+	public String huellaEnCopia(int clave) {
+		T fila = enCopia(clave);
+		return fila == null ? null : proyeccion.huella(fila);
+	}
+
+	// Se pregunta siempre al servidor por esa fila, sin pasar por la copia en memoria
+	public String huellaEnServidor(int clave) throws IOException {
+		Map<String, String> parametros = new LinkedHashMap<>(campos());
+		parametros.put("id", String.valueOf(clave));
+		List<T> filas = leer(parametros);
+		return filas.isEmpty() ? null : proyeccion.huella(filas.getFirst());
+	}
+
+	// La copia se conserva marcada como caducada: si tiene versión, la próxima lectura solo pide los cambios
+	public void invalidar() {
+		version.incrementAndGet();
+		Instantanea<T> actual = instantanea;
+		if (actual != null) {
+			actual.invalidada = true;
+		}
+		parcial = null;
+	}
+
+	public void refrescar() throws IOException {
+		cargar();
+	}
+
+	// Si se invalida mientras se descarga, la copia puede ser anterior a la escritura: se usa pero no se guarda
+	private synchronized Instantanea<T> cargar() throws IOException {
+		long antes = version.get();
+		Instantanea<T> previa = instantanea;
+		Map<String, String> parametros = new LinkedHashMap<>(campos());
+		parametros.put("since", String.valueOf(previa == null ? 0 : previa.marca));
+		LectorTabla.Cambios<T> cambios = respuestas.leer(tabla, parametros, cuerpo -> LectorTabla.leerCambios(cuerpo, tabla, proyeccion));
+		Instantanea<T> nueva;
+		if (!cambios.delta() || previa == null) {
+			nueva = new Instantanea<>(cambios.filas(), cambios.version(), id, nombre, clavesIndices);
+		} else if (cambios.filas().isEmpty() && cambios.borrados().isEmpty()) {
+			nueva = previa.renovada(cambios.version());
+		} else {
+			nueva = new Instantanea<>(fusionar(previa.filas, cambios), cambios.version(), id, nombre, clavesIndices);
+		}
+		if (version.get() == antes) {
+			instantanea = nueva;
+			parcial = null;
+			if (almacen != null) {
+				guardarEnDisco(nueva);
+			}
+		}
+		return nueva;
+	}
+
+	// La copia de disco se lee una sola vez, en la primera consulta
+	private Instantanea<T> actual() {
+		Instantanea<T> actual = instantanea;
+		if (actual != null || almacen == null) {
+			return actual;
+		}
+		synchronized (this) {
+			if (!discoLeido && instantanea == null) {
+				discoLeido = true;
+				LectorTabla.Cambios<T> guardada = almacen.leer(tabla, proyeccion);
+				if (guardada != null) {
+					instantanea = new Instantanea<>(guardada.filas(), guardada.version(), id, nombre, clavesIndices).deDisco();
+				}
+			}
+			return instantanea;
+		}
+	}
+
+	// Con la copia de disco en pantalla, se piden los cambios desde su versión sin que nadie espere
+	private void reconciliarEnSegundoPlano() {
+		if (!reconciliando.compareAndSet(false, true)) {
+			return;
+		}
+		Thread.ofVirtual().name("reconciliar-" + tabla).start(() -> {
+			try {
+				cargar();
+			} catch (IOException e) {
+				LOG.warn("No se pudo poner al día {}", tabla, e);
+				Metricas.contarFallo("tabla reconciliar " + tabla);
+			} finally {
+				reconciliando.set(false);
+			}
+		});
+	}
+
+	private void guardarEnDisco(Instantanea<T> copia) {
+		Thread.ofVirtual().name("guardar-" + tabla).start(() -> {
+			// De una en una; si mientras tanto ha llegado una copia más nueva, ya se guardará esa
+			synchronized (almacen) {
+				if (copia != instantanea) {
+					return;
+				}
+				try {
+					almacen.guardar(tabla, proyeccion, copia.filas, copia.marca);
+				} catch (IOException e) {
+					LOG.warn("No se pudo guardar la copia local de {}", tabla, e);
+					Metricas.contarFallo("disco guardar " + tabla);
+				}
+			}
+		});
+	}
+
+	// Las filas cambiadas sustituyen a las que tenían su id y las borradas desaparecen
+	private List<T> fusionar(List<T> previas, LectorTabla.Cambios<T> cambios) {
+		Set<Integer> sustituidas = new HashSet<>(cambios.borrados());
+		cambios.filas().forEach(fila -> sustituidas.add(id.applyAsInt(fila)));
+		List<T> filas = new ArrayList<>(previas.size() + cambios.filas().size());
+		for (T fila : previas) {
+			if (!sustituidas.contains(id.applyAsInt(fila))) {
+				filas.add(fila);
+			}
+		}
+		filas.addAll(cambios.filas());
+		filas.sort(Comparator.comparingInt(id));
+		return filas;
+	}
+
+	private synchronized void acumular(long antes, List<T> filas, boolean desdeCero) {
+		if (version.get() != antes) {
+			return;
+		}
+		Instantanea<T> acumuladas = parcial;
+		if (desdeCero || acumuladas == null || acumuladas.caducada(caducidad)) {
+			acumuladas = new Instantanea<>(List.of(), 0, id, nombre, clavesIndices);
+		}
+		parcial = acumuladas.con(filas, id, nombre, clavesIndices);
+	}
+
+	// Si la respuesta no ha cambiado desde la última vez (304), CacheRespuestas devuelve la misma lista ya leída
+	private List<T> leer(Map<String, String> parametros) throws IOException {
+		return respuestas.leer(tabla, parametros, cuerpo -> LectorTabla.leer(cuerpo, tabla, proyeccion));
+	}
+
+	// Con fields= el servidor no manda las columnas que la proyección iba a saltarse
+	private Map<String, String> campos() {
+		return Map.of("fields", String.join(",", proyeccion.getCampos()));
+	}
+
+	private Pagina<T> crearPagina(List<T> filas, boolean hayMas, int despuesDe) {
+		return new Pagina<>(filas, filas.isEmpty() ? despuesDe : id.applyAsInt(filas.getLast()), hayMas);
+	}
+
+	private Instantanea<T> vigente() throws IOException {
+		Instantanea<T> actual = actual();
+		if (actual != null && actual.deDisco && !actual.invalidada) {
+			reconciliarEnSegundoPlano();
+			return actual;
+		}
+		if (actual != null && !actual.caducada(caducidad)) {
+			return actual;
+		}
+		synchronized (this) {
+			// Otro hilo puede haberla recargado mientras esperábamos el cerrojo
+			actual = instantanea;
+			if (actual == null || actual.caducada(caducidad)) {
+				actual = cargar();
+			}
+			return actual;
+		}
+	}
+
+	private T buscar(Function<Instantanea<T>, T> consulta) throws IOException {
+		Instantanea<T> actual = actual();
+		Instantanea<T> acumuladas = parcial;
+		if ((actual == null || actual.caducada(caducidad)) && acumuladas != null && !acumuladas.caducada(caducidad)) {
+			// Lo seleccionado en una lista paginada ya está en las páginas recibidas
+			T fila = consulta.apply(acumuladas);
+			if (fila != null) {
+				return fila;
+			}
+		}
+		T fila = consulta.apply(vigente());
+		if (fila == null) {
+			Instantanea<T> recargada = recargarSiAntigua();
+			if (recargada != null) {
+				fila = consulta.apply(recargada);
+			}
+		}
+		return fila;
+	}
+
+	// Lo que devuelve leer.php?nombre= no se acumula en parcial, que solo guarda páginas seguidas desde el
+	// principio; repetir la búsqueda cuesta un 304, porque CacheRespuestas guarda la respuesta con su ETag
+	private T buscarNombre(String clave, boolean distinguirMayusculas, Function<Instantanea<T>, T> consulta, Predicate<String> coincide) throws IOException {
+		if (!nombreEnServidor) {
+			return buscar(consulta);
+		}
+		for (Instantanea<T> copia : Arrays.asList(actual(), parcial)) {
+			if (copia != null && !copia.caducada(caducidad)) {
+				T fila = consulta.apply(copia);
+				if (fila != null) {
+					return fila;
+				}
+			}
+		}
+		Map<String, String> parametros = new LinkedHashMap<>(campos());
+		parametros.put("nombre", clave);
+		if (!distinguirMayusculas) {
+			parametros.put("mayusculas", "no");
+		}
+		List<T> filas = leer(parametros);
+		// Un servidor anterior compara con la collation de la columna: se elige aquí la primera que coincide de verdad
+		return filas.stream()
+				.filter(f -> nombre.apply(f) != null && coincide.test(nombre.apply(f)))
+				.findFirst()
+				.orElse(null);
+	}
+
+	private synchronized Instantanea<T> recargarSiAntigua() throws IOException {
+		Instantanea<T> actual = instantanea;
+		if (actual != null && System.currentTimeMillis() - actual.cargada < MARGEN_RECARGA_MS) {
+			return null;
+		}
+		return cargar();
+	}
+
+	public record Pagina<T>(List<T> filas, int ultimoId, boolean hayMas) {
+		public <R> Pagina<R> map(Function<T, R> conversion) {
+			return new Pagina<>(filas.stream().map(conversion).toList(), ultimoId, hayMas);
+		}
+	}
+
+	private static final class Instantanea<T> {
+		final long cargada;
+		// Versión del registro de cambios del servidor que refleja esta copia; 0 si el servidor no la da
+		final long marca;
+		final List<T> filas;
+		// Las mismas filas por id y sus ids, para que pagina() busque por bisección sin reordenar en cada llamada
+		final List<T> ordenadas;
+		final int[] ids;
+		final Map<Integer, T> porId;
+		final Map<String, T> porNombre;
+		final Map<String, T> porNombreSinMayusculas;
+		final Map<String, Map<Integer, List<T>>> indices;
+		volatile boolean invalidada;
+		// Leída de AlmacenLocal al arrancar: se usa tal cual mientras se reconcilia con el servidor
+		boolean deDisco;
+
+		Instantanea(List<T> filas, long marca, ToIntFunction<T> id, Function<T, String> nombre, Map<String, ToIntFunction<T>> clavesIndices) {
+			this(System.currentTimeMillis(), marca, filas, id, nombre, clavesIndices);
+		}
+
+		Instantanea(long cargada, long marca, List<T> filas, ToIntFunction<T> id, Function<T, String> nombre, Map<String, ToIntFunction<T>> clavesIndices) {
+			this.cargada = cargada;
+			this.marca = marca;
+			this.filas = Collections.unmodifiableList(filas);
+			ordenadas = ordenarPorId(this.filas, id);
+			ids = ordenadas.stream().mapToInt(id).toArray();
+			porId = new HashMap<>();
+			porNombre = new HashMap<>();
+			porNombreSinMayusculas = new HashMap<>();
+			indices = new HashMap<>();
+			clavesIndices.keySet().forEach(indice -> indices.put(indice, new HashMap<>()));
+			// putIfAbsent conserva la primera coincidencia, igual que el recorrido lineal de antes
+			for (T fila : filas) {
+				porId.putIfAbsent(id.applyAsInt(fila), fila);
+				String n = nombre == null ? null : nombre.apply(fila);
+				if (n != null) {
+					porNombre.putIfAbsent(n, fila);
+					porNombreSinMayusculas.putIfAbsent(n.toLowerCase(Locale.ROOT), fila);
+				}
+				clavesIndices.forEach((indice, clave) ->
+						indices.get(indice).computeIfAbsent(clave.applyAsInt(fila), k -> new ArrayList<>()).add(fila));
+			}
+		}
+
+		// Copia con más filas; conserva la hora de la primera página para que caduque a la vez
+		Instantanea<T> con(List<T> nuevas, ToIntFunction<T> id, Function<T, String> nombre, Map<String, ToIntFunction<T>> clavesIndices) {
+			List<T> todas = new ArrayList<>(filas);
+			todas.addAll(nuevas);
+			return new Instantanea<>(cargada, marca, todas, id, nombre, clavesIndices);
+		}
+
+		// Sin cambios en el servidor se reutilizan filas e índices; solo se renuevan la hora y la versión
+		Instantanea<T> renovada(long nuevaMarca) {
+			return new Instantanea<>(this, nuevaMarca);
+		}
+
+		private Instantanea(Instantanea<T> previa, long marca) {
+			this.cargada = System.currentTimeMillis();
+			this.marca = marca;
+			this.filas = previa.filas;
+			this.ordenadas = previa.ordenadas;
+			this.ids = previa.ids;
+			this.porId = previa.porId;
+			this.porNombre = previa.porNombre;
+			this.porNombreSinMayusculas = previa.porNombreSinMayusculas;
+			this.indices = previa.indices;
+		}
+
+		// Las copias completas ya llegan en orden de id; solo se ordena una copia si no lo están
+		private static <T> List<T> ordenarPorId(List<T> filas, ToIntFunction<T> id) {
+			for (int i = 1; i < filas.size(); i++) {
+				if (id.applyAsInt(filas.get(i - 1)) > id.applyAsInt(filas.get(i))) {
+					List<T> ordenadas = new ArrayList<>(filas);
+					ordenadas.sort(Comparator.comparingInt(id));
+					return Collections.unmodifiableList(ordenadas);
+				}
+			}
+			return filas;
+		}
+
+		// Posición de la primera fila con id mayor que despuesDe; ids.length si no hay ninguna
+		int primeraDespuesDe(int despuesDe) {
+			int desde = 0;
+			int hasta = ids.length;
+			while (desde < hasta) {
+				int medio = (desde + hasta) >>> 1;
+				if (ids[medio] <= despuesDe) {
+					desde = medio + 1;
+				} else {
+					hasta = medio;
+				}
+			}
+			return desde;
+		}
+
+		Instantanea<T> deDisco() {
+			deDisco = true;
+			return this;
+		}
+
+		boolean caducada(long caducidad) {
+			return invalidada || System.currentTimeMillis() - cargada > caducidad;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package ej.Diagnostico;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Cuenta lo que se lee de un flujo y, al cerrarlo, pasa el total a quien lo
+ * pidió: los bytes del medidor o el evento de JFR de la petición. Sirve para
+ * los cuerpos que se leen en streaming después de haber anotado la petición.
+ */
+public final class ContadorBytes extends FilterInputStream {
+
+	private final LongConsumer alCerrar;
+	private long leidos;
+	private boolean cerrado;
+
+	// Solo cuenta; los bytes se consultan con getLeidos()
+	public ContadorBytes(InputStream entrada) {
+		this(entrada, null);
+	}
+
+	public ContadorBytes(InputStream entrada, LongConsumer alCerrar) {
+		super(entrada);
+		this.alCerrar = alCerrar;
+	}
+
+	public long getLeidos() {
+		return leidos;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			leidos++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int desde, int cuantos) throws IOException {
+		int n = super.read(b, desde, cuantos);
+		if (n > 0) {
+			leidos += n;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long saltados = super.skip(n);
+		leidos += saltados;
+		return saltados;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!cerrado) {
+			cerrado = true;
+			if (alCerrar != null) {
+				alCerrar.accept(leidos);
+			}
+		}
+		super.close();
+	}
+}
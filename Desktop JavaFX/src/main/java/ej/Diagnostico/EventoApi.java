@@ -0,0 +1,44 @@
+package ej.Diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR para una lectura de la API (leer.php o estadisticas.php): desde
+ * que sale la petición hasta que se cierra el cuerpo, con los bytes que
+ * llegaron por la red. Un 304 o un error se anotan en cuanto llega la
+ * respuesta; una petición sin respuesta, con estado 0.
+ */
+@Name("escolavision.Api")
+@Label("Lectura de la API")
+@Category({"EscolaVision", "API"})
+public final class EventoApi extends jdk.jfr.Event {
+
+	@Label("Script")
+	public String script;
+
+	@Label("Tabla")
+	public String tabla;
+
+	@Label("Estado HTTP")
+	public int estado;
+
+	@Label("Bytes recibidos")
+	@Description("Bytes del cuerpo tal como viajan por la red, antes de descomprimir")
+	@DataAmount
+	public long bytes;
+
+	public void terminar(String script, String tabla, int estado, long bytes) {
+		end();
+		if (shouldCommit()) {
+			this.script = script;
+			this.tabla = tabla;
+			this.estado = estado;
+			this.bytes = bytes;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package ej.Diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR para pintar un gráfico en el hilo de JavaFX: cambiar los datos
+ * y hacer el layout de los nodos. El dibujo en sí ocurre después, en el hilo de
+ * render, y no entra.
+ */
+@Name("escolavision.Grafico")
+@Label("Pintar gráfico")
+@Category({"EscolaVision", "Interfaz"})
+public final class EventoGrafico extends jdk.jfr.Event {
+
+	@Label("Gráfico")
+	public String grafico;
+
+	@Label("Tabla")
+	public String tabla;
+
+	@Label("Filas representadas")
+	public int filas;
+
+	public void terminar(String grafico, String tabla, int filas) {
+		end();
+		if (shouldCommit()) {
+			this.grafico = grafico;
+			this.tabla = tabla;
+			this.filas = filas;
+			commit();
+		}
+	}
+}
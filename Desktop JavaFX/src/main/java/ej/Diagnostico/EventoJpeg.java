@@ -0,0 +1,45 @@
+package ej.Diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR para cada prueba de calidad al comprimir una foto o un logo:
+ * una codificación JPEG completa. Varias seguidas para la misma imagen son la
+ * búsqueda de la calidad que cabe en el límite.
+ */
+@Name("escolavision.Jpeg")
+@Label("Compresión JPEG")
+@Category({"EscolaVision", "Imágenes"})
+public final class EventoJpeg extends jdk.jfr.Event {
+
+	@Label("Ancho")
+	public int ancho;
+
+	@Label("Alto")
+	public int alto;
+
+	@Label("Calidad")
+	public float calidad;
+
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+
+	@Label("Cabe en el límite")
+	public boolean cabe;
+
+	public void terminar(int ancho, int alto, float calidad, long bytes, boolean cabe) {
+		end();
+		if (shouldCommit()) {
+			this.ancho = ancho;
+			this.alto = alto;
+			this.calidad = calidad;
+			this.bytes = bytes;
+			this.cabe = cabe;
+			commit();
+		}
+	}
+}
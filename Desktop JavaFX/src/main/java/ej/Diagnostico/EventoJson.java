@@ -0,0 +1,37 @@
+package ej.Diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR para convertir el JSON de una tabla en objetos. Como el cuerpo
+ * se lee en streaming, la duración incluye la espera por lo que aún no había
+ * llegado.
+ */
+@Name("escolavision.Json")
+@Label("Interpretar JSON")
+@Category({"EscolaVision", "Datos"})
+public final class EventoJson extends jdk.jfr.Event {
+
+	@Label("Tabla")
+	public String tabla;
+
+	@Label("Filas")
+	public int filas;
+
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+
+	public void terminar(String tabla, int filas, long bytes) {
+		end();
+		if (shouldCommit()) {
+			this.tabla = tabla;
+			this.filas = filas;
+			this.bytes = bytes;
+			commit();
+		}
+	}
+}
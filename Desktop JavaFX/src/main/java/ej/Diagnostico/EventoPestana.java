@@ -0,0 +1,54 @@
+package ej.Diagnostico;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de JFR para la carga al cambiar de pestaña: desde el cambio hasta
+ * que están los datos de la lista y de los campos. Los eventos de API y JSON
+ * de la misma carga caen dentro de su intervalo.
+ */
+@Name("escolavision.CargaPestana")
+@Label("Carga de pestaña")
+@Category({"EscolaVision", "Interfaz"})
+public final class EventoPestana extends jdk.jfr.Event {
+
+	@Label("Pestaña")
+	public String pestana;
+
+	@Label("Tabla")
+	public String tabla;
+
+	@Label("Filas")
+	@Description("Filas de la primera página de la lista")
+	public int filas;
+
+	@Label("Bytes recibidos")
+	@Description("Bytes que llegaron de la API mientras duraba la carga, también de otras cargas a la vez")
+	@DataAmount
+	public long bytes;
+
+	// Los bytes de la API al empezar, para restarlos al terminar; solo se cuentan con el evento activo
+	private transient long bytesAlEmpezar;
+
+	public void empezar() {
+		if (isEnabled()) {
+			bytesAlEmpezar = Metricas.bytesApi();
+		}
+		begin();
+	}
+
+	public void terminar(String pestana, String tabla, int filas) {
+		end();
+		if (shouldCommit()) {
+			this.pestana = pestana;
+			this.tabla = tabla;
+			this.filas = filas;
+			this.bytes = Math.max(0, Metricas.bytesApi() - bytesAlEmpezar);
+			commit();
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package ej.Diagnostico;
+
+/**
+ * Una medida en curso, para usar con try-with-resources:
+ * <pre>
+ * try (Medicion m = Metricas.iniciar("imagen decodificar")) {
+ *     ...
+ *     m.bytes(base64.length()).correcta();
+ * }
+ * </pre>
+ * Si el bloque sale por una excepción antes de {@link #correcta()}, o se llamó
+ * a {@link #fallida(String)}, cuenta como fallo.
+ */
+public final class Medicion implements AutoCloseable {
+
+	private final Medidor medidor;
+	private final long inicio = System.nanoTime();
+	private long bytes;
+	private boolean correcta;
+	private String motivo;
+
+	Medicion(Medidor medidor) {
+		this.medidor = medidor;
+	}
+
+	public Medicion bytes(long bytes) {
+		this.bytes += bytes;
+		return this;
+	}
+
+	public void correcta() {
+		correcta = true;
+	}
+
+	// Terminó, pero mal: por ejemplo, el servidor contestó con un error
+	public void fallida(String motivo) {
+		this.motivo = motivo;
+	}
+
+	@Override
+	public void close() {
+		long nanos = System.nanoTime() - inicio;
+		boolean bien = correcta && motivo == null;
+		medidor.anotar(nanos, bytes, bien);
+		if (!bien) {
+			Metricas.fallo(medidor.getNombre(), nanos, motivo);
+		}
+	}
+}
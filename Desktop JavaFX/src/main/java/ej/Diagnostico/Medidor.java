@@ -0,0 +1,82 @@
+package ej.Diagnostico;
+
+import java.util.Arrays;
+
+/**
+ * Tiempos, bytes y fallos de una operación (una llamada a la API, interpretar
+ * una tabla, decodificar una imagen...). Los percentiles salen de las últimas
+ * {@link #VENTANA} duraciones, así que reflejan cómo va la aplicación ahora y
+ * no desde que se abrió; las cuentas sí son desde el arranque o el último
+ * {@link Metricas#reiniciar()}.
+ */
+public final class Medidor {
+
+	public static final int VENTANA = 1024;
+
+	private final String nombre;
+	private final long[] duraciones = new long[VENTANA];
+	private int siguiente;
+	private int llenas;
+	private long llamadas;
+	private long fallos;
+	private long bytes;
+	private long totalNanos;
+	private long maximoNanos;
+
+	Medidor(String nombre) {
+		this.nombre = nombre;
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized void anotar(long nanos, long bytes, boolean correcta) {
+		duraciones[siguiente] = nanos;
+		siguiente = (siguiente + 1) % VENTANA;
+		llenas = Math.min(llenas + 1, VENTANA);
+		llamadas++;
+		if (!correcta) {
+			fallos++;
+		}
+		this.bytes += bytes;
+		totalNanos += nanos;
+		maximoNanos = Math.max(maximoNanos, nanos);
+	}
+
+	// Un fallo sin duración que medir, como una fila descartada: cuenta pero no entra en los percentiles
+	public synchronized void anotarFallo() {
+		llamadas++;
+		fallos++;
+	}
+
+	// Bytes que se conocen después de anotar la duración, como el cuerpo de una respuesta leída en streaming
+	public synchronized void sumarBytes(long bytes) {
+		this.bytes += bytes;
+	}
+
+	public synchronized Resumen resumen() {
+		long[] ventana = Arrays.copyOf(duraciones, llenas);
+		Arrays.sort(ventana);
+		return new Resumen(nombre, llamadas, fallos, bytes,
+				llamadas == 0 ? 0 : totalNanos / 1e6 / llamadas,
+				percentil(ventana, 0.5), percentil(ventana, 0.95), percentil(ventana, 0.99), maximoNanos / 1e6);
+	}
+
+	private static double percentil(long[] ordenadas, double fraccion) {
+		if (ordenadas.length == 0) {
+			return 0;
+		}
+		int posicion = (int) Math.ceil(fraccion * ordenadas.length) - 1;
+		return ordenadas[Math.max(0, posicion)] / 1e6;
+	}
+
+	// Tiempos en milisegundos
+	public record Resumen(String nombre, long llamadas, long fallos, long bytes,
+						  double media, double p50, double p95, double p99, double maximo) {
+	}
+}
@@ -0,0 +1,100 @@
+package ej.Diagnostico;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro de los {@link Medidor} de la aplicación, uno por nombre. Los
+ * nombres empiezan por lo que miden: "api" para el tiempo hasta la respuesta
+ * del servidor y los bytes recibidos, "json" para leer e interpretar el
+ * cuerpo, "imagen" y "ui" para los pasos pesados de la interfaz.
+ * <p>
+ * Se ven en el {@link PanelDiagnostico} (Ctrl+Mayús+D) y se exportan por
+ * SLF4J al logger {@code ej.metricas}, que logback.xml lleva a su propio
+ * archivo; los fallos van además como avisos.
+ * <p>
+ * Lo que se descarta o no se puede hacer sin que falle la operación entera
+ * (una fila que no se entiende, una copia local que no se guarda) se cuenta
+ * con {@link #contarFallo(String)} en un medidor propio, sin tiempos; el
+ * detalle, con la excepción, lo escribe en el log la clase donde ocurre.
+ */
+public final class Metricas {
+
+	private static final Logger LOG = LoggerFactory.getLogger("ej.metricas");
+
+	private static final ConcurrentHashMap<String, Medidor> medidores = new ConcurrentHashMap<>();
+	private static volatile ScheduledExecutorService exportador;
+
+	private Metricas() {
+	}
+
+	public static Medicion iniciar(String nombre) {
+		return new Medicion(medidor(nombre));
+	}
+
+	public static Medidor medidor(String nombre) {
+		return medidores.computeIfAbsent(nombre, Medidor::new);
+	}
+
+	public static void contarFallo(String nombre) {
+		medidor(nombre).anotarFallo();
+	}
+
+	public static List<Medidor.Resumen> resumen() {
+		return medidores.values().stream()
+				.map(Medidor::resumen)
+				.sorted(Comparator.comparing(Medidor.Resumen::nombre))
+				.toList();
+	}
+
+	// Bytes recibidos de la API en todas las llamadas desde el arranque o el último reinicio
+	public static long bytesApi() {
+		long total = 0;
+		for (Medidor medidor : medidores.values()) {
+			if (medidor.getNombre().startsWith("api ")) {
+				total += medidor.getBytes();
+			}
+		}
+		return total;
+	}
+
+	public static void reiniciar() {
+		medidores.clear();
+	}
+
+	// Una línea por medidor con llamadas en el registro
+	public static void exportar() {
+		for (Medidor.Resumen r : resumen()) {
+			if (r.llamadas() > 0) {
+				LOG.info(String.format(Locale.ROOT, "%s llamadas=%d fallos=%d bytes=%d media=%.1fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+						r.nombre(), r.llamadas(), r.fallos(), r.bytes(), r.media(), r.p50(), r.p95(), r.p99(), r.maximo()));
+			}
+		}
+	}
+
+	// Exporta cada tantos segundos y al cerrar la aplicación; 0 o menos no exporta nada
+	public static synchronized void exportarCada(long segundos) {
+		if (exportador != null || segundos <= 0) {
+			return;
+		}
+		exportador = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread hilo = new Thread(r, "metricas");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		exportador.scheduleAtFixedRate(Metricas::exportar, segundos, segundos, TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(Metricas::exportar, "metricas-cierre"));
+	}
+
+	static void fallo(String nombre, long nanos, String motivo) {
+		LOG.warn(String.format(Locale.ROOT, "%s falló tras %.1f ms%s", nombre, nanos / 1e6, motivo == null ? "" : ": " + motivo));
+	}
+}
@@ -0,0 +1,93 @@
+package ej.Diagnostico;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Ventana oculta con las {@link Metricas}: se abre con Ctrl+Mayús+D desde la
+ * ventana principal y se refresca cada segundo mientras está visible.
+ */
+public final class PanelDiagnostico {
+
+	private static Stage ventana;
+
+	private PanelDiagnostico() {
+	}
+
+	// Solo desde el hilo de JavaFX; si ya está abierta, la trae al frente
+	public static void mostrar() {
+		if (ventana == null) {
+			ventana = crear();
+		}
+		ventana.show();
+		ventana.toFront();
+	}
+
+	private static Stage crear() {
+		TableView<Medidor.Resumen> tabla = new TableView<>();
+		tabla.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+		TableColumn<Medidor.Resumen, Object> medida = columna("Medida", Medidor.Resumen::nombre);
+		medida.setPrefWidth(220);
+		tabla.getColumns().add(medida);
+		tabla.getColumns().add(columna("Llamadas", Medidor.Resumen::llamadas));
+		tabla.getColumns().add(columna("Fallos", Medidor.Resumen::fallos));
+		tabla.getColumns().add(columna("KB", r -> String.format(Locale.ROOT, "%.1f", r.bytes() / 1024.0)));
+		tabla.getColumns().add(columna("Media (ms)", r -> ms(r.media())));
+		tabla.getColumns().add(columna("p50 (ms)", r -> ms(r.p50())));
+		tabla.getColumns().add(columna("p95 (ms)", r -> ms(r.p95())));
+		tabla.getColumns().add(columna("p99 (ms)", r -> ms(r.p99())));
+		tabla.getColumns().add(columna("Máx (ms)", r -> ms(r.maximo())));
+
+		Runnable refrescar = () -> tabla.setItems(FXCollections.observableArrayList(Metricas.resumen()));
+		refrescar.run();
+		Timeline refresco = new Timeline(new KeyFrame(Duration.seconds(1), e -> refrescar.run()));
+		refresco.setCycleCount(Timeline.INDEFINITE);
+
+		Button exportar = new Button("Exportar al log");
+		exportar.setOnAction(e -> Metricas.exportar());
+		Button reiniciar = new Button("Reiniciar");
+		reiniciar.setOnAction(e -> {
+			Metricas.reiniciar();
+			refrescar.run();
+		});
+		Label ventanaPercentiles = new Label("Percentiles sobre las últimas " + Medidor.VENTANA + " medidas de cada fila");
+		HBox botones = new HBox(10, ventanaPercentiles, exportar, reiniciar);
+		botones.setAlignment(Pos.CENTER_RIGHT);
+		botones.setPadding(new Insets(10));
+
+		BorderPane raiz = new BorderPane(tabla);
+		raiz.setBottom(botones);
+		Stage stage = new Stage();
+		stage.setTitle("Diagnóstico");
+		stage.setScene(new Scene(raiz, 900, 450));
+		stage.setOnShown(e -> refresco.play());
+		stage.setOnHidden(e -> refresco.stop());
+		return stage;
+	}
+
+	private static TableColumn<Medidor.Resumen, Object> columna(String titulo, Function<Medidor.Resumen, Object> valor) {
+		TableColumn<Medidor.Resumen, Object> columna = new TableColumn<>(titulo);
+		columna.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(valor.apply(c.getValue())));
+		return columna;
+	}
+
+	private static String ms(double valor) {
+		return String.format(Locale.ROOT, "%.1f", valor);
+	}
+}
@@ -0,0 +1,192 @@
+package ej.Estadisticas;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Respuesta de estadisticas.php: por cada test, centro y mes, cuántos
+ * intentos hay y, por área, su número, media y distribución en tramos fijos.
+ * Son unos pocos cientos de grupos aunque haya cientos de miles de intentos,
+ * así que cada filtro se resuelve combinándolos: las medias se ponderan por
+ * n y las distribuciones se suman.
+ * <p>
+ * Las diferencias con {@link ColumnasIntentos}: las fechas se filtran por mes
+ * completo, el histograma usa los tramos del servidor (el número de cubetas
+ * pedido se ignora) y los percentiles se interpolan dentro de su tramo.
+ */
+public final class AgregadosIntentos implements FuenteEstadisticas {
+
+	private final int numAreas;
+	private final float inicioCubetas;
+	private final float anchoCubeta;
+	private final int numCubetas;
+	private final int grupos;
+	private final int[] test;
+	private final int[] centro;
+	private final int[] mes;
+	// COUNT(*) del grupo: también cuenta los intentos sin ningún área válida, igual que ColumnasIntentos
+	private final int[] intentos;
+	private final int[][] n;
+	private final double[][] media;
+	private final int[][][] distribucion;
+
+	private AgregadosIntentos(JsonObject respuesta) {
+		numAreas = respuesta.get("areas").getAsInt();
+		JsonObject cubetas = respuesta.getAsJsonObject("cubetas");
+		inicioCubetas = cubetas.get("desde").getAsFloat();
+		anchoCubeta = cubetas.get("ancho").getAsFloat();
+		numCubetas = cubetas.get("numero").getAsInt();
+		JsonArray lista = respuesta.getAsJsonArray("grupos");
+		grupos = lista.size();
+		test = new int[grupos];
+		centro = new int[grupos];
+		mes = new int[grupos];
+		intentos = new int[grupos];
+		n = new int[grupos][numAreas];
+		media = new double[grupos][numAreas];
+		distribucion = new int[grupos][numAreas][numCubetas];
+		for (int g = 0; g < grupos; g++) {
+			JsonObject grupo = lista.get(g).getAsJsonObject();
+			test[g] = grupo.get("idtest").getAsInt();
+			centro[g] = grupo.get("id_centro").isJsonNull() ? TODOS : grupo.get("id_centro").getAsInt();
+			mes[g] = ColumnasIntentos.mes(LocalDate.parse(grupo.get("mes").getAsString() + "-01"));
+			intentos[g] = grupo.get("intentos").getAsInt();
+			JsonArray areas = grupo.getAsJsonArray("areas");
+			for (int a = 0; a < numAreas && a < areas.size(); a++) {
+				JsonObject area = areas.get(a).getAsJsonObject();
+				n[g][a] = area.get("n").getAsInt();
+				JsonElement valor = area.get("media");
+				media[g][a] = valor == null || valor.isJsonNull() ? Double.NaN : valor.getAsDouble();
+				JsonArray cuentas = area.getAsJsonArray("distribucion");
+				for (int c = 0; c < numCubetas && c < cuentas.size(); c++) {
+					distribucion[g][a][c] = cuentas.get(c).getAsInt();
+				}
+			}
+		}
+	}
+
+	public static AgregadosIntentos leer(InputStream cuerpo) throws IOException {
+		try {
+			return new AgregadosIntentos(JsonParser.parseReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8)).getAsJsonObject());
+		} catch (RuntimeException e) {
+			throw new IOException("Respuesta de estadisticas.php no válida: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public int getNumAreas() {
+		return numAreas;
+	}
+
+	@Override
+	public int[] tests() {
+		return Arrays.stream(test).distinct().sorted().toArray();
+	}
+
+	@Override
+	public int[] centros() {
+		return Arrays.stream(centro).filter(c -> c != TODOS).distinct().sorted().toArray();
+	}
+
+	@Override
+	public Resumen resumir(Filtro filtro, int cubetas) {
+		int totalIntentos = 0;
+		int[] total = new int[numAreas];
+		double[] suma = new double[numAreas];
+		int[][] histograma = new int[numAreas][numCubetas];
+		for (int g = 0; g < grupos; g++) {
+			if (!cumple(g, filtro)) {
+				continue;
+			}
+			for (int a = 0; a < numAreas; a++) {
+				if (n[g][a] > 0) {
+					total[a] += n[g][a];
+					suma[a] += media[g][a] * n[g][a];
+					for (int c = 0; c < numCubetas; c++) {
+						histograma[a][c] += distribucion[g][a][c];
+					}
+				}
+			}
+			totalIntentos += intentos[g];
+		}
+		ResumenArea[] resumenes = new ResumenArea[numAreas];
+		for (int a = 0; a < numAreas; a++) {
+			int[] h = histograma[a];
+			resumenes[a] = new ResumenArea(total[a], total[a] == 0 ? Double.NaN : suma[a] / total[a],
+					percentil(h, 0.25), percentil(h, 0.5), percentil(h, 0.75), percentil(h, 0.9),
+					inicioCubetas, anchoCubeta, h);
+		}
+		return new Resumen(totalIntentos, resumenes);
+	}
+
+	@Override
+	public Map<Integer, double[]> mediasPor(Agrupacion agrupacion, Filtro filtro) {
+		Map<Integer, double[]> sumas = new TreeMap<>();
+		Map<Integer, int[]> totales = new TreeMap<>();
+		for (int g = 0; g < grupos; g++) {
+			if (!cumple(g, filtro)) {
+				continue;
+			}
+			int clave = switch (agrupacion) {
+				case TEST -> test[g];
+				case CENTRO -> centro[g];
+				case MES -> mes[g];
+			};
+			double[] suma = sumas.computeIfAbsent(clave, k -> new double[numAreas]);
+			int[] total = totales.computeIfAbsent(clave, k -> new int[numAreas]);
+			for (int a = 0; a < numAreas; a++) {
+				if (n[g][a] > 0) {
+					suma[a] += media[g][a] * n[g][a];
+					total[a] += n[g][a];
+				}
+			}
+		}
+		sumas.forEach((clave, suma) -> {
+			int[] total = totales.get(clave);
+			for (int a = 0; a < numAreas; a++) {
+				suma[a] = total[a] == 0 ? Double.NaN : suma[a] / total[a];
+			}
+		});
+		return sumas;
+	}
+
+	// Un grupo es un mes entero: entra si su mes está dentro del rango, aunque el filtro empiece a mitad
+	private boolean cumple(int g, Filtro filtro) {
+		return (filtro.test() == TODOS || test[g] == filtro.test())
+				&& (filtro.centro() == TODOS || centro[g] == filtro.centro())
+				&& (filtro.desde() == Integer.MIN_VALUE || mes[g] >= ColumnasIntentos.mes(LocalDate.ofEpochDay(filtro.desde())))
+				&& (filtro.hasta() == Integer.MAX_VALUE || mes[g] <= ColumnasIntentos.mes(LocalDate.ofEpochDay(filtro.hasta())));
+	}
+
+	// Se busca el tramo donde la cuenta acumulada alcanza p y se interpola dentro de él, como si sus valores
+	// estuvieran repartidos por igual
+	private float percentil(int[] histograma, double p) {
+		long total = 0;
+		for (int cuenta : histograma) {
+			total += cuenta;
+		}
+		if (total == 0) {
+			return Float.NaN;
+		}
+		double objetivo = p * total;
+		long acumulado = 0;
+		for (int c = 0; c < histograma.length; c++) {
+			if (histograma[c] > 0 && acumulado + histograma[c] >= objetivo) {
+				return (float) (inicioCubetas + anchoCubeta * (c + (objetivo - acumulado) / histograma[c]));
+			}
+			acumulado += histograma[c];
+		}
+		return inicioCubetas + anchoCubeta * histograma.length;
+	}
+}
@@ -0,0 +1,271 @@
+package ej.Estadisticas;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Todos los intentos en columnas de tipos primitivos: un {@code int[]} por
+ * test, usuario, centro, día y mes, y un {@code float[]} por área con el resultado ya
+ * convertido. La cadena {@code resultados} ("3.2;4.1;...") se trocea una sola
+ * vez, al construir; después filtrar y agregar son bucles sobre arrays, lo
+ * bastante rápidos para recalcular con cada cambio de filtro aunque haya más
+ * de 100.000 intentos.
+ * <p>
+ * Un área que un intento no trae (o que no es un número) queda como NaN y no
+ * cuenta en sus agregados. El centro sale del usuario y se asigna aparte con
+ * {@link #conCentros}, así que las columnas leídas pueden reutilizarse aunque
+ * cambien los usuarios. Es inmutable una vez construida.
+ */
+public final class ColumnasIntentos implements FuenteEstadisticas {
+
+	private final int filas;
+	private final int[] test;
+	private final int[] usuario;
+	private final int[] centro;
+	private final int[] dia;
+	private final int[] mes;
+	private final float[][] areas;
+
+	private ColumnasIntentos(int filas, int[] test, int[] usuario, int[] centro, int[] dia, int[] mes, float[][] areas) {
+		this.filas = filas;
+		this.test = test;
+		this.usuario = usuario;
+		this.centro = centro;
+		this.dia = dia;
+		this.mes = mes;
+		this.areas = areas;
+	}
+
+	// Mismas columnas (compartidas, no copiadas) con el centro de cada intento según su usuario
+	public ColumnasIntentos conCentros(Map<Integer, Integer> centroPorUsuario) {
+		int[] centros = new int[filas];
+		for (int i = 0; i < filas; i++) {
+			centros[i] = centroPorUsuario.getOrDefault(usuario[i], TODOS);
+		}
+		return new ColumnasIntentos(filas, test, usuario, centros, dia, mes, areas);
+	}
+
+	@Override
+	public Resumen resumir(Filtro filtro, int cubetas) {
+		return resumir(seleccionar(filtro), cubetas);
+	}
+
+	@Override
+	public Map<Integer, double[]> mediasPor(Agrupacion agrupacion, Filtro filtro) {
+		return mediasPor(agrupacion, seleccionar(filtro));
+	}
+
+	public int getFilas() {
+		return filas;
+	}
+
+	@Override
+	public int getNumAreas() {
+		return areas.length;
+	}
+
+	// Índices de las filas que cumplen el filtro, en orden
+	public int[] seleccionar(Filtro filtro) {
+		int[] elegidas = new int[filas];
+		int n = 0;
+		for (int i = 0; i < filas; i++) {
+			if ((filtro.test() == TODOS || test[i] == filtro.test())
+					&& (filtro.centro() == TODOS || centro[i] == filtro.centro())
+					&& dia[i] >= filtro.desde() && dia[i] <= filtro.hasta()) {
+				elegidas[n++] = i;
+			}
+		}
+		return Arrays.copyOf(elegidas, n);
+	}
+
+	// Media, percentiles e histograma de cada área sobre las filas elegidas. Lo caro es ordenar para los
+	// percentiles, y cada área es independiente: se resumen en paralelo
+	public Resumen resumir(int[] elegidas, int cubetas) {
+		ResumenArea[] resumenes = new ResumenArea[areas.length];
+		IntStream.range(0, areas.length).parallel().forEach(a -> {
+			float[] columna = areas[a];
+			float[] valores = new float[elegidas.length];
+			int n = 0;
+			double suma = 0;
+			for (int i : elegidas) {
+				float valor = columna[i];
+				if (!Float.isNaN(valor)) {
+					valores[n++] = valor;
+					suma += valor;
+				}
+			}
+			resumenes[a] = resumirArea(valores, n, suma, cubetas);
+		});
+		return new Resumen(elegidas.length, resumenes);
+	}
+
+	// Media por área de cada grupo (test, centro o mes), ordenados por clave. Las claves caben en un rango
+	// pequeño (ids, meses), así que se acumula en arrays indexados por clave - mínimo, sin mapas por fila
+	public Map<Integer, double[]> mediasPor(Agrupacion agrupacion, int[] elegidas) {
+		int[] clave = switch (agrupacion) {
+			case TEST -> test;
+			case CENTRO -> centro;
+			case MES -> mes;
+		};
+		Map<Integer, double[]> medias = new TreeMap<>();
+		if (elegidas.length == 0) {
+			return medias;
+		}
+		int minimo = Integer.MAX_VALUE;
+		int maximo = Integer.MIN_VALUE;
+		for (int i : elegidas) {
+			minimo = Math.min(minimo, clave[i]);
+			maximo = Math.max(maximo, clave[i]);
+		}
+		int grupos = maximo - minimo + 1;
+		double[] sumas = new double[grupos * areas.length];
+		int[] cuentas = new int[grupos * areas.length];
+		for (int a = 0; a < areas.length; a++) {
+			float[] columna = areas[a];
+			for (int i : elegidas) {
+				float valor = columna[i];
+				if (!Float.isNaN(valor)) {
+					int celda = (clave[i] - minimo) * areas.length + a;
+					sumas[celda] += valor;
+					cuentas[celda]++;
+				}
+			}
+		}
+		for (int g = 0; g < grupos; g++) {
+			double[] media = new double[areas.length];
+			boolean hay = false;
+			for (int a = 0; a < areas.length; a++) {
+				int celda = g * areas.length + a;
+				media[a] = cuentas[celda] == 0 ? Double.NaN : sumas[celda] / cuentas[celda];
+				hay |= cuentas[celda] > 0;
+			}
+			if (hay) {
+				medias.put(minimo + g, media);
+			}
+		}
+		return medias;
+	}
+
+	@Override
+	public int[] tests() {
+		return Arrays.stream(test).distinct().sorted().toArray();
+	}
+
+	@Override
+	public int[] centros() {
+		return Arrays.stream(centro).filter(c -> c != TODOS).distinct().sorted().toArray();
+	}
+
+	// Año * 12 + mes - 1: ordena igual que las fechas y se convierte de vuelta con LocalDate.of(m / 12, m % 12 + 1, 1)
+	public static int mes(LocalDate fecha) {
+		return fecha.getYear() * 12 + fecha.getMonthValue() - 1;
+	}
+
+	private static ResumenArea resumirArea(float[] valores, int n, double suma, int cubetas) {
+		if (n == 0) {
+			return new ResumenArea(0, Double.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, 0, 0, new int[cubetas]);
+		}
+		// valores es el array de trabajo de esta área: se ordenan sus n primeros en el sitio
+		Arrays.sort(valores, 0, n);
+		float minimo = valores[0];
+		float maximo = valores[n - 1];
+		int[] histograma = new int[cubetas];
+		float ancho = maximo > minimo ? (maximo - minimo) / cubetas : 1;
+		for (int i = 0; i < n; i++) {
+			histograma[Math.min(cubetas - 1, (int) ((valores[i] - minimo) / ancho))]++;
+		}
+		return new ResumenArea(n, suma / n, percentil(valores, n, 0.25), percentil(valores, n, 0.5),
+				percentil(valores, n, 0.75), percentil(valores, n, 0.9), minimo, ancho, histograma);
+	}
+
+	// Interpolación lineal entre los dos valores que rodean la posición p * (n - 1)
+	private static float percentil(float[] ordenados, int n, double p) {
+		double posicion = p * (n - 1);
+		int abajo = (int) posicion;
+		int arriba = Math.min(abajo + 1, n - 1);
+		return (float) (ordenados[abajo] + (ordenados[arriba] - ordenados[abajo]) * (posicion - abajo));
+	}
+
+	/**
+	 * Acumula los intentos según se leen. Los arrays crecen al doble cuando se
+	 * llenan y {@link #construir()} los recorta al tamaño justo.
+	 */
+	public static final class Constructor {
+		private int filas;
+		private int numAreas;
+		private int[] test = new int[1024];
+		private int[] usuario = new int[1024];
+		private int[] dia = new int[1024];
+		private int[] mes = new int[1024];
+		private float[][] areas = new float[0][];
+
+		// fecha en formato ISO (2024-03-15); si no se entiende, el intento no se añade y se lanza la excepción
+		public void anadir(int idTest, int idUsuario, String fecha, String resultados) {
+			LocalDate dia = LocalDate.parse(fecha.trim());
+			if (filas == test.length) {
+				int capacidad = filas * 2;
+				test = Arrays.copyOf(test, capacidad);
+				usuario = Arrays.copyOf(usuario, capacidad);
+				this.dia = Arrays.copyOf(this.dia, capacidad);
+				mes = Arrays.copyOf(mes, capacidad);
+				for (int a = 0; a < numAreas; a++) {
+					areas[a] = Arrays.copyOf(areas[a], capacidad);
+				}
+			}
+			test[filas] = idTest;
+			usuario[filas] = idUsuario;
+			this.dia[filas] = (int) dia.toEpochDay();
+			mes[filas] = mes(dia);
+			int a = 0;
+			int inicio = 0;
+			int longitud = resultados == null ? 0 : resultados.length();
+			while (inicio < longitud) {
+				int fin = resultados.indexOf(';', inicio);
+				if (fin < 0) {
+					fin = longitud;
+				}
+				columnaArea(a)[filas] = numero(resultados, inicio, fin);
+				a++;
+				inicio = fin + 1;
+			}
+			for (; a < numAreas; a++) {
+				areas[a][filas] = Float.NaN;
+			}
+			filas++;
+		}
+
+		// Sin centros: todos quedan como TODOS hasta aplicar conCentros
+		public ColumnasIntentos construir() {
+			float[][] recortadas = new float[numAreas][];
+			for (int a = 0; a < numAreas; a++) {
+				recortadas[a] = Arrays.copyOf(areas[a], filas);
+			}
+			int[] centros = new int[filas];
+			Arrays.fill(centros, TODOS);
+			return new ColumnasIntentos(filas, Arrays.copyOf(test, filas), Arrays.copyOf(usuario, filas), centros,
+					Arrays.copyOf(dia, filas), Arrays.copyOf(mes, filas), recortadas);
+		}
+
+		// Un intento con más áreas que los anteriores abre una columna nueva, vacía (NaN) para las filas previas
+		private float[] columnaArea(int a) {
+			if (a == numAreas) {
+				areas = Arrays.copyOf(areas, numAreas + 1);
+				areas[numAreas] = new float[test.length];
+				Arrays.fill(areas[numAreas], 0, filas, Float.NaN);
+				numAreas++;
+			}
+			return areas[a];
+		}
+
+		private static float numero(String texto, int inicio, int fin) {
+			try {
+				return Float.parseFloat(texto.substring(inicio, fin).trim());
+			} catch (NumberFormatException e) {
+				return Float.NaN;
+			}
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package ej.Estadisticas;
+
+import java.util.Map;
+
+/**
+ * Lo que necesita la pestaña "Estadísticas": resúmenes por área y medias por
+ * grupo de los intentos que cumplen un filtro. Lo implementan
+ * {@link ColumnasIntentos}, que calcula en el cliente a partir de todos los
+ * intentos, y {@link AgregadosIntentos}, que combina los grupos ya agregados
+ * por estadisticas.php.
+ */
+public interface FuenteEstadisticas {
+
+	int TODOS = -1;
+
+	int getNumAreas();
+
+	// Ids presentes, ordenados, para los filtros
+	int[] tests();
+
+	int[] centros();
+
+	Resumen resumir(Filtro filtro, int cubetas);
+
+	// Media por área de cada grupo (test, centro o mes), ordenados por clave
+	Map<Integer, double[]> mediasPor(Agrupacion agrupacion, Filtro filtro);
+
+	enum Agrupacion {
+		TEST, CENTRO, MES
+	}
+
+	// test y centro admiten TODOS; desde y hasta son días de época (LocalDate.toEpochDay), ambos incluidos
+	record Filtro(int test, int centro, int desde, int hasta) {
+		public static Filtro todo() {
+			return new Filtro(TODOS, TODOS, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		}
+	}
+
+	record Resumen(int intentos, ResumenArea[] areas) {
+	}
+
+	// La cubeta i del histograma va de minimo + i * ancho a minimo + (i + 1) * ancho
+	record ResumenArea(int n, double media, float p25, float mediana, float p75, float p90,
+					   float minimo, float ancho, int[] histograma) {
+	}
+}
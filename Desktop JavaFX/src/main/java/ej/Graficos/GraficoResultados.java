@@ -0,0 +1,68 @@
+package ej.Graficos;
+
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gráfico de barras de los resultados de un intento, uno por área. Se crea una
+ * vez y {@link #mostrar} cambia los valores de las barras existentes, así que
+ * pasar de un intento a otro no crea nodos ni imágenes nuevas.
+ */
+public class GraficoResultados {
+
+	public static final String[] AREAS = {"AREA 1", "AREA 2", "AREA 3", "AREA 4", "AREA 5"};
+
+	private final BarChart<String, Number> grafico;
+	private final List<XYChart.Data<String, Number>> barras = new ArrayList<>(AREAS.length);
+	private String resultados;
+
+	public GraficoResultados() {
+		CategoryAxis ejeAreas = new CategoryAxis();
+		ejeAreas.setLabel("Áreas");
+		NumberAxis ejeResultados = new NumberAxis();
+		ejeResultados.setLabel("Resultados");
+
+		XYChart.Series<String, Number> serie = new XYChart.Series<>();
+		serie.setName("Resultados");
+		for (String area : AREAS) {
+			barras.add(new XYChart.Data<>(area, 0));
+		}
+		serie.getData().addAll(barras);
+
+		grafico = new BarChart<>(ejeAreas, ejeResultados);
+		grafico.setTitle("Resultados por Área");
+		// Sin animación: cada clic en la lista repinta al momento
+		grafico.setAnimated(false);
+		grafico.getData().add(serie);
+	}
+
+	public BarChart<String, Number> getNodo() {
+		return grafico;
+	}
+
+	// resultados viene como "3.5;2;4;1;0"; las áreas que falten o no sean un número quedan a 0
+	public void mostrar(String resultados) {
+		this.resultados = resultados;
+		String[] valores = resultados == null ? new String[0] : resultados.split(";");
+		for (int i = 0; i < barras.size(); i++) {
+			barras.get(i).setYValue(i < valores.length ? numero(valores[i]) : 0);
+		}
+	}
+
+	public String getResultados() {
+		return resultados;
+	}
+
+	private static double numero(String valor) {
+		try {
+			return Double.parseDouble(valor.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package ej.Graficos;
+
+import ej.Diagnostico.EventoGrafico;
+import ej.Diagnostico.Medicion;
+import ej.Diagnostico.Metricas;
+import ej.Estadisticas.FuenteEstadisticas;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pestaña "Estadísticas": media y percentiles por área, histograma de un área
+ * y medias por test, centro o mes, sobre los intentos que cumplen el filtro.
+ * Cada cambio de filtro recalcula sobre la {@link FuenteEstadisticas} (las
+ * columnas de todos los intentos o los agregados del servidor) en un hilo
+ * virtual; si llega otro cambio antes de terminar, el resultado anterior se
+ * descarta sin pintarse.
+ */
+public class VistaEstadisticas {
+
+	public static final int CUBETAS = 10;
+
+	private static final String TODOS_TESTS = "Todos los tests";
+	private static final String TODOS_CENTROS = "Todos los centros";
+
+	private final BorderPane raiz = new BorderPane();
+	private final ComboBox<String> cmbTest = new ComboBox<>();
+	private final ComboBox<String> cmbCentro = new ComboBox<>();
+	private final DatePicker dpDesde = new DatePicker();
+	private final DatePicker dpHasta = new DatePicker();
+	private final ComboBox<String> cmbArea = new ComboBox<>();
+	private final ComboBox<String> cmbAgrupar = new ComboBox<>();
+	private final Label lblIntentos = new Label();
+	private final BarChart<String, Number> graficoAreas = grafico("Resultados por área", "Áreas");
+	private final BarChart<String, Number> graficoHistograma = grafico("Distribución", "Resultado");
+	private final BarChart<String, Number> graficoGrupos = grafico("Media por grupo", "");
+	private final AtomicLong calculo = new AtomicLong();
+	private FuenteEstadisticas fuente;
+	private int[] tests = new int[0];
+	private int[] centros = new int[0];
+	private Map<Integer, String> nombresTests = Map.of();
+
+	public VistaEstadisticas() {
+		// Mismo orden que FuenteEstadisticas.Agrupacion
+		cmbAgrupar.setItems(FXCollections.observableArrayList("Test", "Centro", "Mes"));
+		cmbAgrupar.setValue("Test");
+		dpDesde.setPromptText("Desde");
+		dpHasta.setPromptText("Hasta");
+		for (ComboBox<?> filtro : List.of(cmbTest, cmbCentro, cmbArea, cmbAgrupar)) {
+			filtro.valueProperty().addListener((obs, antes, ahora) -> recalcular());
+		}
+		dpDesde.valueProperty().addListener((obs, antes, ahora) -> recalcular());
+		dpHasta.valueProperty().addListener((obs, antes, ahora) -> recalcular());
+
+		HBox filtros = new HBox(10, cmbTest, cmbCentro, dpDesde, dpHasta, new Label("Agrupar por"), cmbAgrupar, lblIntentos);
+		filtros.setAlignment(Pos.CENTER_LEFT);
+		filtros.setPadding(new Insets(10));
+
+		GridPane graficos = new GridPane();
+		graficos.setHgap(10);
+		graficos.setVgap(10);
+		graficos.add(graficoAreas, 0, 0);
+		graficos.add(new BorderPane(graficoHistograma, cmbArea, null, null, null), 1, 0);
+		graficos.add(graficoGrupos, 0, 1, 2, 1);
+		for (BarChart<String, Number> grafico : List.of(graficoAreas, graficoHistograma, graficoGrupos)) {
+			GridPane.setHgrow(grafico, Priority.ALWAYS);
+			GridPane.setVgrow(grafico, Priority.ALWAYS);
+		}
+
+		raiz.setTop(filtros);
+		raiz.setCenter(graficos);
+	}
+
+	public BorderPane getNodo() {
+		return raiz;
+	}
+
+	// Se llama en el hilo de JavaFX cada vez que llegan datos nuevos; conserva los filtros que sigan valiendo.
+	// Los tests sin nombre en nombresTests se muestran como "Test <id>"
+	public void mostrar(FuenteEstadisticas fuente, Map<Integer, String> nombresTests) {
+		this.fuente = fuente;
+		this.nombresTests = nombresTests;
+		tests = fuente.tests();
+		centros = fuente.centros();
+		List<String> textosTests = new ArrayList<>(List.of(TODOS_TESTS));
+		for (int test : tests) {
+			textosTests.add(textoTest(test));
+		}
+		List<String> textosCentros = new ArrayList<>(List.of(TODOS_CENTROS));
+		for (int centro : centros) {
+			textosCentros.add("Centro " + centro);
+		}
+		List<String> textosAreas = new ArrayList<>();
+		for (int a = 0; a < fuente.getNumAreas(); a++) {
+			textosAreas.add(nombreArea(a));
+		}
+		reemplazar(cmbTest, textosTests);
+		reemplazar(cmbCentro, textosCentros);
+		reemplazar(cmbArea, textosAreas);
+		recalcular();
+	}
+
+	private void recalcular() {
+		FuenteEstadisticas datos = fuente;
+		if (datos == null) {
+			return;
+		}
+		FuenteEstadisticas.Filtro filtro = new FuenteEstadisticas.Filtro(
+				elegido(cmbTest, tests), elegido(cmbCentro, centros),
+				dpDesde.getValue() == null ? Integer.MIN_VALUE : (int) dpDesde.getValue().toEpochDay(),
+				dpHasta.getValue() == null ? Integer.MAX_VALUE : (int) dpHasta.getValue().toEpochDay());
+		FuenteEstadisticas.Agrupacion agrupacion = FuenteEstadisticas.Agrupacion.values()[Math.max(0, cmbAgrupar.getSelectionModel().getSelectedIndex())];
+		int area = Math.max(0, cmbArea.getSelectionModel().getSelectedIndex());
+		long numero = calculo.incrementAndGet();
+		Thread.ofVirtual().name("estadisticas").start(() -> {
+			FuenteEstadisticas.Resumen resumen;
+			Map<Integer, double[]> grupos;
+			try (Medicion medicion = Metricas.iniciar("ui estadisticas calcular")) {
+				resumen = datos.resumir(filtro, CUBETAS);
+				grupos = datos.mediasPor(agrupacion, filtro);
+				medicion.correcta();
+			}
+			Platform.runLater(() -> {
+				// Un cambio de filtro posterior ya habrá lanzado su propio cálculo
+				if (calculo.get() == numero) {
+					EventoGrafico evento = new EventoGrafico();
+					evento.begin();
+					try (Medicion medicion = Metricas.iniciar("ui estadisticas pintar")) {
+						pintar(resumen, area, agrupacion, grupos);
+						medicion.correcta();
+					}
+					evento.terminar("estadisticas", "intentos", resumen.intentos());
+				}
+			});
+		});
+	}
+
+	private void pintar(FuenteEstadisticas.Resumen resumen, int area, FuenteEstadisticas.Agrupacion agrupacion, Map<Integer, double[]> grupos) {
+		lblIntentos.setText(resumen.intentos() + " intentos");
+
+		XYChart.Series<String, Number> media = serie("Media");
+		XYChart.Series<String, Number> mediana = serie("Mediana");
+		XYChart.Series<String, Number> p25 = serie("P25");
+		XYChart.Series<String, Number> p75 = serie("P75");
+		XYChart.Series<String, Number> p90 = serie("P90");
+		for (int a = 0; a < resumen.areas().length; a++) {
+			FuenteEstadisticas.ResumenArea r = resumen.areas()[a];
+			String nombre = nombreArea(a);
+			media.getData().add(new XYChart.Data<>(nombre, cero(r.media())));
+			mediana.getData().add(new XYChart.Data<>(nombre, cero(r.mediana())));
+			p25.getData().add(new XYChart.Data<>(nombre, cero(r.p25())));
+			p75.getData().add(new XYChart.Data<>(nombre, cero(r.p75())));
+			p90.getData().add(new XYChart.Data<>(nombre, cero(r.p90())));
+		}
+		graficoAreas.getData().setAll(List.of(p25, mediana, media, p75, p90));
+
+		XYChart.Series<String, Number> cuenta = serie("Intentos");
+		if (area < resumen.areas().length) {
+			FuenteEstadisticas.ResumenArea r = resumen.areas()[area];
+			for (int i = 0; i < r.histograma().length; i++) {
+				float desde = r.minimo() + i * r.ancho();
+				cuenta.getData().add(new XYChart.Data<>(String.format(Locale.ROOT, "%.1f-%.1f", desde, desde + r.ancho()), r.histograma()[i]));
+			}
+		}
+		graficoHistograma.getData().setAll(List.of(cuenta));
+
+		List<XYChart.Series<String, Number>> porArea = new ArrayList<>();
+		for (int a = 0; a < resumen.areas().length; a++) {
+			porArea.add(serie(nombreArea(a)));
+		}
+		grupos.forEach((grupo, medias) -> {
+			String etiqueta = etiquetaGrupo(agrupacion, grupo);
+			for (int a = 0; a < medias.length && a < porArea.size(); a++) {
+				porArea.get(a).getData().add(new XYChart.Data<>(etiqueta, cero(medias[a])));
+			}
+		});
+		graficoGrupos.getXAxis().setLabel(cmbAgrupar.getItems().get(agrupacion.ordinal()));
+		graficoGrupos.getData().setAll(porArea);
+	}
+
+	private String etiquetaGrupo(FuenteEstadisticas.Agrupacion agrupacion, int grupo) {
+		return switch (agrupacion) {
+			case TEST -> textoTest(grupo);
+			case CENTRO -> grupo == FuenteEstadisticas.TODOS ? "Sin centro" : "Centro " + grupo;
+			case MES -> LocalDate.of(grupo / 12, grupo % 12 + 1, 1).getMonth().getDisplayName(TextStyle.SHORT, Locale.getDefault())
+					+ " " + grupo / 12;
+		};
+	}
+
+	private String textoTest(int test) {
+		String nombre = nombresTests.get(test);
+		return nombre == null ? "Test " + test : nombre;
+	}
+
+	private static String nombreArea(int a) {
+		return a < GraficoResultados.AREAS.length ? GraficoResultados.AREAS[a] : "AREA " + (a + 1);
+	}
+
+	// La posición 0 del ComboBox es "Todos"; las demás siguen el orden de ids
+	private static int elegido(ComboBox<String> combo, int[] ids) {
+		int posicion = combo.getSelectionModel().getSelectedIndex();
+		return posicion <= 0 || posicion > ids.length ? FuenteEstadisticas.TODOS : ids[posicion - 1];
+	}
+
+	private static void reemplazar(ComboBox<String> combo, List<String> opciones) {
+		String antes = combo.getValue();
+		combo.setItems(FXCollections.observableArrayList(opciones));
+		combo.setValue(antes != null && opciones.contains(antes) ? antes : opciones.isEmpty() ? null : opciones.getFirst());
+	}
+
+	private static double cero(double valor) {
+		return Double.isNaN(valor) ? 0 : valor;
+	}
+
+	private static XYChart.Series<String, Number> serie(String nombre) {
+		XYChart.Series<String, Number> serie = new XYChart.Series<>();
+		serie.setName(nombre);
+		return serie;
+	}
+
+	private static BarChart<String, Number> grafico(String titulo, String ejeX) {
+		CategoryAxis eje = new CategoryAxis();
+		eje.setLabel(ejeX);
+		BarChart<String, Number> grafico = new BarChart<>(eje, new NumberAxis());
+		grafico.setTitle(titulo);
+		// Como en GraficoResultados: sin animación, cada cambio de filtro se pinta al momento
+		grafico.setAnimated(false);
+		return grafico;
+	}
+}
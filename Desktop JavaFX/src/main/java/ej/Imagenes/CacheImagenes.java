@@ -0,0 +1,128 @@
+package ej.Imagenes;
+
+import ej.Diagnostico.Medicion;
+import ej.Diagnostico.Metricas;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.util.*;
+
+/**
+ * Fotos de usuarios y logos de áreas ya decodificadas, en un LRU limitado por
+ * bytes (ancho x alto x 4). Cada imagen se guarda con la clave
+ * {@code entidad#hash}, con la entidad como "usuarios:12" y el hash del base64,
+ * así una foto sin cambios no se decodifica dos veces. Además se recuerda qué
+ * imagen tenía cada entidad y cuándo se comprobó, para no volver a pedirla a
+ * la API mientras no caduque.
+ */
+public class CacheImagenes {
+
+	public static final long MAX_BYTES = 64L * 1024 * 1024;
+	public static final long CADUCIDAD_MS = 60_000;
+
+	private final long maxBytes;
+	private final long caducidad;
+	private final LinkedHashMap<String, Image> imagenes = new LinkedHashMap<>(64, 0.75f, true);
+	private final Map<String, Comprobada> comprobadas = new HashMap<>();
+	private long bytes;
+
+	public CacheImagenes() {
+		this(MAX_BYTES, CADUCIDAD_MS);
+	}
+
+	public CacheImagenes(long maxBytes, long caducidad) {
+		this.maxBytes = maxBytes;
+		this.caducidad = caducidad;
+	}
+
+	// Devuelve la imagen vigente de la entidad, que puede ser "sin imagen", o null si hay que pedirla a la API
+	public synchronized Comprobada buscar(String entidad) {
+		Comprobada comprobada = comprobadas.get(entidad);
+		if (comprobada == null || System.currentTimeMillis() - comprobada.instante > caducidad) {
+			return null;
+		}
+		if (comprobada.clave != null && imagenes.get(comprobada.clave) == null) {
+			// Se expulsó del LRU: hay que volver a pedirla
+			return null;
+		}
+		return comprobada;
+	}
+
+	public Image obtener(String entidad, String base64) {
+		if (base64 == null || base64.isEmpty()) {
+			synchronized (this) {
+				comprobadas.put(entidad, new Comprobada(null, null, System.currentTimeMillis()));
+			}
+			return null;
+		}
+		String clave = entidad + "#" + Integer.toHexString(base64.hashCode()) + ":" + base64.length();
+		Image imagen;
+		synchronized (this) {
+			imagen = imagenes.get(clave);
+		}
+		if (imagen == null) {
+			// Se decodifica fuera del cerrojo; si dos hilos coinciden, el segundo reutiliza la del primero
+			imagen = decodificar(base64);
+			if (imagen == null) {
+				return null;
+			}
+			synchronized (this) {
+				Image previa = imagenes.putIfAbsent(clave, imagen);
+				if (previa != null) {
+					imagen = previa;
+				} else {
+					bytes += tamaño(imagen);
+					expulsar();
+				}
+			}
+		}
+		synchronized (this) {
+			comprobadas.put(entidad, new Comprobada(clave, imagen, System.currentTimeMillis()));
+		}
+		return imagen;
+	}
+
+	// Olvida cuándo se comprobaron las imágenes de una tabla, pero mantiene las decodificadas por si no han cambiado
+	public synchronized void olvidar(String tabla) {
+		comprobadas.keySet().removeIf(entidad -> entidad.startsWith(tabla + ":"));
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public static Image decodificar(String base64) {
+		if (base64 == null || base64.isEmpty()) {
+			return null;
+		}
+		try (Medicion medicion = Metricas.iniciar("imagen decodificar")) {
+			byte[] imageBytes = Base64.getMimeDecoder().decode(base64);
+			medicion.bytes(imageBytes.length);
+			Image imagen = new Image(new ByteArrayInputStream(imageBytes));
+			if (imagen.isError()) {
+				medicion.fallida("imagen no válida");
+				return null;
+			}
+			medicion.correcta();
+			return imagen;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private void expulsar() {
+		Iterator<Map.Entry<String, Image>> it = imagenes.entrySet().iterator();
+		// La última entrada es la recién añadida: se conserva aunque sola supere el límite
+		while (bytes > maxBytes && imagenes.size() > 1 && it.hasNext()) {
+			bytes -= tamaño(it.next().getValue());
+			it.remove();
+		}
+	}
+
+	private static long tamaño(Image imagen) {
+		return (long) imagen.getWidth() * (long) imagen.getHeight() * 4;
+	}
+
+	public record Comprobada(String clave, Image imagen, long instante) {
+	}
+}
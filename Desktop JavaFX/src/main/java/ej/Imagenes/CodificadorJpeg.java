@@ -0,0 +1,188 @@
+package ej.Imagenes;
+
+import ej.Diagnostico.EventoJpeg;
+import ej.Diagnostico.Medicion;
+import ej.Diagnostico.Metricas;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Convierte fotos y logos al JPEG en base64 que guarda la API, sin pasar de
+ * {@link #MAX_BASE64} caracteres. La calidad se busca estrechando un intervalo,
+ * como en una bisección, contra el límite en bytes (el base64 ocupa 4 caracteres
+ * por cada 3 bytes), con un único ImageWriter reutilizado. Si ni con la calidad
+ * mínima cabe, se reduce la imagen y se vuelve a buscar.
+ */
+public class CodificadorJpeg {
+
+	public static final int MAX_BASE64 = 20000;
+	public static final int MAX_LADO = 300;
+	public static final float CALIDAD_MAXIMA = 0.9f;
+	public static final float CALIDAD_MINIMA = 0.1f;
+	// Pruebas como máximo tras la de calidad máxima
+	private static final int PASOS = 8;
+	// Se para al llenar el 85 % del límite o con el intervalo de calidades por debajo de 0.05
+	private static final double SUFICIENTE = 0.85;
+	private static final float PRECISION = 0.05f;
+	// Fracción del límite a la que apunta la primera estimación
+	private static final double OBJETIVO = 0.9;
+	private static final double REDUCCION = 0.75;
+	private static final int LADO_MINIMO = 16;
+
+	private final int maxBytes;
+	private final int maxLado;
+	private final ImageWriter writer;
+	private final ImageWriteParam param;
+	// reset() conserva el búfer, así que se reutiliza entre escrituras
+	private final ByteArrayOutputStream salida = new ByteArrayOutputStream(32 * 1024);
+
+	public CodificadorJpeg() {
+		this(MAX_BASE64, MAX_LADO);
+	}
+
+	public CodificadorJpeg(int maxBase64, int maxLado) {
+		this.maxBytes = maxBase64 / 4 * 3;
+		this.maxLado = maxLado;
+		this.writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		this.param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+	}
+
+	// El writer no admite escrituras a la vez, así que cada codificación va entera bajo el cerrojo
+	public synchronized String codificar(BufferedImage imagen) throws IOException {
+		try (Medicion medicion = Metricas.iniciar("imagen codificar")) {
+			BufferedImage actual = reducir(imagen, maxLado, maxLado);
+			while (true) {
+				byte[] jpeg = mejorCalidad(actual);
+				if (jpeg != null) {
+					String base64 = Base64.getEncoder().encodeToString(jpeg);
+					medicion.bytes(base64.length()).correcta();
+					return base64;
+				}
+				int ancho = (int) (actual.getWidth() * REDUCCION);
+				int alto = (int) (actual.getHeight() * REDUCCION);
+				if (ancho < LADO_MINIMO || alto < LADO_MINIMO) {
+					throw new IllegalArgumentException("La imagen no puede comprimirse lo suficiente para cumplir el límite.");
+				}
+				// Siempre desde la original, para no acumular pérdida de una reducción a otra
+				actual = reducir(imagen, ancho, alto);
+			}
+		}
+	}
+
+	/**
+	 * JPEG con la calidad más alta que quepa en maxBytes, o null si ni con la
+	 * mínima cabe. Búsqueda en un intervalo [cabe, noCabe] de calidades: el
+	 * tamaño del JPEG crece casi en línea recta con 1 / (1 - calidad), así que
+	 * cada prueba se interpola en esa escala, acotada al centro del intervalo
+	 * para que converja como una bisección aunque la estimación falle.
+	 */
+	private byte[] mejorCalidad(BufferedImage imagen) throws IOException {
+		int tamano = escribir(imagen, CALIDAD_MAXIMA);
+		if (tamano <= maxBytes) {
+			return salida.toByteArray();
+		}
+		float noCabe = CALIDAD_MAXIMA;
+		int tamanoNoCabe = tamano;
+		float cabe = -1;
+		int tamanoCabe = 0;
+		byte[] mejor = null;
+		// Sin punto inferior se supone tamaño proporcional y se apunta algo por debajo del límite
+		float calidad = desdeEscala(escala(noCabe) * OBJETIVO * maxBytes / tamanoNoCabe);
+		for (int i = 0; i < PASOS; i++) {
+			tamano = escribir(imagen, calidad);
+			if (tamano <= maxBytes) {
+				cabe = calidad;
+				tamanoCabe = tamano;
+				mejor = salida.toByteArray();
+				if (tamano >= SUFICIENTE * maxBytes || noCabe - cabe <= PRECISION) {
+					break;
+				}
+			} else {
+				noCabe = calidad;
+				tamanoNoCabe = tamano;
+				if (calidad <= CALIDAD_MINIMA) {
+					break;
+				}
+			}
+			if (cabe < 0) {
+				calidad = desdeEscala(escala(noCabe) * OBJETIVO * maxBytes / tamanoNoCabe);
+			} else {
+				double x0 = escala(cabe);
+				double x1 = escala(noCabe);
+				calidad = desdeEscala(x0 + (x1 - x0) * (maxBytes - tamanoCabe) / (tamanoNoCabe - tamanoCabe));
+				float margen = (noCabe - cabe) / 4;
+				calidad = Math.max(cabe + margen, Math.min(noCabe - margen, calidad));
+			}
+		}
+		return mejor;
+	}
+
+	private static double escala(float calidad) {
+		return 1 / (1 - (double) calidad);
+	}
+
+	private static float desdeEscala(double x) {
+		return Math.max(CALIDAD_MINIMA, Math.min(CALIDAD_MAXIMA, (float) (1 - 1 / x)));
+	}
+
+	// Cada prueba de calidad es un EventoJpeg de JFR, para ver cuántas hace falta por imagen y lo que cuestan
+	private int escribir(BufferedImage imagen, float calidad) throws IOException {
+		EventoJpeg evento = new EventoJpeg();
+		evento.begin();
+		salida.reset();
+		param.setCompressionQuality(calidad);
+		try (ImageOutputStream ios = ImageIO.createImageOutputStream(salida)) {
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(imagen, null, null), param);
+		} finally {
+			writer.setOutput(null);
+		}
+		evento.terminar(imagen.getWidth(), imagen.getHeight(), calidad, salida.size(), salida.size() <= maxBytes);
+		return salida.size();
+	}
+
+	/**
+	 * Ajusta la imagen para que quepa en maxAncho x maxAlto sin ampliarla, en RGB
+	 * (JPEG no tiene canal alfa). Las reducciones grandes se hacen a mitades
+	 * sucesivas con interpolación bilineal: un único drawImage de 4000 a 300
+	 * píxeles solo muestrea uno de cada trece y deja la foto con dientes de sierra.
+	 */
+	public static BufferedImage reducir(BufferedImage original, int maxAncho, int maxAlto) {
+		double escala = Math.min(1.0, Math.min((double) maxAncho / original.getWidth(), (double) maxAlto / original.getHeight()));
+		int anchoFinal = Math.max(1, (int) (original.getWidth() * escala));
+		int altoFinal = Math.max(1, (int) (original.getHeight() * escala));
+		if (escala == 1.0 && original.getType() == BufferedImage.TYPE_INT_RGB) {
+			return original;
+		}
+
+		BufferedImage actual = original;
+		int ancho = original.getWidth();
+		int alto = original.getHeight();
+		do {
+			ancho = Math.max(anchoFinal, ancho / 2);
+			alto = Math.max(altoFinal, alto / 2);
+			actual = redimensionar(actual, ancho, alto);
+		} while (ancho != anchoFinal || alto != altoFinal);
+		return actual;
+	}
+
+	private static BufferedImage redimensionar(BufferedImage origen, int ancho, int alto) {
+		BufferedImage destino = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = destino.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(origen, 0, 0, ancho, alto, null);
+		g.dispose();
+		return destino;
+	}
+}
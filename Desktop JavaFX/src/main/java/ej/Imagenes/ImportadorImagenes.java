@@ -0,0 +1,74 @@
+package ej.Imagenes;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prepara las fotos y logos que se arrastran o se eligen con el FileChooser
+ * fuera del hilo de JavaFX: decodifica el archivo ya submuestreado (una foto de
+ * 12 megapíxeles no llega a ocupar memoria a tamaño completo), la reduce por
+ * pasos y deja hecho el base64 que se enviará al pulsar "Guardar".
+ */
+public class ImportadorImagenes {
+
+	// Se decodifica a no menos del doble del tamaño final, para que la reducción por pasos tenga de dónde sacar detalle
+	public static final int LADO_DECODIFICADO = 2 * CodificadorJpeg.MAX_LADO;
+
+	private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+	private final CodificadorJpeg codificador;
+
+	public ImportadorImagenes(CodificadorJpeg codificador) {
+		this.codificador = codificador;
+	}
+
+	public CompletableFuture<Importada> importar(File archivo) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				BufferedImage reducida = CodificadorJpeg.reducir(decodificar(archivo), CodificadorJpeg.MAX_LADO, CodificadorJpeg.MAX_LADO);
+				return new Importada(SwingFXUtils.toFXImage(reducida, null), codificador.codificar(reducida));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, hilos);
+	}
+
+	// Con source subsampling el lector se salta filas y columnas al decodificar, en vez de reducir después
+	static BufferedImage decodificar(File archivo) throws IOException {
+		try (ImageInputStream entrada = ImageIO.createImageInputStream(archivo)) {
+			if (entrada == null) {
+				throw new IOException("No se puede abrir " + archivo);
+			}
+			Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+			if (!lectores.hasNext()) {
+				throw new IOException("Formato de imagen no reconocido: " + archivo.getName());
+			}
+			ImageReader lector = lectores.next();
+			try {
+				lector.setInput(entrada, true, true);
+				int paso = Math.max(1, Math.min(lector.getWidth(0), lector.getHeight(0)) / LADO_DECODIFICADO);
+				ImageReadParam param = lector.getDefaultReadParam();
+				param.setSourceSubsampling(paso, paso, 0, 0);
+				return lector.read(0, param);
+			} finally {
+				lector.dispose();
+			}
+		}
+	}
+
+	// imagen es la vista previa ya reducida; base64 es lo que se guarda en la API
+	public record Importada(Image imagen, String base64) {
+	}
+}
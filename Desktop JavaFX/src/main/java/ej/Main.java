@@ -1,10 +1,15 @@
 package ej;
 
+import ej.Diagnostico.Metricas;
+import ej.Diagnostico.PanelDiagnostico;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.stage.Stage;
 
 
@@ -20,6 +25,10 @@ public class Main extends Application {
 			FXMLLoader loader = new FXMLLoader(getClass().getResource("/vistas/pantallaPrincipal.fxml"));
 			Parent root = loader.load();
 			Scene scene = new Scene(root);
+			scene.getAccelerators().put(new KeyCodeCombination(KeyCode.D, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN),
+					PanelDiagnostico::mostrar);
+			// Métricas al log cada cinco minutos por defecto; -Descolavision.metricas.exportar=0 lo desactiva
+			Metricas.exportarCada(Long.getLong("escolavision.metricas.exportar", 300));
 			primaryStage.setScene(scene);
 			primaryStage.setTitle("EscolaVision Desktop");
 			primaryStage.getIcons().add(new Image("escolavision.png"));
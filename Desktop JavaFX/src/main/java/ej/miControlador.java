@@ -1,10 +1,29 @@
 package ej;
 
+import ej.API.ClienteApi;
+import ej.API.EscritorApi;
+import ej.Datos.AlmacenLocal;
+import ej.Datos.ColaEscrituras;
+import ej.Datos.DiarioEscrituras;
+import ej.Datos.PlanificadorCargas;
+import ej.Datos.RangosIds;
+import ej.Datos.Repositorio;
+import ej.Datos.TablaEnMemoria;
+import ej.Diagnostico.EventoGrafico;
+import ej.Diagnostico.EventoPestana;
+import ej.Diagnostico.Medicion;
+import ej.Diagnostico.Metricas;
+import ej.Estadisticas.FuenteEstadisticas;
+import ej.Graficos.GraficoResultados;
+import ej.Graficos.VistaEstadisticas;
+import ej.Imagenes.CacheImagenes;
+import ej.Imagenes.CodificadorJpeg;
+import ej.Imagenes.ImportadorImagenes;
 import ej.Tablas.*;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -13,6 +32,7 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.geometry.Side;
 import javafx.scene.Parent;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.Button;
@@ -26,6 +46,7 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.Dragboard;
 import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.*;
@@ -34,31 +55,27 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import org.controlsfx.control.textfield.TextFields;
 import org.controlsfx.validation.*;
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.category.DefaultCategoryDataset;
-
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import java.awt.*;
-import java.awt.image.BufferedImage;
+
 import java.io.*;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.util.List;
 
 public class miControlador implements Initializable {
@@ -67,7 +84,22 @@ public class miControlador implements Initializable {
 	private Button btnClearTest, btnClearQuest, btnClearAlum, btnClearTry, btnLogo, btnDelTest, btnDelQuest, btnDelAlum, btnDelTry, btnLogin, btnSaveTest, btnSaveQuest, btnSaveAlum, btnSaveTry, btnClearPxA, btnDelPxA, btnSavePxA, btnClearArea, btnDelArea, btnSaveArea, btnHelp, btnVisibleYes, btnVisibleNo;
 
 	@FXML
-	private ListView<String> listViewAlumnos, listViewArea, listViewIntentos, listViewPreguntas, listViewPxa, listViewTest, listViewPxAPreguntas;
+	private ListView<Test> listViewTest;
+
+	@FXML
+	private ListView<Pregunta> listViewPreguntas;
+
+	@FXML
+	private ListView<Alumno> listViewAlumnos;
+
+	@FXML
+	private ListView<Area> listViewArea, listViewPxa;
+
+	@FXML
+	private ListView<PxA> listViewPxAPreguntas;
+
+	@FXML
+	private ListView<Intentos> listViewIntentos;
 
 
 	@FXML
@@ -103,10 +135,38 @@ public class miControlador implements Initializable {
 	@FXML
     private ComboBox<String> txtTestQuest, txtTestTry;
 
-	private final Map<String, ListView<String>> listViewMap = new HashMap<>();
 	private final ListView<String> listViewDesplegableQuest = new ListView<>();
 	private final ListView<String> listViewDesplegableTry = new ListView<>();
 	private final Map<Tab, Button> tabToButtonMap = new HashMap<>();
+	private final ClienteApi api = ClienteApi.getInstancia();
+	// Tests, preguntas, áreas y pxa se pintan al arrancar desde la copia en disco y se ponen al día en segundo plano
+	private final Repositorio repositorio = new Repositorio(api::leer, AlmacenLocal.enCarpetaDeUsuario(api.getUrlBase()))
+			.conEstadisticas((tabla, parametros, etag) -> api.estadisticas(parametros, etag));
+	// Centro del profesor que ha iniciado sesión (-1 si no tiene): sus estadísticas se piden ya filtradas
+	private volatile int idCentroSesion = -1;
+	private final PlanificadorCargas cargas = new PlanificadorCargas();
+	private final Label lblGuardando = new Label("Guardando…");
+	private final ColaEscrituras escrituras = new ColaEscrituras(pendientes -> Platform.runLater(this::mostrarEscrituras));
+	// Guardados y borrados pasan por el diario en disco: sin conexión se reintentan y no se pierden al cerrar
+	private EscritorApi escritor;
+	private final CacheImagenes imagenes = new CacheImagenes();
+	private final CodificadorJpeg codificadorJpeg = new CodificadorJpeg();
+	private final ImportadorImagenes importador = new ImportadorImagenes(codificadorJpeg);
+	private final PauseTransition esperaVistaPrevia = new PauseTransition(javafx.util.Duration.millis(ESPERA_VISTA_PREVIA_MS));
+	// Cambia con cada tecla en txtQuestPxA: una vista previa que llega tarde no pisa a la del texto actual
+	private long vistaPrevia;
+	private GraficoResultados graficoIntento;
+	private VistaEstadisticas estadisticas;
+	private Tab tabEstadisticas;
+	// Filas por página en las listas; la primera se pinta sin esperar al resto de la tabla
+	private static final Logger LOG = LoggerFactory.getLogger(miControlador.class);
+
+	private static final int TAM_PAGINA = 100;
+	private static final Pattern PREGUNTA_ESCRITA = Pattern.compile("(?i)(?:pregunta\\s+)?(\\d{1,9})");
+	// Pausa tras la última tecla antes de pedir al servidor una pregunta que no está en memoria
+	private static final int ESPERA_VISTA_PREVIA_MS = 250;
+	// Operaciones como máximo en una llamada a lote.php
+	private static final int MAX_LOTE = 1000;
 
 	public miControlador() {
 	}
@@ -116,6 +176,92 @@ public class miControlador implements Initializable {
 		inicializarMap();
 		inicializarLogin();
 		inicializarImagenes();
+		inicializarGraficoIntento();
+		inicializarEstadisticas();
+		inicializarEscrituras();
+	}
+
+	// Pestaña creada aquí y no en el FXML: solo la ven administradores y profesores
+	private void inicializarEstadisticas() {
+		estadisticas = new VistaEstadisticas();
+		tabEstadisticas = new Tab("Estadísticas", estadisticas.getNodo());
+		tabEstadisticas.setClosable(false);
+	}
+
+	// Lo que quedó sin enviar en una sesión anterior espera al login: ver reanudarEscrituras
+	private void inicializarEscrituras() {
+		DiarioEscrituras diario;
+		try {
+			diario = DiarioEscrituras.enCarpetaDeUsuario(api.getUrlBase());
+		} catch (IOException e) {
+			LOG.warn("Diario de escrituras sin disco, las pendientes no sobrevivirán al cierre", e);
+			Metricas.contarFallo("diario abrir");
+			diario = DiarioEscrituras.enMemoria();
+		}
+		escritor = new EscritorApi(api, diario, escrituras, repositorio::huellaEnServidor, this::aplicarIgualmente,
+				() -> Platform.runLater(this::mostrarEscrituras));
+	}
+
+	// Tras un login correcto se reenvía lo que este usuario dejó pendiente, antes que cualquier escritura nueva suya
+	private void reanudarEscrituras(int idUsuario) {
+		escritor.iniciarSesion(idUsuario).forEach((entrada, reenvio) -> alTerminar(reenvio, respuesta -> {
+			invalidarCaches(entrada.tabla());
+			if (!respuesta.esOk()) {
+				mostrarAlerta(Alert.AlertType.ERROR, "Error", "Cambio pendiente no aplicado",
+						"El servidor rechazó un cambio en " + entrada.tabla() + " que quedó pendiente en la sesión anterior.");
+			}
+		}, () -> {
+		}));
+	}
+
+	// Una escritura retrasada cuya fila ha cambiado en el servidor: se pregunta antes de pisar el cambio ajeno
+	private boolean aplicarIgualmente(DiarioEscrituras.Entrada entrada) throws InterruptedException {
+		CompletableFuture<Boolean> respuesta = new CompletableFuture<>();
+		Platform.runLater(() -> {
+			Alert alerta = new Alert(Alert.AlertType.CONFIRMATION);
+			alerta.setTitle("Conflicto");
+			alerta.setHeaderText("El elemento ha cambiado en el servidor");
+			alerta.setContentText("Mientras su cambio esperaba a la conexión, alguien ha modificado o borrado el elemento "
+					+ entrada.id() + " de " + entrada.tabla() + ". ¿Desea "
+					+ ("DELETE".equals(entrada.metodo()) ? "borrarlo" : "guardar su versión") + " igualmente?");
+			Optional<ButtonType> resultado = alerta.showAndWait();
+			respuesta.complete(resultado.isPresent() && resultado.get() == ButtonType.OK);
+		});
+		try {
+			return respuesta.get();
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	// Un único gráfico para la pestaña Intentos; cargarIntento solo cambia sus valores
+	private void inicializarGraficoIntento() {
+		graficoIntento = new GraficoResultados();
+		Node nodo = graficoIntento.getNodo();
+		HBox.setHgrow(nodo, Priority.ALWAYS);
+
+		nodo.setOnMouseEntered(event -> {
+			nodo.setCursor(javafx.scene.Cursor.HAND);
+			nodo.setEffect(new DropShadow(20, Color.GRAY));
+		});
+
+		nodo.setOnMouseExited(event -> {
+			nodo.setCursor(javafx.scene.Cursor.DEFAULT);
+			nodo.setEffect(null);
+		});
+
+		nodo.setOnMouseClicked(event -> {
+			Stage imageStage = new Stage();
+			imageStage.setTitle("Gráfico Ampliado");
+			imageStage.getIcons().add(new Image(getClass().getResourceAsStream("/escolavision.png")));
+			GraficoResultados ampliado = new GraficoResultados();
+			ampliado.mostrar(graficoIntento.getResultados());
+
+			Scene scene = new Scene(new StackPane(ampliado.getNodo()), 800, 600);
+
+			imageStage.setScene(scene);
+			imageStage.show();
+		});
 	}
 
 	private void inicializarImagenes() {
@@ -150,13 +296,15 @@ public class miControlador implements Initializable {
 		imageView.setPreserveRatio(true);
 	}
 
+	// Las listas guardan los objetos de ej.Tablas; el texto de cada celda sale de ellos al pintarla
 	private void inicializarMap() {
-		listViewMap.put("alumno", listViewAlumnos);
-		listViewMap.put("area", listViewArea);
-		listViewMap.put("intentos", listViewIntentos);
-		listViewMap.put("pxa", listViewPxa);
-		listViewMap.put("pregunta", listViewPreguntas);
-		listViewMap.put("test", listViewTest);
+		prepararLista(listViewTest, miControlador::textoTest);
+		prepararLista(listViewPreguntas, miControlador::textoPregunta);
+		prepararLista(listViewAlumnos, Alumno::getNombre);
+		prepararLista(listViewArea, miControlador::textoArea);
+		prepararLista(listViewPxa, miControlador::textoArea);
+		prepararLista(listViewPxAPreguntas, pxa -> textoPregunta(pxa.getPregunta()));
+		prepararLista(listViewIntentos, miControlador::textoIntento);
 	}
 
 	private void inicializarLogin() {
@@ -172,6 +320,7 @@ public class miControlador implements Initializable {
 		tabPane.getTabs().remove(tabPxA);
 		tabPane.getTabs().remove(tabTest);
 		tabPane.getTabs().remove(tabTr);
+		tabPane.getTabs().remove(tabEstadisticas);
 		btnHelp.setVisible(false);
 		btnLogo.setVisible(true);
 		btnLogo.setManaged(true);
@@ -185,6 +334,7 @@ public class miControlador implements Initializable {
 		tabPane.getTabs().add(tabAr);
 		tabPane.getTabs().add(tabPxA);
 		tabPane.getTabs().add(tabTr);
+		tabPane.getTabs().add(tabEstadisticas);
 		btnLogo.setVisible(true);
 		btnLogo.setManaged(true);
 		btnHelp.setVisible(true);
@@ -208,6 +358,7 @@ public class miControlador implements Initializable {
 	private void rolProfesor() {
 		tabPane.getTabs().add(tabAlum);
 		tabPane.getTabs().add(tabTr);
+		tabPane.getTabs().add(tabEstadisticas);
 		tabPane.getTabs().remove(tabHome);
 		btnLogo.setVisible(true);
 		btnLogo.setManaged(true);
@@ -240,118 +391,52 @@ public class miControlador implements Initializable {
 
 
 		tabPane.getSelectionModel().selectedItemProperty().addListener((observable, oldTab, newTab) -> {
-			if (newTab != null) {
-				ProgressIndicator progressIndicator = new ProgressIndicator();
-				progressIndicator.setPrefSize(70, 70);
-
-				Region background = new Region();
-				background.setStyle("-fx-background-color: rgba(174,214,241,0.8);");
-				background.setPrefSize(miStackPane.getWidth(), miStackPane.getHeight());
-
-				StackPane loadingPane = new StackPane();
-				loadingPane.getChildren().addAll(background, progressIndicator);
-				StackPane.setAlignment(progressIndicator, Pos.CENTER);
-
-				javafx.application.Platform.runLater(() -> miStackPane.getChildren().add(loadingPane));
-
-				long startTime = System.currentTimeMillis();
-
-				new Thread(() -> {
-					try {
-						limpiar(newTab);
-						cargar(newTab);
-						cargarDatos(newTab);
-
-						long elapsedTime = System.currentTimeMillis() - startTime;
-						if (elapsedTime < 800) {
-							Thread.sleep(800 - elapsedTime);
-						}
-
-						javafx.application.Platform.runLater(() -> miStackPane.getChildren().remove(loadingPane));
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
-				}).start();
+			if (oldTab != null) {
+				// Lo que quedara por cargar de la pestaña anterior ya no debe tocar sus controles
+				cargas.cancelar(oldTab);
 			}
-		});
-
-
-		txtQuestPxA.textProperty().addListener((observable, oldValue, newValue) -> {
-			if (newValue != null && !newValue.trim().isEmpty()) {
-				try {
-					String[] parts = newValue.trim().split("\\s+");
-					if (parts.length > 1) {
-						int id = Integer.parseInt(parts[1]);
-						Pregunta pregunta = buscarPreguntaPorId(id);
-						if (pregunta != null) {
-							txtEnumPxA.setText(pregunta.getEnunciado());
-						} else {
-							txtEnumPxA.setText("");
-						}
-					} else {
-						txtEnumPxA.setText("");
-					}
-				} catch (NumberFormatException e) {
-					txtEnumPxA.setText("");
-				}
-			} else {
-				txtEnumPxA.setText("");
+			if (newTab != null) {
+				EventoPestana evento = new EventoPestana();
+				evento.empezar();
+				limpiar(newTab);
+				CompletableFuture<?> lista = cargar(newTab);
+				CompletableFuture<Void> carga = CompletableFuture.allOf(lista, cargarDatos(newTab));
+				mostrarCargando(carga);
+				carga.whenComplete((r, error) -> evento.terminar(newTab.getText(), tablaDePestana(newTab),
+						lista.getNow(null) instanceof TablaEnMemoria.Pagina<?> pagina ? pagina.filas().size() : 0));
 			}
 		});
 
 
-		listViewMap.forEach((tipo, listView) -> listView.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
-			if (newValue != null) {
-				//comprobarEditar(tipo);
-				String[] parts = newValue.trim().split("\\s+", 2);
-				switch (tipo) {
-					case "test": {
-						cambiarBotonEditar(btnSaveTest, "Actualizar", "test");
-						if (parts.length > 1) {
-							String[] parts2 = newValue.trim().split("\\s+");
-							cargarTestPartido(parts2[1]);
-						}
-						break;
-					}
-					case "pregunta": {
-						cambiarBotonEditar(btnSaveQuest, "Actualizar", "pregunta");
-						cargarPregunta(parts[1]);
-						break;
-					}
-					case "alumno": {
-						cambiarBotonEditar(btnSaveAlum, "Actualizar", "alumno");
-						cargarAlumno(newValue);
-						break;
-					}
-					case "area": {
-						cargarArea(newValue);
-						break;
-					}
-					case "pxa": {
-						cambiarBotonEditar(btnSavePxA, "Actualizar", "pxa");
-						String[] parts2 = newValue.trim().split("\\s+");
-						cargarPxA(parts2[1]);
-						break;
-					}
-					case "intentos": {
-						cambiarBotonEditar(btnSaveTry, "Actualizar", "intentos");
-						cargarIntento(parts[1]);
-						break;
-					}
-					default: {
-					}
-				}
-			}
-			listViewDesplegableQuest.setVisible(false);
-			listViewDesplegableTry.setVisible(false);
-		}));
+		txtQuestPxA.textProperty().addListener((observable, oldValue, newValue) -> vistaPreviaPregunta(newValue));
 
-		listViewPxAPreguntas.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
-			if (newValue != null) {
-				String[] parts = newValue.trim().split("\\s+", 2);
-				cargarPreguntaPxA(parts[1]);
-			}
+		// Seleccionar es leer el objeto de la lista: sin trocear textos ni volver a buscarlo
+		alSeleccionar(listViewTest, test -> {
+			cambiarBotonEditar(btnSaveTest, "Actualizar", "test");
+			cargarTest(test);
+		});
+		alSeleccionar(listViewPreguntas, pregunta -> {
+			cambiarBotonEditar(btnSaveQuest, "Actualizar", "pregunta");
+			cargarPregunta(pregunta);
+		});
+		alSeleccionar(listViewAlumnos, alumno -> {
+			cambiarBotonEditar(btnSaveAlum, "Actualizar", "alumno");
+			cargarAlumno(alumno);
 		});
+		alSeleccionar(listViewArea, this::cargarArea);
+		alSeleccionar(listViewPxa, area -> {
+			cambiarBotonEditar(btnSavePxA, "Actualizar", "pxa");
+			cargarPxA(area);
+		});
+		alSeleccionar(listViewIntentos, intento -> {
+			cambiarBotonEditar(btnSaveTry, "Actualizar", "intentos");
+			cargarIntento(intento);
+		});
+		alSeleccionar(listViewPxAPreguntas, this::cargarPreguntaPxA);
+
+		// Selección múltiple: varias áreas para asociarles las mismas preguntas, varias preguntas para borrarlas de golpe
+		listViewPxa.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+		listViewPxAPreguntas.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
 		//AYUDA
 		btnHelp.setOnAction(e -> {
@@ -370,7 +455,7 @@ public class miControlador implements Initializable {
 					helpMessage = "En esta sección puedes consultar las áreas de especialización disponibles. No se permite la modificación de las áreas guardadas en el sistema.";
 				}
 				case "Pregunta x Área" -> {
-					helpMessage = "En esta sección puedes asociar y modificar preguntas al área correspondiente, facilitando su organización y asignación. También puedes ver y editar las asociaciones guardadas en el sistema.";
+					helpMessage = "En esta sección puedes asociar y modificar preguntas al área correspondiente, facilitando su organización y asignación. También puedes ver y editar las asociaciones guardadas en el sistema. Con Ctrl o Mayús puedes seleccionar varias áreas o varias preguntas, y en el campo de pregunta puedes escribir varias a la vez (por ejemplo: 3, 5, 8-12); todas se guardan o se borran en una sola operación.";
 				}
 				case "Intentos" -> {
 					helpMessage = "En esta sección se muestran los intentos realizados por el alumno en cada test, incluyendo el nombre y apellidos del alumno, la fecha y hora de realización, y el resultado obtenido. Puedes ver y modificar los intentos guardados en el sistema.";
@@ -445,7 +530,8 @@ public class miControlador implements Initializable {
 
 
 		btnDelPxA.setOnAction(e -> {
-			if (!txtIdPxA.getText().isEmpty()) borrar("pxa", txtIdPxA.getText());
+			if (listViewPxAPreguntas.getSelectionModel().getSelectedItems().size() > 1) borrarPxAEnLote();
+			else if (!txtIdPxA.getText().isEmpty()) borrar("pxa", txtIdPxA.getText());
 			else mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al borrar", "Debe seleccionar un PxA.");
 		});
 
@@ -577,7 +663,9 @@ public class miControlador implements Initializable {
 					control.requestFocus();
 				}
 			} else {
-				insertarYActualizar("pxa");
+				if (!guardarPxAEnLote()) {
+					insertarYActualizar("pxa");
+				}
 				btnClearPxA.fire();
 			}
 		});
@@ -649,14 +737,62 @@ public class miControlador implements Initializable {
 		});
 	}
 
+	// El indicador solo aparece si la carga tarda; las pestañas ya cacheadas se pintan sin él
+	private void mostrarCargando(CompletableFuture<?> carga) {
+		ProgressIndicator progressIndicator = new ProgressIndicator();
+		progressIndicator.setPrefSize(70, 70);
+
+		Region background = new Region();
+		background.setStyle("-fx-background-color: rgba(174,214,241,0.8);");
+		background.setPrefSize(miStackPane.getWidth(), miStackPane.getHeight());
+
+		StackPane loadingPane = new StackPane();
+		loadingPane.getChildren().addAll(background, progressIndicator);
+		StackPane.setAlignment(progressIndicator, Pos.CENTER);
+
+		PauseTransition espera = new PauseTransition(javafx.util.Duration.millis(150));
+		espera.setOnFinished(e -> {
+			if (!carga.isDone()) {
+				miStackPane.getChildren().add(loadingPane);
+			}
+		});
+		espera.play();
+
+		carga.whenComplete((r, error) -> Platform.runLater(() -> {
+			espera.stop();
+			miStackPane.getChildren().remove(loadingPane);
+		}));
+	}
+
+	// Aplica el resultado en el hilo de JavaFX, salvo que la carga se haya cancelado al cambiar de pestaña
+	private <T> CompletableFuture<T> alTerminar(CompletableFuture<T> carga, Consumer<T> aplicar, Runnable siFalla) {
+		return alTerminar(carga, aplicar, error -> siFalla.run());
+	}
+
+	// Igual, pero siFalla recibe el motivo, ya sin el CompletionException que lo envuelve
+	private <T> CompletableFuture<T> alTerminar(CompletableFuture<T> carga, Consumer<T> aplicar, Consumer<Throwable> siFalla) {
+		carga.whenComplete((valor, error) -> Platform.runLater(() -> {
+			if (carga.isCancelled()) {
+				return;
+			}
+			if (error != null) {
+				Throwable motivo = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				LOG.warn("Carga o escritura fallida", motivo);
+				Metricas.contarFallo("ui carga");
+				siFalla.accept(motivo);
+			} else {
+				aplicar.accept(valor);
+			}
+		}));
+		return carga;
+	}
+
 	public void cambiarBotonEditar(Button boton, String textobtn, String tab) {
 		boton.setText(textobtn);
 	}
 
 	@FXML
 	private void handleRegister(MouseEvent event) {
-		System.out.println("Redirigir a la pantalla de registro");
-
 		Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
 
 		alert.setTitle("Registro de Profesor");
@@ -703,14 +839,6 @@ public class miControlador implements Initializable {
 			String centro = centroField.getText();
 			String anioNacimiento = anioNacimientoField.getText();
 
-			System.out.println("Registro:");
-			System.out.println("Nombre: " + nombre);
-			System.out.println("Apellidos: " + apellidos);
-			System.out.println("DNI: " + dni);
-			System.out.println("Email: " + email);
-			System.out.println("Centro: " + centro);
-			System.out.println("Año de nacimiento: " + anioNacimiento);
-
 			// Aquí puedes agregar la lógica para enviar los datos a la API
 		}
 	}
@@ -720,8 +848,42 @@ public class miControlador implements Initializable {
 		boton.setText(textobtn);
 	}
 
-	private void cargarTestPartido(String newValue) {
-		Test test = buscarTestPorId(Integer.parseInt(newValue));
+	// Enunciado de la pregunta escrita en txtQuestPxA. Si ya está en memoria se muestra al momento; si no, se
+	// espera a que se deje de escribir y se pide en segundo plano. Solo se pinta la respuesta de lo último escrito
+	private void vistaPreviaPregunta(String texto) {
+		long numero = ++vistaPrevia;
+		esperaVistaPrevia.stop();
+		int id = idPreguntaEscrita(texto);
+		if (id < 0) {
+			txtEnumPxA.setText("");
+			return;
+		}
+		Pregunta enMemoria = repositorio.getPreguntas().enCopia(id);
+		if (enMemoria != null) {
+			txtEnumPxA.setText(enMemoria.getEnunciado());
+			return;
+		}
+		esperaVistaPrevia.setOnFinished(e -> alTerminar(
+				cargas.cargar(tabPxA, "pregunta:" + id, () -> Optional.ofNullable(repositorio.getPreguntas().porId(id))),
+				pregunta -> {
+					if (vistaPrevia == numero) {
+						txtEnumPxA.setText(pregunta.map(Pregunta::getEnunciado).orElse(""));
+					}
+				}, () -> {
+					if (vistaPrevia == numero) {
+						txtEnumPxA.setText("");
+					}
+				}));
+		esperaVistaPrevia.playFromStart();
+	}
+
+	// "Pregunta 12" o "12"; -1 si es otra cosa (por ejemplo varias preguntas o un rango)
+	private static int idPreguntaEscrita(String texto) {
+		Matcher partes = texto == null ? null : PREGUNTA_ESCRITA.matcher(texto.trim());
+		return partes != null && partes.matches() ? Integer.parseInt(partes.group(1)) : -1;
+	}
+
+	private void cargarTest(Test test) {
 		txtIdTest.setText("" + test.getId());
 		txtTestName.setText(test.getNombre());
 		if (test.getIsVisible() == 1) {
@@ -733,161 +895,112 @@ public class miControlador implements Initializable {
 		}
 	}
 
-	private void cargarPregunta(String newValue) {
-		Pregunta pregunta;
-		if (newValue.contains("Pregunta")) {
-			String[] parts = newValue.trim().split(" ", 2);
-			pregunta = buscarPreguntaPorId(Integer.parseInt(parts[1]));
-		} else {
-			pregunta = buscarPreguntaPorId(Integer.parseInt(newValue));
-		}
+	// El nombre del test sale de la copia en memoria, que ya está cargada para el desplegable de tests
+	private void cargarPregunta(Pregunta pregunta) {
 		txtIdQuest.setText("" + pregunta.getId());
-		txtTestQuest.setValue(buscarTestPorId(pregunta.getIdTest()).getNombre());
+		txtTestQuest.setValue(nombreTest(pregunta.getIdTest()));
 		txtTituloQuest.setText(pregunta.getTitulo());
 		txtEnunQuest.setText(pregunta.getEnunciado());
 	}
 
-	private void cargarPreguntaPxA(String newValue) {
-		PxA pxa = buscarPxAPorPregunta(Integer.parseInt(newValue));
-		Pregunta p = buscarPreguntaPorId(Integer.parseInt(newValue));
-		String[] parts = listViewPxa.getSelectionModel().getSelectedItem().trim().split(" ");
+	// La pxa de la lista trae solo los ids: el enunciado sale de las preguntas ya cargadas para esta pestaña
+	private void cargarPreguntaPxA(PxA pxa) {
+		Area area = listViewPxa.getSelectionModel().getSelectedItem();
+		Pregunta p = repositorio.getPreguntas().enCopia(pxa.getPregunta().getId());
 		txtIdPxA.setText("" + pxa.getId());
-		txtAreaPxA.setText("Área " + parts[1]);
-		txtQuestPxA.setText("Pregunta " + p.getId());
-		txtEnumPxA.setText(p.getEnunciado());
+		txtAreaPxA.setText(area == null ? "" : area.getNombre());
+		txtQuestPxA.setText(textoPregunta(pxa.getPregunta()));
+		txtEnumPxA.setText(p == null ? "" : p.getEnunciado());
 	}
 
-	private void cargarAlumno(String nombre) {
-		Alumno alumno = buscarAlumnoPorNombre(nombre);
+	private void cargarAlumno(Alumno alumno) {
 		txtIdAlm.setText("" + alumno.getId());
 		txtNameAlm.setText(alumno.getNombre());
 		txtAñoNacimiento.setText(""+alumno.getEdad());
 		txtSurnameAlm.setText(alumno.getEmail());
 		txtDNIAlm.setText(alumno.getDni());
 		txtPasswordAlm.setText(alumno.getContraseña());
-		if (!Objects.equals(alumno.getFoto(), "")) {
+		// La lista de usuarios no trae las fotos: se pide solo la del alumno seleccionado
+		mostrarImagen(tabAlum, imgViewPicAlum, "usuarios:" + alumno.getId(), () -> repositorio.leerFoto(alumno.getId()), () -> {
 			imgViewPicAlum.setFitWidth(123);
 			imgViewPicAlum.setFitHeight(151);
-			imgViewPicAlum.setImage(base64ToImage(alumno.getFoto()));
-		} else {
-			imgViewPicAlum.setImage(null);
-		}
+		});
 	}
 
-	private void cargarArea(String newValue) {
-		String[] parts = newValue.trim().split("\\s+", 4);
-		Area area = buscarAreaPorNombre(parts[3]);
+	private void cargarArea(Area area) {
 		txtNameArea.setText(area.getNombre());
 		txtDescripArea.setText(area.getDescripcion());
 		txtIdArea.setText("" + area.getId());
-		if (!Objects.equals(area.getLogo(), "")) {
-			imgViewPicArea.setImage(base64ToImage(area.getLogo()));
-		} else {
-			imgViewPicArea.setImage(null);
+		mostrarImagen(tabAr, imgViewPicArea, "areas:" + area.getId(), () -> repositorio.leerLogo(area.getId()), () -> {
+		});
+	}
+
+	// Si la caché tiene la imagen vigente se pinta al momento; si no, se pide y se decodifica fuera del hilo de JavaFX
+	private void mostrarImagen(Tab tab, ImageView vista, String entidad, Callable<String> lectura, Runnable ajustar) {
+		vista.getProperties().put("entidad", entidad);
+		vista.getProperties().remove("importacion");
+		vista.getProperties().remove("quitarLogo");
+		CacheImagenes.Comprobada cacheada = imagenes.buscar(entidad);
+		if (cacheada != null) {
+			pintarImagen(vista, cacheada.imagen(), ajustar);
+			return;
 		}
+		vista.setImage(null);
+		alTerminar(cargas.cargar(tab, "imagen:" + entidad, () -> imagenes.obtener(entidad, lectura.call())), imagen -> {
+			// Al recorrer la lista con las flechas solo se pinta la del elemento que sigue seleccionado
+			if (entidad.equals(vista.getProperties().get("entidad"))) {
+				pintarImagen(vista, imagen, ajustar);
+			}
+		}, () -> {
+		});
 	}
 
-	private void cargarPxA(String newValue) {
-		List<PxA> listpxa = buscarPxAPorArea(Integer.parseInt(newValue));
-		List<String> preguntas = new ArrayList<>();
-		for (PxA pxa : listpxa) {
-			preguntas.add("Pregunta " + pxa.getPregunta().getId());
+	private void pintarImagen(ImageView vista, Image imagen, Runnable ajustar) {
+		if (imagen != null) {
+			ajustar.run();
 		}
-		listViewPxAPreguntas.setItems(FXCollections.observableArrayList(preguntas));
+		vista.setImage(imagen);
 	}
 
-	private void cargarIntento(String newValue) {
+	// Las asociaciones del área se leen fuera del hilo de JavaFX: si la copia de pxa ha caducado hay que pedirla
+	private void cargarPxA(Area area) {
+		listViewPxAPreguntas.setItems(null);
+		alTerminar(cargas.cargar(tabPxA, "pxa:" + area.getId(), () -> repositorio.getPxA().por(Repositorio.PXA_POR_AREA, area.getId())), asociaciones -> {
+			if (listViewPxa.getSelectionModel().getSelectedItem() == area) {
+				listViewPxAPreguntas.setItems(FXCollections.observableArrayList(asociaciones));
+			}
+		}, this::showErrorBD);
+	}
 
-		Intentos intento;
-		if (newValue.contains("Intento")) {
-			String[] parts = newValue.trim().split("\\s+", 2);
-			intento = buscarIntentoPorId(Integer.parseInt(parts[1]));
-		} else {
-			intento = buscarIntentoPorId(Integer.parseInt(newValue));
-		}
+	// Test y alumno del intento salen de las copias en memoria, cargadas para los campos de esta pestaña
+	private void cargarIntento(Intentos intento) {
 		txtIdTry.setText(String.valueOf(intento.getId()));
-		txtTestTry.setValue(buscarTestPorId(intento.getTest().getId()).getNombre());
-		Alumno a = buscarUsuarioPorId(intento.getAlumno().getId());
-		txtDNITry.setText(a.getNombre());
+		txtTestTry.setValue(nombreTest(intento.getTest().getId()));
+		Alumno a = repositorio.getUsuarios().enCopia(intento.getAlumno().getId());
+		txtDNITry.setText(a == null ? "" : a.getNombre());
 		txtDateTry.setValue(intento.getFecha());
 		txtTimeTry.setText(intento.getHora());
 		txtResTry.setText(intento.getResultados());
 
-		String[] valores = intento.getResultados().split(";");
-		String[] areas = {"AREA 1", "AREA 2", "AREA 3", "AREA 4", "AREA 5"};
-
-		DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-		for (int i = 0; i < valores.length; i++) {
-			dataset.addValue(Double.parseDouble(valores[i]), "Resultados", areas[i]);
-		}
-
-		JFreeChart chart = ChartFactory.createBarChart("Resultados por Área", "Áreas", "Resultados", dataset, PlotOrientation.VERTICAL, true, true, false);
-
-		BufferedImage bufferedImage = chart.createBufferedImage(800, 600);
-
-		Image fxImage = convertToFXImage(bufferedImage);
-
-		ImageView imageView = new ImageView(fxImage);
-
-		imageView.fitWidthProperty().bind(hboxTry.widthProperty());
-		imageView.fitHeightProperty().bind(hboxTry.heightProperty());
-		imageView.setPreserveRatio(true);
-
-		hboxTry.getChildren().clear();
-		hboxTry.setAlignment(Pos.CENTER);
-		hboxTry.getChildren().add(imageView);
-
-		imageView.setOnMouseEntered(event -> {
-			imageView.setCursor(javafx.scene.Cursor.HAND);
-			imageView.setEffect(new DropShadow(20, Color.GRAY));
-		});
-
-		imageView.setOnMouseExited(event -> {
-			imageView.setCursor(javafx.scene.Cursor.DEFAULT);
-			imageView.setEffect(null);
-		});
-
-		imageView.setOnMouseClicked(event -> {
-			Stage imageStage = new Stage();
-			imageStage.setTitle("Gráfico Ampliado");
-			imageStage.getIcons().add(new Image(getClass().getResourceAsStream("/escolavision.png")));
-			ImageView expandedImageView = new ImageView(fxImage);
-			expandedImageView.setPreserveRatio(true);
-			expandedImageView.setFitWidth(800);
-			expandedImageView.setFitHeight(600);
-
-			Scene scene = new Scene(new StackPane(expandedImageView), 800, 600);
-
-			imageStage.setScene(scene);
-			imageStage.show();
-		});
-
-		/*new Thread(() -> {
-			try {
-
-
-				javafx.application.Platform.runLater(() -> {
-
-				javafx.application.Platform.runLater(() -> ;miStackPane.getChildren().remove(loadingPane))
-
-			} catch (Exception e) {
-				e.printStackTrace();
-				javafx.application.Platform.runLater(() -> miStackPane.getChildren().remove(loadingPane));
+		EventoGrafico evento = new EventoGrafico();
+		evento.begin();
+		try (Medicion medicion = Metricas.iniciar("ui cargarIntento")) {
+			graficoIntento.mostrar(intento.getResultados());
+			if (!hboxTry.getChildren().contains(graficoIntento.getNodo())) {
+				hboxTry.getChildren().setAll(graficoIntento.getNodo());
+				hboxTry.setAlignment(Pos.CENTER);
 			}
-		}).start();*/
+			// El layout se adelanta al del siguiente pulso para que la medida lo incluya
+			hboxTry.applyCss();
+			hboxTry.layout();
+			medicion.correcta();
+		}
+		evento.terminar("intento", "intentos", 1);
 	}
 
-	private Image convertToFXImage(BufferedImage bufferedImage) {
-		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		try {
-			ImageIO.write(bufferedImage, "png", byteArrayOutputStream);
-			byteArrayOutputStream.flush();
-			byte[] byteArray = byteArrayOutputStream.toByteArray();
-			return new Image(new ByteArrayInputStream(byteArray));
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
-		}
+	private String nombreTest(int id) {
+		Test test = repositorio.getTests().enCopia(id);
+		return test == null ? null : test.getNombre();
 	}
 
 	private void borrar(String tipo, String id) {
@@ -907,41 +1020,33 @@ public class miControlador implements Initializable {
 
 			if (resultado.isPresent() && resultado.get() == ButtonType.OK) {
 				try {
-					// URL de la API para borrar
-					String apiUrl = "http://servidor.ieshlanz.es:8000/crud/borrar.php";
-
 					// Crear JSON con los datos
 					JSONObject jsonDatos = new JSONObject();
 					jsonDatos.put("tabla", tipo);
 					jsonDatos.put("id", Integer.parseInt(id)); // Asegurar que el ID sea numérico
 
-					// Convertir JSON a String
-					String jsonString = jsonDatos.toString();
-
-					// Configurar conexión HTTP
-					URL url = new URL(apiUrl);
-					HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-					connection.setRequestMethod("DELETE");
-					connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-					connection.setRequestProperty("Accept", "application/json");
-					connection.setDoOutput(true);
-
-					// Enviar JSON en el cuerpo de la solicitud
-					try (OutputStream os = connection.getOutputStream()) {
-						byte[] input = jsonString.getBytes(StandardCharsets.UTF_8);
-						os.write(input, 0, input.length);
-						os.flush();
-					}
+					// El elemento desaparece de la lista ya; si la API no lo borra, vuelve a su sitio
+					ListView<?> lista = tipo.equals("pxa") ? listViewPxAPreguntas : listaDeTabla(tipo);
+					Runnable deshacer = quitarSeleccionado(lista);
 
-					// Obtener respuesta de la API
-					int responseCode = connection.getResponseCode();
-					if (responseCode == HttpURLConnection.HTTP_OK) {
-						limpiar(tab); // Limpiar el contenido de la pestaña
-						cargar(tab);  // Recargar los datos
-					} else {
+					// Enviar el JSON en el cuerpo de la solicitud DELETE
+					int idBorrado = jsonDatos.getInt("id");
+					alTerminar(escritor.delete("borrar.php", jsonDatos.toString(), tipo, idBorrado, repositorio.huella(tipo, idBorrado)), respuesta -> {
+						if (respuesta.esOk()) {
+							invalidarCaches(tipo);
+							limpiar(tab); // Limpiar el contenido de la pestaña
+						} else {
+							deshacer.run();
+							mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al borrar",
+									"No se ha podido borrar el elemento seleccionado. Compruebe que no está siendo usado en otro registro.");
+						}
+					}, () -> {
+						deshacer.run();
+						// Sin respuesta no se sabe si se borró: la próxima carga lo dirá
+						invalidarCaches(tipo);
 						mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al borrar",
-								"No se ha podido borrar el elemento seleccionado. Compruebe que no está siendo usado en otro registro.");
-					}
+								"Ocurrió un error al intentar eliminar el elemento.");
+					});
 
 				} catch (Exception e) {
 					e.printStackTrace();
@@ -954,17 +1059,28 @@ public class miControlador implements Initializable {
 		}
 	}
 
+	// Quita de la lista el elemento seleccionado; lo devuelto lo pone otra vez en su sitio
+	private <T> Runnable quitarSeleccionado(ListView<T> lista) {
+		int posicion = lista == null || lista.getItems() == null ? -1 : lista.getSelectionModel().getSelectedIndex();
+		T quitado = posicion >= 0 ? lista.getItems().remove(posicion) : null;
+		return () -> {
+			if (quitado != null && lista.getItems() != null) {
+				lista.getItems().add(Math.min(posicion, lista.getItems().size()), quitado);
+			}
+		};
+	}
+
 	private void insertarYActualizar(String tipo) {
 		boolean isUpdate = false;
-		boolean resultado = false;
 
 		try {
-			// URL base para las operaciones
-			String baseApiUrl = "http://servidor.ieshlanz.es:8000/crud/";
-			String apiUrl;
+			String endpoint;
 
 			// Crear un objeto JSON con los datos
 			JSONObject jsonData = new JSONObject();
+			// Lo que aún falta en jsonData y se completa fuera del hilo de JavaFX, como la foto que se está importando.
+			// guardar lo arranca cuando ya ha leído jsonData, para que nadie lo toque desde dos hilos a la vez
+			Supplier<CompletableFuture<Void>> completar = () -> CompletableFuture.completedFuture(null);
 
 			switch (tipo) {
 				case "test": {
@@ -996,8 +1112,11 @@ public class miControlador implements Initializable {
 					datos.put("idtest", 1);
 					datos.put("enunciado", txtEnunQuest.getText());
 					datos.put("titulo", txtTituloQuest.getText());
-					Test t = buscarTestPorNombre(txtTestQuest.getValue());
-					datos.put("idtest",t.getId());
+					String nombreTest = txtTestQuest.getValue();
+					completar = () -> escrituras.enviar(() -> {
+						datos.put("idtest", idDe(buscarTestPorNombre(nombreTest), Test::getId, "No existe el test " + nombreTest));
+						return null;
+					});
 					if (!txtIdQuest.getText().isEmpty()) {
 						jsonData.put("id", Integer.parseInt(txtIdQuest.getText()));
 						isUpdate = true;
@@ -1016,8 +1135,10 @@ public class miControlador implements Initializable {
 					datos.put("dni", txtDNIAlm.getText());
 					datos.put("fecha_nacimiento", txtAñoNacimiento.getText());
 					datos.put("contrase\u00f1a", txtPasswordAlm.getText());
-					if (imgViewPicAlum.getImage() != null) {
-						datos.put("foto", imageToBase64(imgViewPicAlum.getImage()));
+					// Como con el logo del área: sin "foto" Usuario.php conserva la guardada
+					if (imgViewPicAlum.getProperties().containsKey("importacion")) {
+						CompletableFuture<String> foto = base64DeImagen(imgViewPicAlum);
+						completar = () -> foto.thenAccept(base64 -> datos.put("foto", base64));
 					}
 					if (!txtIdAlm.getText().isEmpty()) {
 						jsonData.put("id", Integer.parseInt(txtIdAlm.getText()));
@@ -1034,8 +1155,12 @@ public class miControlador implements Initializable {
 
 					datos.put("nombre", txtNameArea.getText());
 					datos.put("descripcion", txtDescripArea.getText());
-					if (imgViewPicArea.getImage() != null) {
-						datos.put("logo", imageToBase64(imgViewPicArea.getImage()));
+					// Solo un logo elegido aquí: el del servidor puede no haber llegado aún, y sin "logo" Area.php conserva el guardado
+					if (imgViewPicArea.getProperties().containsKey("quitarLogo")) {
+						datos.put("quitar_logo", 1);
+					} else if (imgViewPicArea.getProperties().containsKey("importacion")) {
+						CompletableFuture<String> logo = base64DeImagen(imgViewPicArea);
+						completar = () -> logo.thenAccept(base64 -> datos.put("logo", base64));
 					}
 					if (!txtIdArea.getText().isEmpty()) {
 						jsonData.put("id", Integer.parseInt(txtIdArea.getText()));
@@ -1048,11 +1173,14 @@ public class miControlador implements Initializable {
 				case "pxa": {
 					jsonData.put("tabla", "pxa");
 					JSONObject datos = new JSONObject();
-					Area a = buscarAreaPorNombre(txtAreaPxA.getText());
-					datos.put("idarea", a.getId());
-					String pregunta = txtQuestPxA.getText();
-					String[] partes = pregunta.split(" ");
-					datos.put("idpregunta", partes[1]);
+					String nombreArea = txtAreaPxA.getText();
+					int idPregunta = RangosIds.leer(txtQuestPxA.getText().replaceAll("(?i)pregunta", ""), 1).get(0);
+					datos.put("idpregunta", idPregunta);
+					completar = () -> escrituras.enviar(() -> {
+						idDe(buscarPreguntaPorId(idPregunta), Pregunta::getId, "No existe la pregunta " + idPregunta);
+						datos.put("idarea", idDe(buscarAreaPorNombre(nombreArea), Area::getId, "No existe el área " + nombreArea));
+						return null;
+					});
 					if (!txtIdPxA.getText().isEmpty()) {
 						jsonData.put("id", Integer.parseInt(txtIdPxA.getText()));
 						isUpdate = true;
@@ -1063,10 +1191,13 @@ public class miControlador implements Initializable {
 				case "intentos": {
 					jsonData.put("tabla", "intentos");
 					JSONObject datos = new JSONObject();
-					Test t = buscarTestPorNombre(txtTestTry.getValue());
-					Alumno a = buscarUsuarioPorNombre(txtDNITry.getText());
-					datos.put("idusuario", a.getId());
-					datos.put("idtest", t.getId());
+					String nombreTest = txtTestTry.getValue();
+					String dni = txtDNITry.getText();
+					completar = () -> escrituras.enviar(() -> {
+						datos.put("idusuario", idDe(buscarUsuarioPorNombre(dni), Alumno::getId, "No existe el alumno " + dni));
+						datos.put("idtest", idDe(buscarTestPorNombre(nombreTest), Test::getId, "No existe el test " + nombreTest));
+						return null;
+					});
 					LocalDate fecha = txtDateTry.getValue();
 					DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
 					String fechaString = fecha.format(formatter);
@@ -1078,7 +1209,6 @@ public class miControlador implements Initializable {
 						isUpdate = true;
 					}
 					jsonData.put("datos", datos); // Agregar los datos al objeto principal
-					System.out.println(jsonData);
 					break;
 				}
 				default: {
@@ -1087,53 +1217,258 @@ public class miControlador implements Initializable {
 				}
 			}
 			// Definir la URL y el método (insertar o actualizar)
-			System.out.println(jsonData);
-			apiUrl = baseApiUrl + (isUpdate ? "actualizar.php" : "insertar.php");
-			// Enviar la solicitud HTTP
-			resultado = enviarSolicitudApi(apiUrl, jsonData);
+			endpoint = isUpdate ? "actualizar.php" : "insertar.php";
+			// Enviar la solicitud HTTP en segundo plano
+			guardar(tipo, isUpdate, endpoint, jsonData, completar);
 		} catch (Exception e) {
 			e.printStackTrace();
 			mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al procesar los datos", e.getMessage());
 		}
+	}
 
-		// Actualizar la interfaz gráfica según el resultado
-		if (resultado) {
-			limpiar(getTabByTipo(tipo));
-			cargar(getTabByTipo(tipo));
-		} else {
-			String operacion = isUpdate ? "actualizar" : "insertar";
+	// El elemento se marca en la lista al momento; cuando contesta la API se sustituye por esa fila recién
+	// leída, sin recargar la lista entera, o vuelve a como estaba si la escritura falla. La escritura ocupa
+	// su sitio en la cola ya, pero jsonData no se anota ni se envía hasta que termina completar, que es quien
+	// lo acaba de rellenar. Si completar usa la cola de escrituras, va antes que el envío y no lo bloquea
+	private void guardar(String tipo, boolean isUpdate, String endpoint, JSONObject jsonData, Supplier<CompletableFuture<Void>> completar) {
+		String tabla = jsonData.getString("tabla");
+		String operacion = isUpdate ? "actualizar" : "insertar";
+		ListView<?> lista = listaDeTabla(tabla);
+		Guardando<?> marcado = marcarGuardando(lista, isUpdate, tabla, jsonData.getJSONObject("datos"));
+
+		// Al actualizar se anota cómo era la fila, para detectar conflictos si el envío tiene que esperar
+		int idGuardado = isUpdate ? jsonData.getInt("id") : 0;
+		String huella = isUpdate ? repositorio.huella(tabla, idGuardado) : null;
+		CompletableFuture<String> cuerpo = completar.get().thenApply(nada -> jsonData.toString());
+		alTerminar(escritor.post(endpoint, cuerpo, tabla, idGuardado, huella).thenCompose(respuesta -> escrituras.enviar(() -> {
+			if (!respuesta.esOk()) {
+				throw new IOException(endpoint + " respondió " + respuesta.estado());
+			}
+			int id = isUpdate ? idGuardado : new JSONObject(respuesta.cuerpo()).optInt("id");
+			// Con since= solo se descarga lo que ha cambiado desde la última lectura de la tabla
+			repositorio.invalidar(tabla);
+			return Optional.ofNullable(id > 0 ? filaLista(tabla, id) : null);
+		})), fila -> {
+			invalidarCaches(tipo);
+			// Si quedan páginas por cargar, la fila nueva ya llegará con la suya
+			boolean llegaraPaginada = !isUpdate && lista != null && lista.getProperties().get("siguiente") != null;
+			if (marcado != null) {
+				marcado.terminar(llegaraPaginada ? null : fila.orElse(null));
+			}
+		}, error -> {
+			if (marcado != null) {
+				marcado.deshacer();
+			}
+			if (error instanceof IllegalArgumentException) {
+				// Falta algo a lo que hace referencia el formulario: no se ha llegado a enviar
+				mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al procesar los datos", error.getMessage());
+				return;
+			}
+			// Sin respuesta no se sabe si se guardó: la próxima carga lo dirá
+			invalidarCaches(tipo);
 			mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al " + operacion, "No se ha podido " + operacion + " el elemento.");
+		});
+	}
+
+	// Id de una fila buscada en segundo plano; si no existe, el guardado falla con mensaje antes de enviarse
+	private static <T> int idDe(T fila, ToIntFunction<T> id, String siNoExiste) {
+		if (fila == null) {
+			throw new IllegalArgumentException(siNoExiste);
+		}
+		return id.applyAsInt(fila);
+	}
+
+	// Al actualizar se marca el elemento seleccionado; al insertar se añade uno provisional al final.
+	// null si no hay nada que marcar
+	@SuppressWarnings("unchecked")
+	private <T> Guardando<T> marcarGuardando(ListView<T> lista, boolean isUpdate, String tabla, JSONObject datos) {
+		if (lista == null || lista.getItems() == null) {
+			return null;
+		}
+		int posicion = lista.getSelectionModel().getSelectedIndex();
+		if (isUpdate && posicion >= 0) {
+			T anterior = lista.getItems().get(posicion);
+			return new Guardando<>(lista, anterior, anterior, null);
+		} else if (!isUpdate) {
+			T provisional = (T) filaProvisional(tabla);
+			if (provisional == null) {
+				return null;
+			}
+			lista.getItems().add(provisional);
+			return new Guardando<>(lista, provisional, null, nombreProvisional(datos));
+		}
+		return null;
+	}
+
+	// Objeto vacío que ocupa el sitio de la fila nueva hasta que la API devuelve su id
+	private static Object filaProvisional(String tabla) {
+		return switch (tabla) {
+			case "tests" -> new Test();
+			case "preguntas" -> new Pregunta();
+			case "usuarios" -> new Alumno();
+			case "areas" -> new Area();
+			case "intentos" -> new Intentos();
+			default -> null;
+		};
+	}
+
+	private String nombreProvisional(JSONObject datos) {
+		for (String campo : List.of("nombretest", "nombre", "titulo")) {
+			if (datos.has(campo)) {
+				return datos.getString(campo);
+			}
 		}
+		return "Nuevo elemento";
+	}
+
+	// Lista de la pestaña en la que se ve cada tabla; pxa se ve por áreas y no tiene una propia
+	private ListView<?> listaDeTabla(String tabla) {
+		return switch (tabla) {
+			case "test", "tests" -> listViewTest;
+			case "pregunta", "preguntas" -> listViewPreguntas;
+			case "usuario", "usuarios" -> listViewAlumnos;
+			case "area", "areas" -> listViewArea;
+			case "intentos" -> listViewIntentos;
+			default -> null;
+		};
 	}
 
-	private boolean enviarSolicitudApi(String apiUrl, JSONObject jsonData) {
+	// Tras guardar o borrar: la tabla del repositorio, las cargas en curso y, si procede, las fotos o logos comprobados
+	private void invalidarCaches(String tipo) {
+		repositorio.invalidar(tipo);
+		cargas.descartarEnCurso();
+		switch (tipo) {
+			case "usuario", "usuarios" -> imagenes.olvidar("usuarios");
+			case "area", "areas" -> imagenes.olvidar("areas");
+			default -> {
+			}
+		}
+	}
+
+	// Inserta de una vez cada pregunta escrita en cada área elegida; devuelve false si es una sola asociación.
+	// Aquí solo se lee el formulario: las búsquedas, que pueden ir a la API, se hacen en la cola de escrituras
+	private boolean guardarPxAEnLote() {
+		if (!txtIdPxA.getText().isEmpty()) {
+			return false;
+		}
+		List<Integer> preguntas;
 		try {
-			URL url = new URL(apiUrl);
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("POST");
-			connection.setRequestProperty("Content-Type", "application/json; utf-8");
-			connection.setRequestProperty("Accept", "application/json");
-			connection.setDoOutput(true);
-			// Enviar datos JSON
-			try (OutputStream os = connection.getOutputStream()) {
-				byte[] input = jsonData.toString().getBytes("utf-8");
-				os.write(input, 0, input.length);
+			// Se limita antes de buscar nada: un rango enorme no llega a recorrerse
+			preguntas = RangosIds.leer(txtQuestPxA.getText().replaceAll("(?i)pregunta", ""), MAX_LOTE);
+		} catch (IllegalArgumentException e) {
+			mostrarAlerta(Alert.AlertType.ERROR, "Error", "Preguntas no válidas", e.getMessage());
+			return true;
+		}
+		List<Integer> seleccionadas = listViewPxa.getSelectionModel().getSelectedItems().stream().map(Area::getId).toList();
+		boolean variasAreas = seleccionadas.size() > 1;
+		// Solo "Pregunta 3" en un área va por el guardado normal; una lista o un rango siempre va en lote,
+		// aunque acabe en una sola asociación, para avisar de las preguntas que no existen
+		if (idPreguntaEscrita(txtQuestPxA.getText()) >= 0 && !variasAreas) {
+			return false;
+		}
+		String nombreArea = txtAreaPxA.getText();
+		alTerminar(escrituras.enviar(() -> {
+			List<Integer> areas = variasAreas ? seleccionadas
+					: List.of(idDe(buscarAreaPorNombre(nombreArea), Area::getId, "No existe el área " + nombreArea));
+			return lotePxA(preguntas, areas);
+		}), lote -> {
+			if (lote.omitidas().size() == preguntas.size()) {
+				mostrarAlerta(Alert.AlertType.ERROR, "Error", "Preguntas no válidas", "No existe ninguna de las preguntas indicadas.");
+				return;
 			}
+			if (!lote.omitidas().isEmpty()) {
+				mostrarAlerta(Alert.AlertType.WARNING, "Aviso", "Preguntas omitidas", "No existen y no se han asociado: " + lote.omitidas());
+			}
+			enviarLote("pxa", lote.operaciones(), "insertar", () -> {
+			});
+		}, error -> mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al insertar",
+				error instanceof IllegalArgumentException ? error.getMessage() : "No se han podido comprobar las preguntas y áreas."));
+		return true;
+	}
+
+	// Operaciones del lote de pxa y preguntas que no existen, que no entran en él
+	private record LotePxA(JSONArray operaciones, List<Integer> omitidas) {
+	}
 
-			// Leer la respuesta
-			int responseCode = connection.getResponseCode();
-			if (responseCode == HttpURLConnection.HTTP_OK) {
-				return true;
+	// Fuera del hilo de JavaFX: cada búsqueda puede ir a la API
+	private LotePxA lotePxA(List<Integer> preguntas, List<Integer> areas) {
+		List<Integer> existentes = new ArrayList<>();
+		List<Integer> omitidas = new ArrayList<>();
+		for (int id : preguntas) {
+			if (buscarPreguntaPorId(id) != null) {
+				existentes.add(id);
 			} else {
-				System.err.println("Error en la respuesta de la API: " + responseCode);
+				omitidas.add(id);
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
-		return false;
+		JSONArray operaciones = new JSONArray();
+		for (int idArea : areas) {
+			// Las que ya estaban asociadas se omiten
+			Set<Integer> yaAsociadas = new HashSet<>();
+			for (PxA pxa : buscarPxAPorArea(idArea)) {
+				yaAsociadas.add(pxa.getPregunta().getId());
+			}
+			for (int idPregunta : existentes) {
+				if (!yaAsociadas.contains(idPregunta)) {
+					operaciones.put(new JSONObject().put("op", "insertar")
+							.put("datos", new JSONObject().put("idpregunta", idPregunta).put("idarea", idArea)));
+				}
+			}
+		}
+		return new LotePxA(operaciones, omitidas);
 	}
 
+	// Las preguntas seleccionadas ya son las pxa del área: sus ids van directos al lote
+	private void borrarPxAEnLote() {
+		if (listViewPxa.getSelectionModel().getSelectedItem() == null) {
+			return;
+		}
+		JSONArray operaciones = new JSONArray();
+		for (PxA pxa : listViewPxAPreguntas.getSelectionModel().getSelectedItems()) {
+			operaciones.put(new JSONObject().put("op", "borrar").put("datos", new JSONObject().put("id", pxa.getId())));
+		}
 
+		Alert confirmacion = new Alert(Alert.AlertType.CONFIRMATION);
+		confirmacion.setTitle("Confirmación de eliminación");
+		confirmacion.setHeaderText("¿Está seguro de que desea eliminar estas " + operaciones.length() + " asociaciones?");
+		Optional<ButtonType> resultado = confirmacion.showAndWait();
+		if (resultado.isPresent() && resultado.get() == ButtonType.OK) {
+			// Las preguntas se quitan de la lista ya y vuelven si el lote falla
+			List<PxA> antes = new ArrayList<>(listViewPxAPreguntas.getItems());
+			listViewPxAPreguntas.getItems().removeAll(List.copyOf(listViewPxAPreguntas.getSelectionModel().getSelectedItems()));
+			enviarLote("pxa", operaciones, "borrar", () -> listViewPxAPreguntas.setItems(FXCollections.observableArrayList(antes)));
+		}
+	}
+
+	// Un solo POST a lote.php, que aplica todas las operaciones en una transacción: o todas o ninguna
+	// deshacer devuelve la interfaz a como estaba si el lote no se aplica
+	private void enviarLote(String tabla, JSONArray operaciones, String operacion, Runnable deshacer) {
+		if (operaciones.isEmpty()) {
+			deshacer.run();
+			mostrarAlerta(Alert.AlertType.INFORMATION, "Información", "Nada que " + operacion, "Las asociaciones seleccionadas ya están guardadas.");
+			return;
+		}
+		if (operaciones.length() > MAX_LOTE) {
+			deshacer.run();
+			mostrarAlerta(Alert.AlertType.ERROR, "Error", "Demasiados elementos", "No se pueden " + operacion + " más de " + MAX_LOTE + " elementos a la vez.");
+			return;
+		}
+		JSONObject lote = new JSONObject().put("tabla", tabla).put("operaciones", operaciones);
+		Runnable fallo = () -> {
+			deshacer.run();
+			invalidarCaches(tabla);
+			mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al " + operacion, "No se ha podido " + operacion + " ninguno de los " + operaciones.length() + " elementos.");
+		};
+		// La lista de áreas no cambia con un lote de pxa: basta con limpiar el formulario
+		alTerminar(escritor.post("lote.php", lote.toString(), tabla, 0, null), respuesta -> {
+			if (respuesta.esOk()) {
+				invalidarCaches(tabla);
+				limpiar(getTabByTipo(tabla));
+			} else {
+				fallo.run();
+			}
+		}, fallo);
+	}
 
 	private Tab getTabByTipo(String tipo) {
 		return switch (tipo) {
@@ -1159,8 +1494,27 @@ public class miControlador implements Initializable {
 	}
 
 	private void agregarEventListenersParaSeleccionarImagen() {
-		imgViewPicAlum.setOnMouseClicked(e -> abrirFileChooser(imgViewPicAlum));
-		imgViewPicArea.setOnMouseClicked(e -> abrirFileChooser(imgViewPicArea));
+		imgViewPicAlum.setOnMouseClicked(e -> {
+			if (e.getButton() == MouseButton.PRIMARY) {
+				abrirFileChooser(imgViewPicAlum);
+			}
+		});
+		imgViewPicArea.setOnMouseClicked(e -> {
+			if (e.getButton() == MouseButton.PRIMARY) {
+				abrirFileChooser(imgViewPicArea);
+			}
+		});
+
+		// Con el botón derecho el logo se quita; el área se guarda después con "quitar_logo"
+		MenuItem quitarLogo = new MenuItem("Quitar logo");
+		quitarLogo.setOnAction(e -> {
+			imgViewPicArea.setImage(null);
+			imgViewPicArea.getProperties().remove("entidad");
+			imgViewPicArea.getProperties().remove("importacion");
+			imgViewPicArea.getProperties().put("quitarLogo", true);
+		});
+		ContextMenu menuLogo = new ContextMenu(quitarLogo);
+		imgViewPicArea.setOnContextMenuRequested(e -> menuLogo.show(imgViewPicArea, e.getScreenX(), e.getScreenY()));
 	}
 
 	private void abrirFileChooser(ImageView imageView) {
@@ -1168,8 +1522,7 @@ public class miControlador implements Initializable {
 		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Archivos de Imagen", "*.png", "*.jpg", "*.jpeg"));
 		File file = fileChooser.showOpenDialog(null);
 		if (file != null) {
-			Image image = new Image(file.toURI().toString());
-			imageView.setImage(image);
+			importarImagen(imageView, file);
 		}
 	}
 
@@ -1191,9 +1544,7 @@ public class miControlador implements Initializable {
 			boolean success = false;
 
 			if (db.hasFiles()) {
-				File file = db.getFiles().getFirst();
-				Image image = new Image(file.toURI().toString());
-				imageView.setImage(image);
+				importarImagen(imageView, db.getFiles().getFirst());
 				success = true;
 			}
 
@@ -1202,167 +1553,111 @@ public class miControlador implements Initializable {
 		});
 	}
 
-	private String imageToBase64(Image image) {
-		if (image == null) {
-			return null;
-		}
-
-		try {
-			BufferedImage bufferedImage = SwingFXUtils.fromFXImage(image, null);
-
-			int maxWidth = 300;
-			int maxHeight = 300;
-			BufferedImage resizedImage = resizeImage(bufferedImage, maxWidth, maxHeight);
-
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			float compressionQuality = 0.9f;
-			String base64Image;
-
-			do {
-				baos.reset();
-				ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
-				ImageWriteParam param = writer.getDefaultWriteParam();
-
-				if (param.canWriteCompressed()) {
-					param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-					param.setCompressionQuality(compressionQuality);
-				}
-
-				ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-				writer.setOutput(ios);
-				writer.write(null, new IIOImage(resizedImage, null, null), param);
-				writer.dispose();
-
-				base64Image = Base64.getEncoder().encodeToString(baos.toByteArray());
-				compressionQuality -= 0.1f;
-			} while (base64Image.length() > 20000 && compressionQuality > 0.1f);
-
-			if (base64Image.length() > 20000) {
-				throw new IllegalArgumentException("La imagen no puede comprimirse lo suficiente para cumplir el límite.");
+	// La foto se decodifica, reduce y codifica en segundo plano; al terminar se pinta si nadie ha cambiado la vista entretanto
+	private void importarImagen(ImageView imageView, File file) {
+		imageView.getProperties().remove("entidad");
+		imageView.getProperties().remove("quitarLogo");
+		CompletableFuture<ImportadorImagenes.Importada> importacion = importador.importar(file);
+		imageView.getProperties().put("importacion", importacion);
+		alTerminar(importacion, importada -> {
+			if (imageView.getProperties().get("importacion") == importacion) {
+				imageView.setImage(importada.imagen());
 			}
-
-			return base64Image;
-
-		} catch (IOException e) {
-
-			e.printStackTrace();
-			return null;
-		}
-	}
-
-	private BufferedImage resizeImage(BufferedImage originalImage, int maxWidth, int maxHeight) {
-		int originalWidth = originalImage.getWidth();
-		int originalHeight = originalImage.getHeight();
-
-		double scale = Math.min((double) maxWidth / originalWidth, (double) maxHeight / originalHeight);
-		int newWidth = (int) (originalWidth * scale);
-		int newHeight = (int) (originalHeight * scale);
-
-		BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-		Graphics2D g = resizedImage.createGraphics();
-		g.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-		g.dispose();
-		return resizedImage;
+		}, () -> {
+			if (imageView.getProperties().get("importacion") == importacion) {
+				imageView.getProperties().remove("importacion");
+				mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al cargar la imagen", "No se pudo leer " + file.getName() + ".");
+			}
+		});
 	}
 
-	private Image base64ToImage(String base64Image) {
-		if (base64Image == null || base64Image.isEmpty()) {
-			return null;
-		}
-		try {
-			byte[] imageBytes = Base64.getDecoder().decode(base64Image.replaceAll("\\s", ""));
-			ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-			BufferedImage bufferedImage = ImageIO.read(bis);
-			return SwingFXUtils.toFXImage(bufferedImage, null);
-		} catch (IOException e) {
-			return null;
+	// El base64 de la imagen elegida lo deja hecho el importador en su hilo; si aún no ha terminado, el guardado
+	// espera sin bloquear el de JavaFX. Si la importación falló (ya se avisó) se guarda sin imagen
+	private CompletableFuture<String> base64DeImagen(ImageView imageView) {
+		if (imageView.getProperties().get("importacion") instanceof CompletableFuture<?> importacion) {
+			return importacion.handle((importada, error) -> error == null ? ((ImportadorImagenes.Importada) importada).base64() : null);
 		}
+		return CompletableFuture.completedFuture(null);
 	}
 
-	private void cargarDatos(Tab newTab) {
+	private CompletableFuture<Void> cargarDatos(Tab newTab) {
 		if (newTab == tabTr) {
-			cargarDatosUsuarios();
-			cargarDatosTests();
+			return CompletableFuture.allOf(cargarDatosUsuarios(newTab), cargarDatosTests(newTab));
 		} else if (newTab == tabQuest) {
-			cargarDatosTests();
+			return CompletableFuture.allOf(cargarDatosTests(newTab));
 		} else if (newTab == tabPxA) {
-			cargarDatosAreas();
-			cargarDatosPreguntas();
+			return CompletableFuture.allOf(cargarDatosAreas(newTab), cargarDatosPreguntas(newTab));
+		} else if (newTab == tabEstadisticas) {
+			return CompletableFuture.allOf(cargarEstadisticas(newTab));
 		}
+		return CompletableFuture.completedFuture(null);
 	}
 
-	private void cargarDatosPreguntas() {
-		String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=preguntas";
-		ObservableList<String> idList = FXCollections.observableArrayList();
-		ObservableList<String> rawList = obtenerListaDesdeApi(apiUrl, "preguntas", "id");
-
-		for (String id : rawList) {
-			idList.add("Pregunta " + id);
-		}
-
-		configureAutocomplete(txtQuestPxA, idList);
+	private CompletableFuture<List<String>> cargarDatosPreguntas(Tab tab) {
+		return alTerminar(cargas.cargar(tab, "nombres:preguntas", () -> {
+			List<String> idList = new ArrayList<>();
+			for (Pregunta pregunta : repositorio.getPreguntas().todos()) {
+				idList.add("Pregunta " + pregunta.getId());
+			}
+			return idList;
+		}), idList -> configureAutocomplete(txtQuestPxA, FXCollections.observableArrayList(idList)), this::showErrorBD);
 	}
 
-	private void cargarDatosUsuarios() {
-		String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=usuarios";
-		ObservableList<String> nombreList = obtenerListaDesdeApi(apiUrl, "usuarios", "nombre");
-
-		TextFields.bindAutoCompletion(txtDNITry, nombreList);
+	private CompletableFuture<List<String>> cargarDatosUsuarios(Tab tab) {
+		return alTerminar(cargas.cargar(tab, "nombres:usuarios", () -> {
+			List<String> nombreList = new ArrayList<>();
+			for (Alumno alumno : repositorio.getUsuarios().todos()) {
+				nombreList.add(alumno.getNombre());
+			}
+			return nombreList;
+		}), nombreList -> TextFields.bindAutoCompletion(txtDNITry, nombreList), this::showErrorBD);
 	}
 
-	private void cargarDatosTests() {
-		String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=tests";
-		ObservableList<String> originalList = obtenerListaDesdeApi(apiUrl, "tests", "nombretest");
-		txtTestQuest.setItems(originalList);
-		txtTestTry.setItems(originalList);
+	private CompletableFuture<List<String>> cargarDatosTests(Tab tab) {
+		return alTerminar(cargas.cargar(tab, "nombres:tests", () -> {
+			List<String> originalList = new ArrayList<>();
+			for (Test test : repositorio.getTests().todos()) {
+				originalList.add(test.getNombre());
+			}
+			return originalList;
+		}), originalList -> {
+			txtTestQuest.setItems(FXCollections.observableArrayList(originalList));
+			txtTestTry.setItems(FXCollections.observableArrayList(originalList));
+		}, this::showErrorBD);
 	}
 
-	private void cargarDatosAreas() {
-		String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=areas";
-		ObservableList<String> areaList = obtenerListaDesdeApi(apiUrl, "areas", "nombre");
-
-		configureAutocomplete(txtAreaPxA, areaList);
+	// Primero los agregados de estadisticas.php, una respuesta pequeña aunque el centro tenga miles de intentos.
+	// Si el servidor aún no tiene ese endpoint, los intentos se descargan en columnas y se agregan aquí; con la
+	// tabla sin cambios (304) se reutilizan las de la vez anterior
+	private CompletableFuture<Map.Entry<FuenteEstadisticas, Map<Integer, String>>> cargarEstadisticas(Tab tab) {
+		return alTerminar(cargas.cargar(tab, "estadisticas", () -> {
+			Map<Integer, String> nombresTests = new HashMap<>();
+			for (Test test : repositorio.getTests().todos()) {
+				nombresTests.put(test.getId(), test.getNombre());
+			}
+			FuenteEstadisticas fuente;
+			try {
+				fuente = repositorio.agregadosIntentos(idCentroSesion);
+			} catch (IOException e) {
+				LOG.warn("Estadísticas del servidor no disponibles, se calculan en local", e);
+				Metricas.contarFallo("estadisticas servidor");
+				fuente = null;
+			}
+			if (fuente == null) {
+				fuente = repositorio.columnasIntentos();
+			}
+			return Map.entry(fuente, nombresTests);
+		}), datos -> estadisticas.mostrar(datos.getKey(), datos.getValue()), this::showErrorBD);
 	}
 
-
-	private ObservableList<String> obtenerListaDesdeApi(String apiUrl, String clave, String... campos) {
-		ObservableList<String> lista = FXCollections.observableArrayList();
-
-		try {
-			URL url = new URL(apiUrl);
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			connection.setRequestProperty("Accept", "application/json");
-
-			try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-				StringBuilder response = new StringBuilder();
-				String line;
-
-				while ((line = reader.readLine()) != null) {
-					response.append(line);
-				}
-
-				JSONObject jsonObject = new JSONObject(response.toString());
-				JSONArray jsonArray = jsonObject.getJSONArray(clave);
-
-				for (int i = 0; i < jsonArray.length(); i++) {
-					JSONObject objeto = jsonArray.getJSONObject(i);
-					StringBuilder concatenado = new StringBuilder();
-
-					for (String campo : campos) {
-						Object valor = objeto.get(campo);
-						concatenado.append(valor.toString()).append(" "); // Convierte el valor a String explícitamente
-					}
-
-					lista.add(concatenado.toString().trim());
-				}
+	private CompletableFuture<List<String>> cargarDatosAreas(Tab tab) {
+		return alTerminar(cargas.cargar(tab, "nombres:areas", () -> {
+			List<String> areaList = new ArrayList<>();
+			for (Area area : repositorio.getAreas().todos()) {
+				areaList.add(area.getNombre());
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-			showErrorBD();
-		}
-
-		return lista;
+			return areaList;
+		}), areaList -> configureAutocomplete(txtAreaPxA, FXCollections.observableArrayList(areaList)), this::showErrorBD);
 	}
 
 
@@ -1380,20 +1675,37 @@ public class miControlador implements Initializable {
 		});
 	}
 
-	private void cargar(Tab newTab) {
+	private CompletableFuture<?> cargar(Tab newTab) {
 		if (newTab == tabAlum) {
-			cargarDatos("usuarios", listViewAlumnos);
+			return cargarDatos(newTab, repositorio.getUsuarios(), listViewAlumnos);
 		} else if (newTab == tabAr) {
-			cargarDatos("areas", listViewArea);
+			return cargarDatos(newTab, repositorio.getAreas(), listViewArea);
 		} else if (newTab == tabTr) {
-			cargarDatos("intentos", listViewIntentos);
+			return cargarDatos(newTab, repositorio.getIntentos(), listViewIntentos);
 		} else if (newTab == tabQuest) {
-			cargarDatos("preguntas", listViewPreguntas);
+			return cargarDatos(newTab, repositorio.getPreguntas(), listViewPreguntas);
 		} else if (newTab == tabPxA) {
-			cargarDatos("areas", listViewPxa);
+			return cargarDatos(newTab, repositorio.getAreas(), listViewPxa);
 		} else if (newTab == tabTest) {
-			cargarDatos("tests", listViewTest);
+			return cargarDatos(newTab, repositorio.getTests(), listViewTest);
 		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	// Tabla de la lista que carga cada pestaña en cargar(Tab); null en las que no tienen lista
+	private String tablaDePestana(Tab tab) {
+		if (tab == tabAlum) {
+			return repositorio.getUsuarios().getTabla();
+		} else if (tab == tabAr || tab == tabPxA) {
+			return repositorio.getAreas().getTabla();
+		} else if (tab == tabTr) {
+			return repositorio.getIntentos().getTabla();
+		} else if (tab == tabQuest) {
+			return repositorio.getPreguntas().getTabla();
+		} else if (tab == tabTest) {
+			return repositorio.getTests().getTabla();
+		}
+		return null;
 	}
 
 	private void limpiar(Tab newTab) {
@@ -1426,6 +1738,8 @@ public class miControlador implements Initializable {
 					txtAñoNacimiento.clear();
 					txtDNIAlm.clear();
 					imgViewPicAlum.setImage(null);
+					imgViewPicAlum.getProperties().remove("entidad");
+					imgViewPicAlum.getProperties().remove("importacion");
 					listViewAlumnos.getSelectionModel().clearSelection();
 					cambiarBotonSave(btnSaveAlum, "Guardar", "usuario");
 				}
@@ -1434,6 +1748,9 @@ public class miControlador implements Initializable {
 					txtNameArea.clear();
 					txtDescripArea.clear();
 					imgViewPicArea.setImage(null);
+					imgViewPicArea.getProperties().remove("entidad");
+					imgViewPicArea.getProperties().remove("importacion");
+					imgViewPicArea.getProperties().remove("quitarLogo");
 					listViewArea.getSelectionModel().clearSelection();
 				}
 				case "Pregunta x Área" -> {
@@ -1466,68 +1783,50 @@ public class miControlador implements Initializable {
 		String user = txtUser.getText();
 		String password = txtPassword.getText();
 
-		String apiUrl = "http://servidor.ieshlanz.es:8000/crud/login.php";
-
 		new Thread(() -> {
 			try {
-				// Crear conexión HTTP
-				URL url = new URL(apiUrl);
-				HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-				connection.setRequestMethod("POST");
-				connection.setRequestProperty("Content-Type", "application/json");
-				connection.setDoOutput(true);
-
 				// Crear el objeto JSON con los datos del login
 				JSONObject loginData = new JSONObject();
 				loginData.put("usuario", user);
 				loginData.put("contrasena", password);
 
 				// Enviar datos al servidor
-				try (OutputStream os = connection.getOutputStream()) {
-					byte[] input = loginData.toString().getBytes("utf-8");
-					os.write(input, 0, input.length);
-				}
-
-				// Leer la respuesta del servidor
-				int status = connection.getResponseCode();
+				ClienteApi.Respuesta respuesta = api.post("login.php", loginData.toString());
+				int status = respuesta.estado();
 				if (status == 200) {
-					try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), "utf-8"))) {
-						StringBuilder response = new StringBuilder();
-						String responseLine;
-						while ((responseLine = br.readLine()) != null) {
-							response.append(responseLine.trim());
-						}
-						// Parsear la respuesta JSON
-						JSONObject jsonResponse = new JSONObject(response.toString());
-						String statusResponse = jsonResponse.optString("status", "error");
-						String message = jsonResponse.optString("message", "Error desconocido");
-
-						if ("success".equalsIgnoreCase(statusResponse)) {
-							String nombre = jsonResponse.optString("nombre", "Nombre no disponible");
-							String dni = jsonResponse.optString("dni", "DNI no disponibles");
-							String tipo = jsonResponse.optString("tipo", "Tipo no disponible");
-
-							if ("Profesor".equals(tipo)) {
-								boolean isOrientador = jsonResponse.optInt("is_orientador", 0) == 1;
-								Platform.runLater(() -> {
-									if (isOrientador) {
-										rolAdmin();
-										configurarHeader(nombre + " - " + dni);
-									} else {
-										rolProfesor();
-										configurarHeader(nombre + " - " + dni);
-									}
-								});
-							} else {
-								Platform.runLater(() -> {
-									rolAlumno();
+					// Parsear la respuesta JSON
+					JSONObject jsonResponse = new JSONObject(respuesta.cuerpo());
+					String statusResponse = jsonResponse.optString("status", "error");
+					String message = jsonResponse.optString("message", "Error desconocido");
+
+					if ("success".equalsIgnoreCase(statusResponse)) {
+						String nombre = jsonResponse.optString("nombre", "Nombre no disponible");
+						String dni = jsonResponse.optString("dni", "DNI no disponibles");
+						String tipo = jsonResponse.optString("tipo", "Tipo no disponible");
+						idCentroSesion = jsonResponse.optInt("id_centro", -1);
+						int idUsuario = jsonResponse.optInt("id", 0);
+
+						if ("Profesor".equals(tipo)) {
+							boolean isOrientador = jsonResponse.optInt("is_orientador", 0) == 1;
+							Platform.runLater(() -> {
+								if (isOrientador) {
+									rolAdmin();
 									configurarHeader(nombre + " - " + dni);
-								});
-							}
-
+								} else {
+									rolProfesor();
+									configurarHeader(nombre + " - " + dni);
+								}
+							});
 						} else {
-							Platform.runLater(() -> mostrarAlerta(Alert.AlertType.ERROR, "Error", "Login fallido", message));
+							Platform.runLater(() -> {
+								rolAlumno();
+								configurarHeader(nombre + " - " + dni);
+							});
 						}
+						Platform.runLater(() -> reanudarEscrituras(idUsuario));
+
+					} else {
+						Platform.runLater(() -> mostrarAlerta(Alert.AlertType.ERROR, "Error", "Login fallido", message));
 					}
 				} else {
 					Platform.runLater(() -> mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error en el servidor", "Código de error: " + status));
@@ -1563,7 +1862,26 @@ public class miControlador implements Initializable {
 		btnCerrarSesion.setOnAction(event -> cerrarSesion(spacer, lblNombre, btnCerrarSesion));
 
 
-		hbHeader.getChildren().addAll(spacer, lblNombre, btnCerrarSesion);
+		hbHeader.getChildren().addAll(spacer, lblGuardando, lblNombre, btnCerrarSesion);
+	}
+
+	// Indicador de escrituras en curso junto al nombre del usuario; la ventana sigue respondiendo mientras tanto.
+	// Se lee la cuenta al pintar: los avisos llegan de dos hilos y pueden cruzarse
+	private void mostrarEscrituras() {
+		int pendientes = escrituras.getPendientes();
+		if (lblGuardando.getGraphic() == null) {
+			ProgressIndicator indicador = new ProgressIndicator();
+			indicador.setPrefSize(16, 16);
+			lblGuardando.setGraphic(indicador);
+			lblGuardando.setStyle("-fx-font-size: 12px; -fx-text-fill: #666;");
+		}
+		if (escritor != null && escritor.isSinConexion()) {
+			lblGuardando.setText("Sin conexión: " + pendientes + (pendientes == 1 ? " cambio pendiente" : " cambios pendientes"));
+		} else {
+			lblGuardando.setText(pendientes > 1 ? "Guardando " + pendientes + " cambios…" : "Guardando…");
+		}
+		lblGuardando.setVisible(pendientes > 0);
+		lblGuardando.setManaged(pendientes > 0);
 	}
 
 	private void cerrarSesion(Region spacer, Label lblNombre, Button btnCerrarSesion) {
@@ -1573,257 +1891,180 @@ public class miControlador implements Initializable {
 		Optional<ButtonType> resultado = confirmacion.showAndWait();
 
 		if (resultado.isPresent() && resultado.get() == ButtonType.OK) {
-			hbHeader.getChildren().removeAll(spacer, lblNombre, btnCerrarSesion);
-			tabPane.getTabs().removeAll(tabTest, tabQuest, tabAlum, tabAr, tabPxA, tabTr);
+			hbHeader.getChildren().removeAll(spacer, lblGuardando, lblNombre, btnCerrarSesion);
+			tabPane.getTabs().removeAll(tabTest, tabQuest, tabAlum, tabAr, tabPxA, tabTr, tabEstadisticas);
 			tabPane.getTabs().add(tabHome);
 		}
 	}
 
-	private void cargarDatos(String tabla, ListView<String> listView) {
-		String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=" + tabla;
-
-		new Thread(() -> {
-			ObservableList<String> items = FXCollections.observableArrayList();
-
-			try {
-				// Conectar a la API
-				URL url = new URL(apiUrl);
-				HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-				connection.setRequestMethod("GET");
-				connection.setRequestProperty("Accept", "application/json");
-
-				// Leer la respuesta de la API
-				try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-					StringBuilder response = new StringBuilder();
-					String line;
-
-					while ((line = reader.readLine()) != null) {
-						response.append(line);
-					}
+	private <T> CompletableFuture<?> cargarDatos(Tab tab, TablaEnMemoria<T> tabla, ListView<T> listView) {
+		return cargarPagina(tab, tabla, listView, 0);
+	}
 
-					// Parsear la respuesta JSON
-					JSONObject responseObject = new JSONObject(response.toString());
-
-					// Verificar el tipo de tabla y manejar los datos correspondientes
-					switch (tabla.toLowerCase()) {
-						case "tests":
-							if (responseObject.has("tests")) {
-								JSONArray testArray = responseObject.getJSONArray("tests");
-								for (int i = 0; i < testArray.length(); i++) {
-									JSONObject testObject = testArray.getJSONObject(i);
-									int testId = testObject.getInt("id");
-									String testName = testObject.getString("nombretest");
-									items.add("Test "+testId+" - "+testName);
-								}
-							}
-							break;
-
-						case "usuarios":
-							if (responseObject.has("usuarios")) {
-								JSONArray array = responseObject.has("usuarios") ? responseObject.getJSONArray("usuarios") : responseObject.getJSONArray("profesores");
-								for (int i = 0; i < array.length(); i++) {
-									JSONObject itemObject = array.getJSONObject(i);
-									String name = itemObject.getString("nombre");
-									items.add(name);
-								}
-							}
-							break;
-
-						case "areas":
-							if (responseObject.has("areas")) {
-								JSONArray areasArray = responseObject.getJSONArray("areas");
-								for (int i = 0; i < areasArray.length(); i++) {
-									JSONObject areaObject = areasArray.getJSONObject(i);
-									int idArea = areaObject.getInt("id");
-									String areaName = areaObject.getString("nombre");
-									items.add("ÁREA "+idArea+" - " + areaName);
-								}
-							}
-							break;
-
-						case "preguntas":
-							if (responseObject.has("preguntas")) {
-								JSONArray preguntasArray = responseObject.getJSONArray("preguntas");
-								for (int i = 0; i < preguntasArray.length(); i++) {
-									JSONObject preguntaObject = preguntasArray.getJSONObject(i);
-									String preguntaName = "Pregunta " + preguntaObject.getInt("id");
-									items.add(preguntaName);
-								}
-							}
-							break;
-
-						case "pxa":
-							if (responseObject.has("pxa")) {
-								JSONArray pxaArray = responseObject.getJSONArray("pxa");
-								for (int i = 0; i < pxaArray.length(); i++) {
-									JSONObject pxaObject = pxaArray.getJSONObject(i);
-									String pxaName = pxaObject.getInt("idpregunta") + " - " + pxaObject.getInt("idarea");
-									items.add(pxaName);
-								}
-							}
-							break;
-
-						case "intentos":
-							if (responseObject.has("intentos")) {
-								JSONArray intentosArray = responseObject.getJSONArray("intentos");
-								for (int i = 0; i < intentosArray.length(); i++) {
-									JSONObject intentoObject = intentosArray.getJSONObject(i);
-									String intentoName = "Intento " + intentoObject.getInt("id");
-									items.add(intentoName);
-								}
-							}
-							break;
+	// La primera página (despuesDe = 0) sustituye los elementos de la lista; las siguientes se añaden al final.
+	// Las filas salen del repositorio, así la lista y los buscar* comparten los mismos objetos
+	private <T> CompletableFuture<TablaEnMemoria.Pagina<T>> cargarPagina(Tab tab, TablaEnMemoria<T> tabla, ListView<T> listView, int despuesDe) {
+		CompletableFuture<TablaEnMemoria.Pagina<T>> carga = cargas.cargar(tab, "lista:" + tabla.getTabla() + ":" + despuesDe,
+				() -> tabla.pagina(despuesDe, TAM_PAGINA));
+		// Si se lanza otra carga para la misma lista antes de que esta acabe, solo se pinta la última
+		listView.getProperties().put("carga", carga);
+		return alTerminar(carga, pagina -> {
+			if (listView.getProperties().get("carga") != carga) {
+				return;
+			}
+			if (despuesDe == 0) {
+				listView.setItems(FXCollections.observableArrayList(pagina.filas()));
+			} else {
+				listView.getItems().addAll(pagina.filas());
+			}
+			listView.getProperties().put("siguiente", pagina.hayMas() ? (Runnable) () -> cargarPagina(tab, tabla, listView, pagina.ultimoId()) : null);
+		}, () -> {
+			if (despuesDe != 0) {
+				// Se deja pendiente para reintentarla al volver a llegar al final
+				listView.getProperties().put("siguiente", (Runnable) () -> cargarPagina(tab, tabla, listView, despuesDe));
+			}
+			mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al cargar datos", "No se pudo cargar los datos desde la API.");
+		});
+	}
 
-						default:
-							// Si no es una tabla conocida, muestra un mensaje por defecto
-							items.add("Tabla desconocida");
-							break;
-					}
+	// Cada celda pinta el texto de su objeto, o el de "guardando…" si está marcado. Cuando se pinta la última
+	// celda de la lista se pide la página siguiente, si la hay
+	private <T> void prepararLista(ListView<T> listView, Function<T, String> texto) {
+		listView.setCellFactory(lista -> new ListCell<>() {
+			@Override
+			protected void updateItem(T item, boolean empty) {
+				super.updateItem(item, empty);
+				setText(empty || item == null ? null : textoCelda(lista, item, texto));
+				if (!empty && getIndex() == lista.getItems().size() - 1
+						&& lista.getProperties().remove("siguiente") instanceof Runnable siguiente) {
+					siguiente.run();
 				}
+			}
+		});
+	}
 
-				// Actualizar la ListView en el hilo de la interfaz gráfica
-				Platform.runLater(() -> listView.setItems(items));
+	private static <T> String textoCelda(ListView<T> lista, T item, Function<T, String> texto) {
+		Map<Object, String> marcas = marcas(lista);
+		if (!marcas.containsKey(item)) {
+			return texto.apply(item);
+		}
+		String nombre = marcas.get(item);
+		return (nombre == null ? texto.apply(item) : nombre) + " (guardando…)";
+	}
 
-			} catch (Exception e) {
-				e.printStackTrace();
-				Platform.runLater(() -> mostrarAlerta(Alert.AlertType.ERROR, "Error", "Error al cargar datos", "No se pudo cargar los datos desde la API."));
-			}
-		}).start();
+	// Elementos de la lista que se están guardando, por identidad; el valor es el nombre que se muestra mientras
+	// tanto, o null para usar el texto del propio objeto
+	@SuppressWarnings("unchecked")
+	private static Map<Object, String> marcas(ListView<?> lista) {
+		return (Map<Object, String>) lista.getProperties().computeIfAbsent("guardando", k -> new IdentityHashMap<>());
 	}
 
+	// Los elementos provisionales no se cargan en el formulario: aún no tienen id
+	private <T> void alSeleccionar(ListView<T> lista, Consumer<T> cargar) {
+		lista.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+			if (newValue != null && marcas(lista).get(newValue) == null) {
+				cargar.accept(newValue);
+			}
+			listViewDesplegableQuest.setVisible(false);
+			listViewDesplegableTry.setVisible(false);
+		});
+	}
 
-	public Test buscarTestPorId(int id) {
-		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=tests";
-			JSONArray testsArray = obtenerArrayDesdeApi(apiUrl);
+	// Elemento marcado como "guardando…" hasta que contesta la API
+	private static final class Guardando<T> {
+		private final ListView<T> lista;
+		private final T fila;
+		private final T anterior;
+
+		Guardando(ListView<T> lista, T fila, T anterior, String nombre) {
+			this.lista = lista;
+			this.fila = fila;
+			this.anterior = anterior;
+			marcas(lista).put(fila, nombre);
+			lista.refresh();
+		}
 
-			for (int i = 0; i < testsArray.length(); i++) {
-				JSONObject testObject = testsArray.getJSONObject(i);
-				if (testObject.getInt("id") == id) {
-					return new Test(testObject.getInt("id"), testObject.getString("nombretest"), testObject.getInt("isVisible"));
+		// Cambia el elemento marcado por la fila definitiva; con null simplemente lo quita
+		@SuppressWarnings("unchecked")
+		void terminar(Object definitiva) {
+			marcas(lista).remove(fila);
+			int posicion = lista.getItems() == null ? -1 : lista.getItems().indexOf(fila);
+			if (posicion >= 0) {
+				if (definitiva == null) {
+					lista.getItems().remove(posicion);
+				} else {
+					lista.getItems().set(posicion, (T) definitiva);
 				}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+			lista.refresh();
+		}
+
+		// La lista vuelve a como estaba: el elemento actualizado recupera su texto y el provisional desaparece
+		void deshacer() {
+			terminar(anterior);
 		}
-		return null;
 	}
 
-	public Test buscarTestPorNombre(String nombre) {
-		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=tests";
-			JSONArray testsArray = obtenerArrayDesdeApi(apiUrl);
+	// La fila tal como la tiene ahora el repositorio, para ponerla en su lista; null si ya no existe
+	private Object filaLista(String tabla, int id) throws IOException {
+		return switch (tabla.toLowerCase()) {
+			case "tests" -> repositorio.getTests().porId(id);
+			case "usuarios" -> repositorio.getUsuarios().porId(id);
+			case "areas" -> repositorio.getAreas().porId(id);
+			case "preguntas" -> repositorio.getPreguntas().porId(id);
+			case "pxa" -> repositorio.getPxA().porId(id);
+			case "intentos" -> repositorio.getIntentos().porId(id);
+			default -> null;
+		};
+	}
 
-			for (int i = 0; i < testsArray.length(); i++) {
-				JSONObject testObject = testsArray.getJSONObject(i);
-				if (Objects.equals(testObject.getString("nombretest"), nombre)) {
-					return new Test(testObject.getInt("id"), testObject.getString("nombretest"), testObject.getInt("isVisible"));
-				}
-			}
+	private static String textoTest(Test test) {
+		return "Test " + test.getId() + " - " + test.getNombre();
+	}
+
+	private static String textoArea(Area area) {
+		return "ÁREA " + area.getId() + " - " + area.getNombre();
+	}
+
+	private static String textoPregunta(Pregunta pregunta) {
+		return "Pregunta " + pregunta.getId();
+	}
+
+	private static String textoIntento(Intentos intento) {
+		return "Intento " + intento.getId();
+	}
+
+	public Test buscarTestPorId(int id) {
+		try {
+			return repositorio.getTests().porId(id);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 
-	public Pregunta buscarPreguntaPorId(int id) {
+	public Test buscarTestPorNombre(String nombre) {
 		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=preguntas";
-			JSONArray preguntasArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < preguntasArray.length(); i++) {
-				JSONObject preguntaObject = preguntasArray.getJSONObject(i);
-				if (preguntaObject.getInt("id") == id) {
-					return new Pregunta(preguntaObject.getInt("id"), preguntaObject.getString("enunciado"), preguntaObject.getString("titulo"), preguntaObject.getInt("idtest"));
-				}
-			}
+			return repositorio.getTests().porNombre(nombre);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 
-
-	public Alumno buscarAlumnoPorNombre(String nombre) {
+	public Pregunta buscarPreguntaPorId(int id) {
 		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=usuarios";
-			JSONArray alumnosArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < alumnosArray.length(); i++) {
-				JSONObject alumnoObject = alumnosArray.getJSONObject(i);
-
-				if (alumnoObject.getString("nombre").equalsIgnoreCase(nombre)) {
-
-					// Manejo seguro del campo 'foto'
-					String foto = null;
-					if (alumnoObject.has("foto") && !alumnoObject.isNull("foto")) {
-						Object fotoObject = alumnoObject.get("foto");
-						if (fotoObject instanceof String) {
-							foto = (String) fotoObject;
-						} else {
-							System.out.println("El campo 'foto' no es un String. Tipo recibido: " + fotoObject.getClass().getSimpleName());
-						}
-					}
-
-					int fechaNacimiento = 0000;
-					if(alumnoObject.has("fecha_nacimiento") && !alumnoObject.isNull("fecha_nacimiento")) {
-						fechaNacimiento = alumnoObject.getInt("fecha_nacimiento");
-					}
-
-					// Crear y retornar el objeto Alumno
-					return new Alumno(
-							alumnoObject.getInt("id"),
-							alumnoObject.getString("nombre"),
-							alumnoObject.getString("dni"),
-							alumnoObject.getString("contraseña"),
-							fechaNacimiento,
-							foto,
-							alumnoObject.getString("email")
-					);
-				}
-			}
+			return repositorio.getPreguntas().porId(id);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 
+
 	public Alumno buscarUsuarioPorId(int id){
 		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=usuarios";
-			JSONArray alumnosArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < alumnosArray.length(); i++) {
-				JSONObject alumnoObject = alumnosArray.getJSONObject(i);
-				if (alumnoObject.getInt("id")== id) {
-					// Manejo seguro del campo 'foto'
-					String foto = null;
-					if (alumnoObject.has("foto") && !alumnoObject.isNull("foto")) {
-						Object fotoObject = alumnoObject.get("foto");
-						if (fotoObject instanceof String) {
-							foto = (String) fotoObject;
-						} else {
-							System.out.println("El campo 'foto' no es un String. Tipo recibido: " + fotoObject.getClass().getSimpleName());
-						}
-					}
-
-					int fechaNacimiento = 0000;
-					if(alumnoObject.has("fecha_nacimiento") && !alumnoObject.isNull("fecha_nacimiento")) {
-						fechaNacimiento = alumnoObject.getInt("fecha_nacimiento");
-					}
-
-					// Crear y retornar el objeto Alumno
-					return new Alumno(
-							alumnoObject.getInt("id"),
-							alumnoObject.getString("nombre"),
-							alumnoObject.getString("dni"),
-							alumnoObject.getString("contraseña"),
-							fechaNacimiento,
-							foto,
-							alumnoObject.getString("email")
-					);
-				}
-			}
+			return repositorio.getUsuarios().porId(id);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -1832,23 +2073,7 @@ public class miControlador implements Initializable {
 
 	public Alumno buscarUsuarioPorNombre(String nombre){
 		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=usuarios";
-			JSONArray alumnosArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < alumnosArray.length(); i++) {
-				JSONObject alumnoObject = alumnosArray.getJSONObject(i);
-				if (Objects.equals(alumnoObject.getString("nombre"), nombre)) {
-					return new Alumno(
-							alumnoObject.getInt("id"),
-							alumnoObject.getString("nombre"),
-							"",
-							"",
-							0,
-							"",
-							""
-					);
-				}
-			}
+			return repositorio.getUsuarios().porNombre(nombre);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -1858,20 +2083,7 @@ public class miControlador implements Initializable {
 
 	public Area buscarAreaPorNombre(String nombre) {
 		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=areas";
-			JSONArray areasArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < areasArray.length(); i++) {
-				JSONObject areaObject = areasArray.getJSONObject(i);
-				if (areaObject.getString("nombre").equalsIgnoreCase(nombre)) {
-					return new Area(
-							areaObject.getInt("id"),
-							areaObject.getString("nombre"),
-							areaObject.getString("descripción"),
-							areaObject.getString("logo")
-					);
-				}
-			}
+			return repositorio.getAreas().porNombreSinMayusculas(nombre);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -1880,72 +2092,21 @@ public class miControlador implements Initializable {
 
 
 
-	public PxA buscarPxAPorPregunta(int id) {
-		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=pxa";
-			JSONArray pxaArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < pxaArray.length(); i++) {
-				JSONObject pxaObject = pxaArray.getJSONObject(i);
-				if (pxaObject.getInt("idpregunta") == id) {
-					return new PxA(
-							pxaObject.getInt("id"),
-							pxaObject.getInt("idpregunta"),
-							pxaObject.getInt("idarea")
-					);
-				}
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		return null;
-	}
-
 
 	public List<PxA> buscarPxAPorArea(int id) {
-		List<PxA> listaPxA = new ArrayList<>();  // Crear una lista para almacenar las coincidencias
-
 		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=pxa";
-			JSONArray pxaArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < pxaArray.length(); i++) {
-				JSONObject pxaObject = pxaArray.getJSONObject(i);
-				if (pxaObject.getInt("idarea") == id) {
-					listaPxA.add(new PxA(
-							pxaObject.getInt("id"),
-							pxaObject.getInt("idpregunta"),
-							pxaObject.getInt("idarea")
-					));
-				}
-			}
+			return new ArrayList<>(repositorio.getPxA().por(Repositorio.PXA_POR_AREA, id));
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-
-		return listaPxA;  // Devolver la lista completa
+		return new ArrayList<>();
 	}
 
 
 
 	public Intentos buscarIntentoPorId(int id) {
 		try {
-			String apiUrl = "http://servidor.ieshlanz.es:8000/crud/leer.php?tabla=intentos";
-			JSONArray intentosArray = obtenerArrayDesdeApi(apiUrl);
-
-			for (int i = 0; i < intentosArray.length(); i++) {
-				JSONObject intentoObject = intentosArray.getJSONObject(i);
-				if (intentoObject.getInt("id") == id) {
-					return new Intentos(
-							intentoObject.getInt("id"),
-							intentoObject.getInt("idtest"),
-							intentoObject.getInt("idusuario"),
-							intentoObject.getString("fecha"),
-							intentoObject.getString("hora"),
-							intentoObject.getString("resultados")
-					);
-				}
-			}
+			return repositorio.getIntentos().porId(id);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -1953,27 +2114,6 @@ public class miControlador implements Initializable {
 	}
 
 
-	private JSONArray obtenerArrayDesdeApi(String apiUrl) throws IOException, JSONException {
-		URL url = new URL(apiUrl);
-		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-		connection.setRequestMethod("GET");
-		connection.setRequestProperty("Accept", "application/json");
-
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-			StringBuilder response = new StringBuilder();
-			String line;
-			while ((line = reader.readLine()) != null) {
-				response.append(line);
-			}
-			JSONObject jsonResponse = new JSONObject(response.toString());
-			// Asume que la respuesta tiene un array con el nombre de la tabla
-			String rootKey = apiUrl.split("tabla=")[1]; // Obtener el nombre de la tabla
-			return jsonResponse.getJSONArray(rootKey);
-		}
-	}
-
-
-
 	public void mostrarAlerta(Alert.AlertType tipo, String titulo, String cabecera, String contenido) {
 		Platform.runLater(() -> {
 			Alert alert = new Alert(tipo);
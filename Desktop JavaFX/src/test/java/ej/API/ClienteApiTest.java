@@ -0,0 +1,93 @@
+package ej.API;
+
+import com.sun.net.httpserver.HttpServer;
+import ej.Datos.CargadorTabla;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClienteApiTest {
+
+	// Contesta como leer.php con el estado, el ETag y el cuerpo que ponga cada test, siempre con Content-Encoding: gzip
+	private int estado;
+	private byte[] cuerpo;
+	private HttpServer servidor;
+	private ClienteApi cliente;
+
+	@BeforeEach
+	void arrancar() throws IOException {
+		servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		servidor.createContext("/crud/", intercambio -> {
+			intercambio.getResponseHeaders().add("Content-Encoding", "gzip");
+			intercambio.getResponseHeaders().add("ETag", "\"v2\"");
+			intercambio.sendResponseHeaders(estado, cuerpo.length == 0 ? -1 : cuerpo.length);
+			try (var salida = intercambio.getResponseBody()) {
+				salida.write(cuerpo);
+			}
+		});
+		servidor.start();
+		cliente = new ClienteApi("http://127.0.0.1:" + servidor.getAddress().getPort() + "/crud/",
+				Duration.ofSeconds(5), Duration.ofSeconds(5), false);
+	}
+
+	@AfterEach
+	void parar() {
+		servidor.stop(0);
+	}
+
+	@Test
+	void la304ConGzipVuelveSinCuerpo() throws IOException {
+		estado = 304;
+		cuerpo = new byte[0];
+
+		CargadorTabla.Lectura lectura = cliente.leer("test", Map.of(), "\"v1\"");
+
+		assertTrue(lectura.sinCambios());
+		assertEquals("\"v1\"", lectura.etag());
+	}
+
+	@Test
+	void unCuerpoVacioConGzipSeLeeVacio() throws IOException {
+		estado = 200;
+		cuerpo = new byte[0];
+
+		CargadorTabla.Lectura lectura = cliente.leer("test", Map.of(), null);
+
+		try (InputStream leido = lectura.cuerpo()) {
+			assertEquals(0, leido.readAllBytes().length);
+		}
+	}
+
+	@Test
+	void unCuerpoGzipSeDescomprime() throws IOException {
+		estado = 200;
+		cuerpo = comprimir("[{\"id\":1}]");
+
+		CargadorTabla.Lectura lectura = cliente.leer("test", Map.of(), null);
+
+		try (InputStream leido = lectura.cuerpo()) {
+			assertEquals("[{\"id\":1}]", new String(leido.readAllBytes(), StandardCharsets.UTF_8));
+		}
+		assertEquals("\"v2\"", lectura.etag());
+	}
+
+	private static byte[] comprimir(String texto) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+			gzip.write(texto.getBytes(StandardCharsets.UTF_8));
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,231 @@
+package ej.API;
+
+import ej.Datos.ColaEscrituras;
+import ej.Datos.DiarioEscrituras;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EscritorApiTest {
+
+	@TempDir
+	Path carpeta;
+
+	private final ApiGuionizada api = new ApiGuionizada();
+	private final AtomicInteger cambiosConexion = new AtomicInteger();
+
+	@Test
+	void siNoSePuedeConectarReintentaHastaQueLlega() throws Exception {
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> null, entrada -> true);
+		api.guion.add(new ConnectException("Connection refused"));
+		api.guion.add(new ClienteApi.Respuesta(200, "{\"id\":9}"));
+
+		ClienteApi.Respuesta respuesta = esperar(escritor.post("insertar.php", "{}", "tests", 0, null));
+
+		assertEquals(200, respuesta.estado());
+		assertEquals(2, api.llamadas.size());
+		// Se pierde y se recupera la conexión
+		assertEquals(2, cambiosConexion.get());
+		assertFalse(escritor.isSinConexion());
+		assertTrue(diario.abiertas().isEmpty());
+	}
+
+	// Con la conexión abierta el servidor pudo aplicar la escritura: reenviarla duplicaría la fila
+	@Test
+	void siSeAgotaLaEsperaDeLaRespuestaNoReintenta() throws Exception {
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> null, entrada -> true);
+		api.guion.add(new HttpTimeoutException("request timed out"));
+
+		ExecutionException error = assertThrows(ExecutionException.class,
+				() -> esperar(escritor.post("lote.php", "{\"tabla\":\"pxa\"}", "pxa", 0, null)));
+
+		assertInstanceOf(IOException.class, error.getCause());
+		assertEquals(1, api.llamadas.size());
+		assertTrue(diario.abiertas().isEmpty());
+		assertTrue(new DiarioEscrituras(carpeta.resolve("pendientes.jsonl")).abiertas().isEmpty());
+	}
+
+	// Un error del servidor se devuelve tal cual: reenviarla daría el mismo error
+	@Test
+	void unErrorDelServidorCierraLaEntrada() throws Exception {
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> null, entrada -> true);
+		api.guion.add(new ClienteApi.Respuesta(500, "error"));
+
+		assertEquals(500, esperar(escritor.post("insertar.php", "{}", "tests", 0, null)).estado());
+		assertTrue(diario.abiertas().isEmpty());
+	}
+
+	// La cola se ocupa al pedir la escritura, aunque su cuerpo aún no esté: las siguientes no se adelantan
+	@Test
+	void unCuerpoPendienteNoDejaPasarALasSiguientes() throws Exception {
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> null, entrada -> true);
+		api.guion.add(new ClienteApi.Respuesta(200, "{}"));
+		api.guion.add(new ClienteApi.Respuesta(200, "{}"));
+		CompletableFuture<String> cuerpo = new CompletableFuture<>();
+
+		CompletableFuture<ClienteApi.Respuesta> primera = escritor.post("insertar.php", cuerpo, "tests", 0, null);
+		CompletableFuture<ClienteApi.Respuesta> segunda = escritor.post("insertar.php", "{\"n\":2}", "tests", 0, null);
+
+		assertThrows(TimeoutException.class, () -> segunda.get(200, TimeUnit.MILLISECONDS));
+		// La segunda ya está en el diario; la primera se anota cuando tiene cuerpo
+		assertEquals(List.of("{\"n\":2}"), diario.abiertas().stream().map(DiarioEscrituras.Entrada::cuerpo).toList());
+		cuerpo.complete("{\"n\":1}");
+
+		esperar(primera);
+		esperar(segunda);
+		assertEquals(List.of("{\"n\":1}", "{\"n\":2}"), api.llamadas);
+	}
+
+	@Test
+	void siElCuerpoFallaNoSeAnotaNiSeEnvia() throws Exception {
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> null, entrada -> true);
+
+		ExecutionException error = assertThrows(ExecutionException.class, () -> esperar(escritor.post("insertar.php",
+				CompletableFuture.failedFuture(new IllegalArgumentException("No existe el test")), "preguntas", 0, null)));
+
+		assertInstanceOf(IllegalArgumentException.class, error.getCause());
+		assertTrue(api.llamadas.isEmpty());
+		assertTrue(diario.abiertas().isEmpty());
+	}
+
+	@Test
+	void lasEscriturasNuevasQuedanANombreDeQuienInicioSesion() throws Exception {
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> null, entrada -> true);
+		escritor.iniciarSesion(7);
+		List<Integer> usuarios = new ArrayList<>();
+		api.alLlamar = () -> usuarios.add(diario.abiertas().getFirst().usuario());
+		api.guion.add(new ClienteApi.Respuesta(200, "{}"));
+
+		esperar(escritor.post("insertar.php", "{}", "tests", 0, null));
+
+		assertEquals(List.of(7), usuarios);
+	}
+
+	@Test
+	void alIniciarSesionSoloSeReenvianLasDeEseUsuarioYLasSinUsuario() throws Exception {
+		DiarioEscrituras anterior = diario();
+		anterior.anotar(1, "POST", "insertar.php", "{\"de\":1}", "tests", 0, null);
+		anterior.anotar(2, "POST", "insertar.php", "{\"de\":2}", "tests", 0, null);
+		anterior.anotar(0, "POST", "insertar.php", "{\"de\":0}", "tests", 0, null);
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> null, entrada -> true);
+		api.guion.add(new ClienteApi.Respuesta(200, "{}"));
+		api.guion.add(new ClienteApi.Respuesta(200, "{}"));
+
+		Map<DiarioEscrituras.Entrada, CompletableFuture<ClienteApi.Respuesta>> reenvios = escritor.iniciarSesion(1);
+		for (CompletableFuture<ClienteApi.Respuesta> reenvio : reenvios.values()) {
+			esperar(reenvio);
+		}
+
+		assertEquals(List.of("{\"de\":1}", "{\"de\":0}"), api.llamadas);
+		assertEquals(List.of(2), diario.abiertas().stream().map(DiarioEscrituras.Entrada::usuario).toList());
+		// Ya confirmadas, no se vuelven a mandar en la siguiente sesión del mismo usuario
+		assertTrue(escritor.iniciarSesion(1).isEmpty());
+		assertEquals(1, escritor.iniciarSesion(2).size());
+	}
+
+	@Test
+	void siLaFilaCambioEnElServidorYNoSeAplicaNoSeEnvia() throws Exception {
+		DiarioEscrituras anterior = diario();
+		anterior.anotar(1, "POST", "actualizar.php", "{\"id\":4}", "tests", 4, "vista");
+		DiarioEscrituras diario = diario();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> "otra", entrada -> false);
+
+		CompletableFuture<ClienteApi.Respuesta> reenvio = escritor.iniciarSesion(1).values().iterator().next();
+
+		ExecutionException error = assertThrows(ExecutionException.class, () -> esperar(reenvio));
+		assertInstanceOf(EscritorApi.ConflictoException.class, error.getCause());
+		assertTrue(api.llamadas.isEmpty());
+		assertTrue(diario.abiertas().isEmpty());
+	}
+
+	@Test
+	void siLaFilaNoHaCambiadoSeReenviaSinPreguntar() throws Exception {
+		DiarioEscrituras anterior = diario();
+		anterior.anotar(1, "POST", "actualizar.php", "{\"id\":4}", "tests", 4, "vista");
+		DiarioEscrituras diario = diario();
+		AtomicInteger preguntas = new AtomicInteger();
+		EscritorApi escritor = escritor(diario, (tabla, id) -> "vista", entrada -> {
+			preguntas.incrementAndGet();
+			return false;
+		});
+		api.guion.add(new ClienteApi.Respuesta(200, "{}"));
+
+		esperar(escritor.iniciarSesion(1).values().iterator().next());
+
+		assertEquals(1, api.llamadas.size());
+		assertEquals(0, preguntas.get());
+	}
+
+	private DiarioEscrituras diario() throws IOException {
+		return new DiarioEscrituras(carpeta.resolve("pendientes.jsonl"));
+	}
+
+	private EscritorApi escritor(DiarioEscrituras diario, EscritorApi.Comprobador comprobador, EscritorApi.Decision decision) {
+		return new EscritorApi(api, diario, new ColaEscrituras(pendientes -> {
+		}), comprobador, decision, cambiosConexion::incrementAndGet);
+	}
+
+	private static ClienteApi.Respuesta esperar(CompletableFuture<ClienteApi.Respuesta> envio) throws Exception {
+		return envio.get(10, TimeUnit.SECONDS);
+	}
+
+	// Cada llamada consume lo siguiente del guion: una respuesta o la excepción que lanza
+	private static final class ApiGuionizada extends ClienteApi {
+		final Deque<Object> guion = new ArrayDeque<>();
+		final List<String> llamadas = new ArrayList<>();
+		Runnable alLlamar = () -> {
+		};
+
+		ApiGuionizada() {
+			super("http://localhost/", Duration.ofSeconds(1), Duration.ofSeconds(1), false);
+		}
+
+		@Override
+		public Respuesta post(String ruta, String json) throws IOException {
+			return siguiente(json);
+		}
+
+		@Override
+		public Respuesta delete(String ruta, String json) throws IOException {
+			return siguiente(json);
+		}
+
+		private synchronized Respuesta siguiente(String json) throws IOException {
+			llamadas.add(json);
+			alLlamar.run();
+			Object paso = guion.removeFirst();
+			if (paso instanceof IOException e) {
+				throw e;
+			}
+			return (Respuesta) paso;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package ej.Datos;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CacheRespuestasTest {
+
+	// Servidor de mentira: contesta 304 si le mandan el ETag vigente y, si no, el cuerpo con ese ETag
+	private String etagServidor = "\"v1\"";
+	private String cuerpoServidor = "uno";
+	private final List<String> etagsRecibidos = new ArrayList<>();
+	private final AtomicInteger interpretados = new AtomicInteger();
+
+	private final CacheRespuestas cache = new CacheRespuestas((tabla, parametros, etag) -> {
+		etagsRecibidos.add(etag);
+		if (etag != null && etag.equals(etagServidor)) {
+			return new CargadorTabla.Lectura(null, etag);
+		}
+		return new CargadorTabla.Lectura(new ByteArrayInputStream(cuerpoServidor.getBytes(StandardCharsets.UTF_8)), etagServidor);
+	});
+
+	private final CacheRespuestas.Interprete<String> interprete = cuerpo -> {
+		interpretados.incrementAndGet();
+		return new String(cuerpo.readAllBytes(), StandardCharsets.UTF_8);
+	};
+
+	@Test
+	void la304DevuelveElMismoObjetoSinInterpretarOtraVez() throws IOException {
+		String primera = cache.leer("tests", Map.of("limit", "50"), interprete);
+		String segunda = cache.leer("tests", Map.of("limit", "50"), interprete);
+
+		assertEquals(Arrays.asList(null, "\"v1\""), etagsRecibidos);
+		assertSame(primera, segunda);
+		assertEquals(1, interpretados.get());
+	}
+
+	@Test
+	void unETagNuevoSustituyeLaEntrada() throws IOException {
+		cache.leer("tests", Map.of(), interprete);
+		etagServidor = "\"v2\"";
+		cuerpoServidor = "dos";
+
+		assertEquals("dos", cache.leer("tests", Map.of(), interprete));
+		assertEquals("dos", cache.leer("tests", Map.of(), interprete));
+		assertEquals(Arrays.asList(null, "\"v1\"", "\"v2\""), etagsRecibidos);
+		assertEquals(2, interpretados.get());
+	}
+
+	// El orden de los parámetros no cuenta; la tabla y sus valores sí
+	@Test
+	void laClaveSonLaTablaYLosParametros() throws IOException {
+		cache.leer("tests", Map.of("a", "1", "b", "2"), interprete);
+		cache.leer("tests", Map.of("b", "2", "a", "1"), interprete);
+		cache.leer("tests", Map.of("a", "1", "b", "3"), interprete);
+		cache.leer("areas", Map.of("a", "1", "b", "2"), interprete);
+
+		assertEquals(Arrays.asList(null, "\"v1\"", null, null), etagsRecibidos);
+	}
+
+	@Test
+	void sinETagNoSeGuardaNada() throws IOException {
+		etagServidor = null;
+		cache.leer("tests", Map.of(), interprete);
+		cache.leer("tests", Map.of(), interprete);
+
+		assertEquals(Arrays.asList(null, null), etagsRecibidos);
+		assertEquals(2, interpretados.get());
+	}
+
+	@Test
+	void una304SinPeticionCondicionalEsUnError() {
+		CacheRespuestas rota = new CacheRespuestas((tabla, parametros, etag) -> new CargadorTabla.Lectura(null, null));
+
+		assertThrows(IOException.class, () -> rota.leer("tests", Map.of(), interprete));
+	}
+
+	// La lectura con since= más nueva sustituye a las anteriores de la misma tabla y campos, y solo a esas
+	@Test
+	void unaLecturaConSinceDescartaLasAnteriores() throws IOException {
+		cache.leer("tests", Map.of("fields", "id", "since", "0"), interprete);
+		cache.leer("tests", Map.of("fields", "id,nombretest", "since", "0"), interprete);
+		cache.leer("areas", Map.of("fields", "id", "since", "0"), interprete);
+		cache.leer("tests", Map.of("fields", "id", "since", "7"), interprete);
+		etagsRecibidos.clear();
+
+		cache.leer("tests", Map.of("fields", "id", "since", "7"), interprete);
+		cache.leer("tests", Map.of("fields", "id,nombretest", "since", "0"), interprete);
+		cache.leer("areas", Map.of("fields", "id", "since", "0"), interprete);
+		cache.leer("tests", Map.of("fields", "id", "since", "0"), interprete);
+
+		assertEquals(Arrays.asList("\"v1\"", "\"v1\"", "\"v1\"", null), etagsRecibidos);
+	}
+
+	@Test
+	void guardaComoMucho256Entradas() throws IOException {
+		for (int i = 0; i <= CacheRespuestas.MAX_ENTRADAS; i++) {
+			cache.leer("tests", Map.of("after_id", String.valueOf(i)), interprete);
+		}
+		etagsRecibidos.clear();
+
+		// La más antigua ya no está y se vuelve a pedir entera; la última sigue
+		cache.leer("tests", Map.of("after_id", "0"), interprete);
+		cache.leer("tests", Map.of("after_id", String.valueOf(CacheRespuestas.MAX_ENTRADAS)), interprete);
+
+		assertEquals(Arrays.asList(null, "\"v1\""), etagsRecibidos);
+	}
+}
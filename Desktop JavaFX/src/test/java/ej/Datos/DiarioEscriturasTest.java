@@ -0,0 +1,149 @@
+package ej.Datos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DiarioEscriturasTest {
+
+	@TempDir
+	Path carpeta;
+
+	private Path archivo() {
+		return carpeta.resolve("servidor").resolve("pendientes.jsonl");
+	}
+
+	@Test
+	void lasAbiertasSeRecuperanAlVolverAArrancarEnElMismoOrden() throws IOException {
+		DiarioEscrituras diario = new DiarioEscrituras(archivo());
+		diario.anotar(3, "POST", "insertar.php", "{\"tabla\":\"tests\"}", "tests", 0, null);
+		diario.anotar(3, "DELETE", "borrar.php", "{\"id\":7}", "areas", 7, "huella");
+
+		List<DiarioEscrituras.Entrada> abiertas = new DiarioEscrituras(archivo()).abiertas();
+
+		assertEquals(diario.abiertas(), abiertas);
+		assertEquals(List.of("insertar.php", "borrar.php"), abiertas.stream().map(DiarioEscrituras.Entrada::ruta).toList());
+	}
+
+	@Test
+	void lasCerradasNoSeReenvianYLaNumeracionSigue() throws IOException {
+		DiarioEscrituras diario = new DiarioEscrituras(archivo());
+		DiarioEscrituras.Entrada primera = diario.anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+		DiarioEscrituras.Entrada segunda = diario.anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+		diario.cerrar(primera);
+
+		DiarioEscrituras releido = new DiarioEscrituras(archivo());
+
+		assertEquals(List.of(segunda), releido.abiertas());
+		assertTrue(releido.anotar(1, "POST", "lote.php", "{}", "pxa", 0, null).numero() > segunda.numero());
+	}
+
+	@Test
+	void sinNadaAbiertoElArchivoSeVacia() throws IOException {
+		DiarioEscrituras diario = new DiarioEscrituras(archivo());
+		DiarioEscrituras.Entrada entrada = diario.anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+		diario.cerrar(entrada);
+		// Cerrar dos veces no escribe nada más
+		diario.cerrar(entrada);
+
+		assertEquals(0, Files.size(archivo()));
+		assertTrue(new DiarioEscrituras(archivo()).abiertas().isEmpty());
+	}
+
+	@Test
+	void lasDeTablasPersonalesNoLleganAlArchivo() throws IOException {
+		DiarioEscrituras diario = new DiarioEscrituras(archivo());
+		diario.anotar(1, "POST", "insertar.php", "{\"dni\":\"12345678Z\"}", "usuarios", 0, null);
+		diario.anotar(1, "POST", "insertar.php", "{\"resultados\":\"1;2\"}", "intentos", 0, null);
+		DiarioEscrituras.Entrada test = diario.anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+
+		// En memoria siguen abiertas para reintentarlas mientras la aplicación esté abierta
+		assertEquals(3, diario.abiertas().size());
+		String contenido = Files.readString(archivo());
+		assertFalse(contenido.contains("12345678Z"));
+		assertFalse(contenido.contains("resultados"));
+		assertEquals(List.of(test), new DiarioEscrituras(archivo()).abiertas());
+
+		// Cerrar la que está en el archivo lo deja vacío aunque en memoria queden las personales
+		diario.cerrar(test);
+		assertEquals(0, Files.size(archivo()));
+		assertEquals(2, diario.abiertas().size());
+	}
+
+	@Test
+	void elArchivoSoloLoLeeElUsuario() throws IOException {
+		assumeTrue(carpeta.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		new DiarioEscrituras(archivo()).anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(archivo())));
+	}
+
+	@Test
+	void unDiarioAntiguoConOtrosPermisosSeRestringeAlAbrirlo() throws IOException {
+		assumeTrue(carpeta.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		Files.createDirectories(archivo().getParent());
+		Files.writeString(archivo(), linea(1, "tests") + "\n");
+		Files.setPosixFilePermissions(archivo(), PosixFilePermissions.fromString("rw-r--r--"));
+
+		new DiarioEscrituras(archivo());
+
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(archivo())));
+	}
+
+	// Las líneas anotadas antes de guardar el usuario no lo traen: quedan con 0
+	@Test
+	void unaLineaSinUsuarioQuedaConCero() throws IOException {
+		Files.createDirectories(archivo().getParent());
+		Files.writeString(archivo(), linea(4, "tests") + "\n");
+
+		assertEquals(0, new DiarioEscrituras(archivo()).abiertas().getFirst().usuario());
+	}
+
+	@Test
+	void unaUltimaLineaCortadaSeIgnoraYLaSiguienteEmpiezaEnLaSuya() throws IOException {
+		Files.createDirectories(archivo().getParent());
+		Files.writeString(archivo(), linea(1, "tests") + "\n{\"n\":2,\"metodo\":\"PO", StandardCharsets.UTF_8);
+
+		DiarioEscrituras diario = new DiarioEscrituras(archivo());
+		assertEquals(1, diario.abiertas().size());
+		DiarioEscrituras.Entrada nueva = diario.anotar(5, "POST", "insertar.php", "{}", "tests", 0, null);
+
+		assertEquals(List.of(1L, nueva.numero()), new DiarioEscrituras(archivo()).abiertas().stream().map(DiarioEscrituras.Entrada::numero).toList());
+	}
+
+	@Test
+	void siSeBorraElArchivoSeVuelveACrear() throws IOException {
+		DiarioEscrituras diario = new DiarioEscrituras(archivo());
+		diario.anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+		Files.delete(archivo());
+		diario.anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+
+		assertEquals(1, Files.readAllLines(archivo()).size());
+	}
+
+	@Test
+	void enMemoriaLlevaLaCuentaSinDisco() throws IOException {
+		DiarioEscrituras diario = DiarioEscrituras.enMemoria();
+		DiarioEscrituras.Entrada entrada = diario.anotar(1, "POST", "insertar.php", "{}", "tests", 0, null);
+		assertEquals(List.of(entrada), diario.abiertas());
+
+		diario.cerrar(entrada);
+		assertTrue(diario.abiertas().isEmpty());
+	}
+
+	// Formato de una versión anterior, sin el usuario
+	private static String linea(long numero, String tabla) {
+		return "{\"n\":" + numero + ",\"metodo\":\"POST\",\"ruta\":\"insertar.php\",\"cuerpo\":\"{}\",\"tabla\":\"" + tabla + "\",\"id\":0,\"huella\":null}";
+	}
+}
@@ -0,0 +1,59 @@
+package ej.Datos;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RangosIdsTest {
+
+	@Test
+	void leeIdsSueltosYRangosEnOrdenSinRepetir() {
+		assertEquals(List.of(3, 5, 8, 9, 10, 4), RangosIds.leer(" 3, 5 ,8 - 10, 9, 4", 100));
+	}
+
+	@Test
+	void ignoraPartesVacias() {
+		assertEquals(List.of(1, 2), RangosIds.leer("1,, 2,", 100));
+	}
+
+	@Test
+	void unRangoDeUnoEsUnSoloId() {
+		assertEquals(List.of(7), RangosIds.leer("7-7", 100));
+	}
+
+	@Test
+	void rechazaLoQueNoSonIds() {
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("3, tres", 100));
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("1-2-3", 100));
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("0", 100));
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("10-2", 100));
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer(" , ", 100));
+	}
+
+	@Test
+	void admiteJustoElMaximo() {
+		assertEquals(1000, RangosIds.leer("1-1000", 1000).size());
+	}
+
+	@Test
+	void rechazaMasDelMaximoSumandoTodasLasPartes() {
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("1-1001", 1000));
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("1-600, 701-1101", 1000));
+	}
+
+	// Sin el límite previo estos rangos se recorrerían enteros, y el último no terminaría nunca
+	@Test
+	void rechazaRangosEnormesSinRecorrerlos() {
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("1-999999999", 1000));
+		assertThrows(IllegalArgumentException.class, () -> RangosIds.leer("1-" + Integer.MAX_VALUE, 1000));
+	}
+
+	@Test
+	void unRangoQueTerminaEnElMayorIdPosibleNoDaLaVuelta() {
+		int ultimo = Integer.MAX_VALUE;
+		assertEquals(List.of(ultimo - 1, ultimo), RangosIds.leer((ultimo - 1) + "-" + ultimo, 10));
+	}
+}
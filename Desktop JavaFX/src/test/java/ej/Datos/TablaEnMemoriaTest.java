@@ -0,0 +1,133 @@
+package ej.Datos;
+
+import ej.Tablas.Pregunta;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TablaEnMemoriaTest {
+
+	// Contesta con las respuestas preparadas, en orden, y anota los parámetros de cada petición
+	private final Deque<String> respuestas = new ArrayDeque<>();
+	private final List<Map<String, String>> peticiones = new ArrayList<>();
+	private final TablaEnMemoria<Pregunta> preguntas = new TablaEnMemoria<>("preguntas", new CacheRespuestas((tabla, parametros, etag) -> {
+		peticiones.add(parametros);
+		return new CargadorTabla.Lectura(new ByteArrayInputStream(respuestas.removeFirst().getBytes(StandardCharsets.UTF_8)), null);
+	}), Repositorio.PREGUNTA, Pregunta::getId, null, 60_000);
+
+	@Test
+	void laPrimeraCargaPideDesdeCeroYTraeLaTablaEntera() throws IOException {
+		respuestas.add(respuesta(5, false, "[]", fila(2, "b"), fila(1, "a")));
+
+		assertEquals(List.of(2, 1), ids(preguntas.todos()));
+		assertEquals("0", peticiones.getFirst().get("since"));
+	}
+
+	@Test
+	void trasInvalidarSoloPideLosCambiosYLosFusiona() throws IOException {
+		respuestas.add(respuesta(5, false, "[]", fila(1, "a"), fila(2, "b"), fila(3, "c")));
+		preguntas.todos();
+		respuestas.add(respuesta(7, true, "[3]", fila(4, "d"), fila(2, "b2")));
+
+		preguntas.invalidar();
+		List<Pregunta> filas = preguntas.todos();
+
+		assertEquals("5", peticiones.getLast().get("since"));
+		// Ordenadas por id: la 2 sustituida, la 3 borrada y la 4 nueva
+		assertEquals(List.of(1, 2, 4), ids(filas));
+		assertEquals("b2", preguntas.porId(2).getTitulo());
+		assertNull(preguntas.enCopia(3));
+	}
+
+	@Test
+	void unDeltaVacioConservaLasMismasFilas() throws IOException {
+		respuestas.add(respuesta(5, false, "[]", fila(1, "a"), fila(2, "b")));
+		List<Pregunta> antes = preguntas.todos();
+		respuestas.add(respuesta(6, true, "[]"));
+
+		preguntas.invalidar();
+
+		assertSame(antes, preguntas.todos());
+		respuestas.add(respuesta(6, true, "[]"));
+		preguntas.invalidar();
+		preguntas.todos();
+		// La versión del delta vacío es desde la que se piden los siguientes cambios
+		assertEquals("6", peticiones.getLast().get("since"));
+	}
+
+	// Un servidor que no puede dar los cambios (por ejemplo, tras purgar el registro) manda la tabla entera
+	@Test
+	void unaRespuestaSinDeltaSustituyeLaCopia() throws IOException {
+		respuestas.add(respuesta(5, false, "[]", fila(1, "a"), fila(2, "b")));
+		preguntas.todos();
+		respuestas.add(respuesta(9, false, "[]", fila(3, "c")));
+
+		preguntas.invalidar();
+
+		assertEquals(List.of(3), ids(preguntas.todos()));
+		assertNull(preguntas.enCopia(1));
+	}
+
+	// Con la copia completa vigente las páginas salen de ella, en orden de id, sin preguntar al servidor
+	@Test
+	void lasPaginasSalenDeLaCopiaEnOrdenDeId() throws IOException {
+		respuestas.add(respuesta(5, false, "[]", fila(7, "g"), fila(2, "b"), fila(5, "e"), fila(9, "i")));
+		preguntas.todos();
+
+		TablaEnMemoria.Pagina<Pregunta> primera = preguntas.pagina(0, 2);
+		TablaEnMemoria.Pagina<Pregunta> segunda = preguntas.pagina(primera.ultimoId(), 2);
+		TablaEnMemoria.Pagina<Pregunta> desdeEnMedio = preguntas.pagina(6, 5);
+
+		assertEquals(List.of(2, 5), ids(primera.filas()));
+		assertEquals(List.of(7, 9), ids(segunda.filas()));
+		assertEquals(9, segunda.ultimoId());
+		assertEquals(List.of(7, 9), ids(desdeEnMedio.filas()));
+		assertFalse(desdeEnMedio.hayMas());
+		assertEquals(List.of(), ids(preguntas.pagina(9, 2).filas()));
+		assertEquals(1, peticiones.size());
+	}
+
+	// Las filas de una búsqueda por nombre no entran en las páginas acumuladas
+	@Test
+	void laBusquedaPorNombreVaAlServidorYNoSeAcumula() throws IOException {
+		TablaEnMemoria<Pregunta> porTitulo = new TablaEnMemoria<>("preguntas", new CacheRespuestas((tabla, parametros, etag) -> {
+			peticiones.add(parametros);
+			return new CargadorTabla.Lectura(new ByteArrayInputStream(respuestas.removeFirst().getBytes(StandardCharsets.UTF_8)), null);
+		}), Repositorio.PREGUNTA, Pregunta::getId, Pregunta::getTitulo, 60_000).buscarNombresEnServidor();
+		respuestas.add("{\"preguntas\":[" + fila(4, "Uno") + "," + fila(6, "uno") + "]}");
+		respuestas.add("{\"preguntas\":[" + fila(6, "uno") + "]}");
+
+		assertEquals(4, porTitulo.porNombreSinMayusculas("UNO").getId());
+		assertEquals(6, porTitulo.porNombre("uno").getId());
+
+		assertEquals("no", peticiones.get(0).get("mayusculas"));
+		assertNull(peticiones.get(1).get("mayusculas"));
+		assertNull(porTitulo.enCopia(4));
+	}
+
+	private static String respuesta(long version, boolean delta, String borrados, String... filas) {
+		return "{\"preguntas\":[" + String.join(",", filas) + "],\"version\":" + version
+				+ ",\"delta\":" + delta + ",\"borrados\":" + borrados + "}";
+	}
+
+	// Mismo texto en titulo y enunciado, para no depender de cuál de los dos devuelve cada getter
+	private static String fila(int id, String texto) {
+		return "{\"id\":" + id + ",\"titulo\":\"" + texto + "\",\"enunciado\":\"" + texto + "\",\"idtest\":1}";
+	}
+
+	private static List<Integer> ids(List<Pregunta> filas) {
+		return filas.stream().map(Pregunta::getId).toList();
+	}
+}
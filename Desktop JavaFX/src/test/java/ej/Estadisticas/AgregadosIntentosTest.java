@@ -0,0 +1,47 @@
+package ej.Estadisticas;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AgregadosIntentosTest {
+
+	private static final double DELTA = 1e-6;
+
+	// Dos grupos del test 1: en el primero, de 5 intentos, solo 3 tienen la primera área y 2 la segunda
+	private static final String RESPUESTA = """
+			{"areas": 2, "cubetas": {"desde": 0, "ancho": 5, "numero": 2},
+			 "grupos": [
+			  {"idtest": 1, "id_centro": 3, "mes": "2024-03", "intentos": 5,
+			   "areas": [{"n": 3, "media": 4, "distribucion": [3, 0]}, {"n": 2, "media": 6, "distribucion": [0, 2]}]},
+			  {"idtest": 1, "id_centro": 4, "mes": "2024-04", "intentos": 2,
+			   "areas": [{"n": 1, "media": 8, "distribucion": [0, 1]}, {"n": 0, "media": null, "distribucion": [0, 0]}]}
+			 ]}
+			""";
+
+	private static AgregadosIntentos agregados() throws IOException {
+		return AgregadosIntentos.leer(new ByteArrayInputStream(RESPUESTA.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void losIntentosSonLosDelServidorAunqueNingunAreaLosTengaTodos() throws IOException {
+		FuenteEstadisticas.Resumen resumen = agregados().resumir(FuenteEstadisticas.Filtro.todo(), 10);
+
+		assertEquals(7, resumen.intentos());
+		assertEquals(4, resumen.areas()[0].n());
+		assertEquals(5.0, resumen.areas()[0].media(), DELTA);
+		assertEquals(2, resumen.areas()[1].n());
+	}
+
+	@Test
+	void elFiltroPorCentroSoloSumaSusGrupos() throws IOException {
+		FuenteEstadisticas.Resumen resumen = agregados().resumir(new FuenteEstadisticas.Filtro(FuenteEstadisticas.TODOS, 4, Integer.MIN_VALUE, Integer.MAX_VALUE), 10);
+
+		assertEquals(2, resumen.intentos());
+		assertEquals(1, resumen.areas()[0].n());
+	}
+}
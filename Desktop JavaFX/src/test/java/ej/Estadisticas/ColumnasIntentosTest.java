@@ -0,0 +1,123 @@
+package ej.Estadisticas;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static ej.Estadisticas.FuenteEstadisticas.TODOS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnasIntentosTest {
+
+	private static final double DELTA = 1e-6;
+
+	private static ColumnasIntentos columnas() {
+		ColumnasIntentos.Constructor constructor = new ColumnasIntentos.Constructor();
+		constructor.anadir(1, 10, "2024-01-15", "2;4");
+		constructor.anadir(1, 11, "2024-02-01", "4;x");
+		constructor.anadir(2, 10, "2024-02-20", "6;8;10");
+		constructor.anadir(2, 12, "2024-03-05", null);
+		return constructor.construir();
+	}
+
+	@Test
+	void unAreaQueFaltaONoEsUnNumeroNoCuenta() {
+		FuenteEstadisticas.Resumen resumen = columnas().resumir(FuenteEstadisticas.Filtro.todo(), 4);
+
+		assertEquals(4, resumen.intentos());
+		assertEquals(3, resumen.areas().length);
+		assertEquals(3, resumen.areas()[0].n());
+		assertEquals(4.0, resumen.areas()[0].media(), DELTA);
+		// "x" y las filas sin segunda área quedan fuera
+		assertEquals(2, resumen.areas()[1].n());
+		assertEquals(6.0, resumen.areas()[1].media(), DELTA);
+		// El área que abre el tercer intento está vacía (NaN) para los anteriores
+		assertEquals(1, resumen.areas()[2].n());
+		assertEquals(10.0, resumen.areas()[2].media(), DELTA);
+	}
+
+	@Test
+	void percentilesEHistograma() {
+		ColumnasIntentos.Constructor constructor = new ColumnasIntentos.Constructor();
+		for (int i = 1; i <= 5; i++) {
+			constructor.anadir(1, i, "2024-01-01", String.valueOf(i));
+		}
+		FuenteEstadisticas.ResumenArea area = constructor.construir().resumir(FuenteEstadisticas.Filtro.todo(), 4).areas()[0];
+
+		assertEquals(3.0, area.media(), DELTA);
+		assertEquals(2.0f, area.p25(), DELTA);
+		assertEquals(3.0f, area.mediana(), DELTA);
+		assertEquals(4.0f, area.p75(), DELTA);
+		assertEquals(4.6f, area.p90(), DELTA);
+		assertEquals(1.0f, area.minimo(), DELTA);
+		assertEquals(1.0f, area.ancho(), DELTA);
+		// El máximo cae en la última cubeta
+		assertArrayEquals(new int[]{1, 1, 1, 2}, area.histograma());
+	}
+
+	@Test
+	void filtraPorTestYFechasIncluidas() {
+		ColumnasIntentos columnas = columnas();
+		int desde = (int) LocalDate.of(2024, 2, 1).toEpochDay();
+		int hasta = (int) LocalDate.of(2024, 2, 20).toEpochDay();
+
+		assertArrayEquals(new int[]{1, 2}, columnas.seleccionar(new FuenteEstadisticas.Filtro(TODOS, TODOS, desde, hasta)));
+		assertArrayEquals(new int[]{1}, columnas.seleccionar(new FuenteEstadisticas.Filtro(1, TODOS, desde, hasta)));
+		assertEquals(0, columnas.resumir(new FuenteEstadisticas.Filtro(3, TODOS, Integer.MIN_VALUE, Integer.MAX_VALUE), 4).intentos());
+	}
+
+	@Test
+	void mediasPorTestYPorMes() {
+		ColumnasIntentos columnas = columnas();
+
+		Map<Integer, double[]> porTest = columnas.mediasPor(FuenteEstadisticas.Agrupacion.TEST, FuenteEstadisticas.Filtro.todo());
+		assertEquals(List.of(1, 2), List.copyOf(porTest.keySet()));
+		assertArrayEquals(new double[]{3, 4, Double.NaN}, porTest.get(1), DELTA);
+		assertArrayEquals(new double[]{6, 8, 10}, porTest.get(2), DELTA);
+
+		// Marzo solo tiene un intento sin resultados: no sale
+		Map<Integer, double[]> porMes = columnas.mediasPor(FuenteEstadisticas.Agrupacion.MES, FuenteEstadisticas.Filtro.todo());
+		int enero = ColumnasIntentos.mes(LocalDate.of(2024, 1, 1));
+		assertEquals(List.of(enero, enero + 1), List.copyOf(porMes.keySet()));
+		assertArrayEquals(new double[]{5, 8, 10}, porMes.get(enero + 1), DELTA);
+	}
+
+	@Test
+	void losCentrosSalenDelUsuario() {
+		ColumnasIntentos columnas = columnas().conCentros(Map.of(10, 100, 11, 200));
+
+		assertArrayEquals(new int[]{100, 200}, columnas.centros());
+		assertArrayEquals(new int[]{0, 2}, columnas.seleccionar(new FuenteEstadisticas.Filtro(TODOS, 100, Integer.MIN_VALUE, Integer.MAX_VALUE)));
+		Map<Integer, double[]> porCentro = columnas.mediasPor(FuenteEstadisticas.Agrupacion.CENTRO, FuenteEstadisticas.Filtro.todo());
+		// El usuario 12 no tiene centro y su intento, sin resultados, no forma grupo
+		assertEquals(List.of(100, 200), List.copyOf(porCentro.keySet()));
+		assertArrayEquals(new double[]{4, 6, 10}, porCentro.get(100), DELTA);
+	}
+
+	@Test
+	void creceMasAlláDeLaCapacidadInicial() {
+		ColumnasIntentos.Constructor constructor = new ColumnasIntentos.Constructor();
+		for (int i = 0; i < 3000; i++) {
+			constructor.anadir(i % 3, i, "2024-01-01", i + ";1");
+		}
+		ColumnasIntentos columnas = constructor.construir();
+
+		assertEquals(3000, columnas.getFilas());
+		assertArrayEquals(new int[]{0, 1, 2}, columnas.tests());
+		assertEquals(1499.5, columnas.resumir(FuenteEstadisticas.Filtro.todo(), 10).areas()[0].media(), DELTA);
+		assertEquals(0, columnas.centros().length);
+	}
+
+	@Test
+	void unaFechaQueNoSeEntiendeNoAnadeElIntento() {
+		ColumnasIntentos.Constructor constructor = new ColumnasIntentos.Constructor();
+		constructor.anadir(1, 1, "2024-01-01", "1");
+
+		assertThrows(RuntimeException.class, () -> constructor.anadir(1, 2, "15/01/2024", "2"));
+		assertEquals(1, constructor.construir().getFilas());
+	}
+}
@@ -0,0 +1,105 @@
+package ej.Imagenes;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodificadorJpegTest {
+
+	@Test
+	void unaImagenLisaCabeALaPrimeraYSeReduceAlLadoMaximo() throws IOException {
+		BufferedImage jpeg = decodificar(new CodificadorJpeg().codificar(lisa(1200, 600)));
+
+		assertEquals(CodificadorJpeg.MAX_LADO, jpeg.getWidth());
+		assertEquals(CodificadorJpeg.MAX_LADO / 2, jpeg.getHeight());
+	}
+
+	// El ruido no se comprime: a calidad máxima no cabe y hay que buscar una calidad que aproveche el límite
+	@Test
+	void conRuidoBuscaUnaCalidadQueQuepaSinQuedarseCorta() throws IOException {
+		int limite = 12000;
+		String base64 = new CodificadorJpeg(limite, 200).codificar(ruido(200, 200, 1));
+
+		assertTrue(base64.length() <= limite, "ocupa " + base64.length());
+		assertTrue(base64.length() >= limite / 2, "se queda en " + base64.length() + " de " + limite);
+		// Con esta imagen basta con bajar la calidad, sin reducirla
+		assertEquals(200, decodificar(base64).getWidth());
+	}
+
+	@Test
+	void siNiConLaCalidadMinimaCabeReduceLaImagen() throws IOException {
+		int limite = 4000;
+		String base64 = new CodificadorJpeg(limite, 300).codificar(ruido(300, 300, 2));
+
+		assertTrue(base64.length() <= limite, "ocupa " + base64.length());
+		assertTrue(decodificar(base64).getWidth() < 300);
+	}
+
+	@Test
+	void fallaSiNiReducidaAlMinimoCabe() {
+		CodificadorJpeg codificador = new CodificadorJpeg(100, 300);
+
+		assertThrows(IllegalArgumentException.class, () -> codificador.codificar(ruido(300, 300, 3)));
+	}
+
+	@Test
+	void elMismoCodificadorSirveParaVariasImagenes() throws IOException {
+		CodificadorJpeg codificador = new CodificadorJpeg(12000, 200);
+		String primera = codificador.codificar(ruido(200, 200, 4));
+		codificador.codificar(lisa(50, 50));
+
+		assertEquals(primera, codificador.codificar(ruido(200, 200, 4)));
+	}
+
+	@Test
+	void reducirNoAmpliaYConservaLaProporcion() {
+		BufferedImage pequena = lisa(100, 40);
+		assertSame(pequena, CodificadorJpeg.reducir(pequena, 300, 300));
+
+		BufferedImage reducida = CodificadorJpeg.reducir(lisa(4000, 1000), 300, 300);
+		assertEquals(300, reducida.getWidth());
+		assertEquals(75, reducida.getHeight());
+	}
+
+	@Test
+	void reducirQuitaElCanalAlfa() {
+		BufferedImage conAlfa = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+		assertEquals(BufferedImage.TYPE_INT_RGB, CodificadorJpeg.reducir(conAlfa, 300, 300).getType());
+	}
+
+	private static BufferedImage lisa(int ancho, int alto) {
+		BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < alto; y++) {
+			for (int x = 0; x < ancho; x++) {
+				imagen.setRGB(x, y, 0x3070B0);
+			}
+		}
+		return imagen;
+	}
+
+	private static BufferedImage ruido(int ancho, int alto, long semilla) {
+		Random azar = new Random(semilla);
+		BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < alto; y++) {
+			for (int x = 0; x < ancho; x++) {
+				imagen.setRGB(x, y, azar.nextInt(0x1000000));
+			}
+		}
+		return imagen;
+	}
+
+	private static BufferedImage decodificar(String base64) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(base64)));
+	}
+}
@@ -0,0 +1,314 @@
+package ej.Carga;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import ej.API.ClienteApi;
+import ej.Simulador.BaseSimulada;
+import ej.Simulador.Opciones;
+import ej.Simulador.ServidorSimulado;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Carga de una sesión de examen contra la API: alumnos que hacen un test desde
+ * el móvil y profesores con el escritorio. Las sesiones llegan a un ritmo fijo
+ * (bucle abierto, con llegadas de Poisson), cada una en su hilo virtual, sin
+ * esperar a que terminen las anteriores; así un servidor lento acumula
+ * sesiones en vez de frenar la carga.
+ * <ul>
+ * <li>Móvil, como LoginScreen, HomeScreen y TestDetailScreen: login.php,
+ * leer tests; luego tests, preguntas y pxa a la vez; el tiempo de contestar;
+ * insertar.php en intentos y, ya en ResultTestScreen, leer areas.</li>
+ * <li>Escritorio, como los buscar* antiguos: login.php y las tablas usuarios,
+ * tests, preguntas, areas, pxa e intentos enteras.</li>
+ * </ul>
+ * Cada latencia se mide desde que la petición debía salir, no desde que salió,
+ * para que el retraso del propio generador no esconda las colas. Sin
+ * {@code --url} arranca una API simulada en el mismo proceso; para medir el
+ * servidor de verdad conviene arrancarla aparte con {@code gradle simulador}.
+ * <pre>
+ * gradle carga -Popciones="--ritmo 50 --duracion 120 --escritorio 0.02"
+ * gradle carga -Popciones="--url http://staging:8000/crud/ --usuario 12345678Z --contrasena ..."
+ * </pre>
+ */
+public class GeneradorCarga {
+
+	private static final String MOVIL = "móvil ";
+	private static final String ESCRITORIO = "escritorio ";
+	private static final List<String> TABLAS_ESCRITORIO = List.of("usuarios", "tests", "preguntas", "areas", "pxa", "intentos");
+	private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+	private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+	private final ClienteApi api;
+	private final Opciones opciones;
+	private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+	// En el orden del informe
+	private final Map<String, Medidas> medidas = new LinkedHashMap<>();
+	private final AtomicInteger activas = new AtomicInteger();
+	private final AtomicInteger maximoActivas = new AtomicInteger();
+	private final AtomicLong terminadas = new AtomicLong();
+	private final AtomicLong retrasoMaximo = new AtomicLong();
+	private final LongAdder peticiones = new LongAdder();
+
+	private static final class Medidas {
+		final Histograma latencias = new Histograma();
+		final LongAdder errores = new LongAdder();
+	}
+
+	@FunctionalInterface
+	private interface Llamada {
+		ClienteApi.Respuesta hacer() throws IOException;
+	}
+
+	GeneradorCarga(ClienteApi api, Opciones opciones) {
+		this.api = api;
+		this.opciones = opciones;
+		for (String nombre : List.of("login.php", "leer tests (inicio)", "leer tests", "leer preguntas", "leer pxa",
+				"insertar intentos", "leer areas", "sesión")) {
+			medidas.put(MOVIL + nombre, new Medidas());
+		}
+		medidas.put(ESCRITORIO + "login.php", new Medidas());
+		for (String tabla : TABLAS_ESCRITORIO) {
+			medidas.put(ESCRITORIO + "leer " + tabla, new Medidas());
+		}
+		medidas.put(ESCRITORIO + "sesión", new Medidas());
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> porDefecto = new LinkedHashMap<>();
+		porDefecto.put("url", "");
+		porDefecto.put("ritmo", "20");
+		porDefecto.put("duracion", "60");
+		porDefecto.put("calentamiento", "10");
+		porDefecto.put("escritorio", "0.05");
+		porDefecto.put("pensar", "0");
+		porDefecto.put("poisson", "true");
+		porDefecto.put("espera", "30");
+		porDefecto.put("usuario", "");
+		porDefecto.put("contrasena", "");
+		porDefecto.putAll(ServidorSimulado.enlacePorDefecto());
+		porDefecto.putAll(Opciones.dimensionesPorDefecto());
+		Opciones opciones = Opciones.leer(args, porDefecto);
+
+		ServidorSimulado simulado = null;
+		String url = opciones.texto("url");
+		if (url.isEmpty()) {
+			simulado = new ServidorSimulado(0, new BaseSimulada(opciones.dimensiones()), opciones.enlace());
+			url = simulado.getUrl();
+			System.out.println("API simulada en el mismo proceso: " + url + " " + opciones.enlace());
+		}
+		try {
+			new GeneradorCarga(new ClienteApi(url, Duration.ofSeconds(5), Duration.ofSeconds(60), false), opciones).ejecutar();
+		} finally {
+			if (simulado != null) {
+				simulado.close();
+			}
+		}
+	}
+
+	void ejecutar() throws InterruptedException {
+		double ritmo = opciones.decimal("ritmo");
+		long intervalo = (long) (1_000_000_000L / ritmo);
+		long calentamiento = TimeUnit.SECONDS.toNanos(opciones.entero("calentamiento"));
+		long duracion = TimeUnit.SECONDS.toNanos(opciones.entero("duracion"));
+		double escritorio = opciones.decimal("escritorio");
+		boolean poisson = Boolean.parseBoolean(opciones.texto("poisson"));
+		Random azar = new Random(opciones.entero("semilla"));
+
+		ScheduledExecutorService progreso = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+		long inicio = System.nanoTime();
+		progreso.scheduleAtFixedRate(() -> System.out.printf(Locale.ROOT, "%4d s: %d sesiones activas, %d terminadas, %d peticiones%n",
+						TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - inicio), activas.get(), terminadas.get(), peticiones.sum()),
+				5, 5, TimeUnit.SECONDS);
+
+		long lanzadas = 0;
+		long llegada = inicio;
+		long fin = inicio + calentamiento + duracion;
+		while (llegada < fin) {
+			long ahora;
+			while ((ahora = System.nanoTime()) < llegada) {
+				LockSupport.parkNanos(llegada - ahora);
+			}
+			retrasoMaximo.accumulateAndGet(ahora - llegada, Math::max);
+			long prevista = llegada;
+			boolean anotar = prevista - inicio >= calentamiento;
+			boolean deEscritorio = azar.nextDouble() < escritorio;
+			long semilla = azar.nextLong();
+			hilos.execute(() -> sesion(prevista, anotar, deEscritorio, new Random(semilla)));
+			lanzadas++;
+			llegada += poisson ? (long) (-Math.log(1 - azar.nextDouble()) * intervalo) : intervalo;
+		}
+		hilos.shutdown();
+		boolean todas = hilos.awaitTermination(opciones.entero("espera"), TimeUnit.SECONDS);
+		progreso.shutdownNow();
+		informe(ritmo, lanzadas, TimeUnit.NANOSECONDS.toSeconds(duracion), todas);
+		hilos.shutdownNow();
+	}
+
+	private void sesion(long prevista, boolean anotar, boolean deEscritorio, Random azar) {
+		maximoActivas.accumulateAndGet(activas.incrementAndGet(), Math::max);
+		try {
+			if (deEscritorio) {
+				sesionEscritorio(prevista, anotar);
+			} else {
+				sesionMovil(prevista, anotar, azar);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			activas.decrementAndGet();
+			terminadas.incrementAndGet();
+		}
+	}
+
+	private void sesionMovil(long prevista, boolean anotar, Random azar) throws InterruptedException {
+		int usuarios = (int) opciones.entero("usuarios");
+		int alumno = usuarios == 1 ? 1 : 2 + azar.nextInt(usuarios - 1);
+		// En la BaseSimulada los usuarios múltiplos de 25 son profesores
+		if (alumno % 25 == 0 && alumno < usuarios) {
+			alumno++;
+		}
+		String credenciales = credenciales(alumno);
+		ClienteApi.Respuesta login = medir(MOVIL + "login.php", prevista, anotar, () -> api.post("login.php", credenciales));
+		int idUsuario = idUsuario(login);
+
+		ClienteApi.Respuesta tests = medir(MOVIL + "leer tests (inicio)", System.nanoTime(), anotar, () -> api.get("leer.php?tabla=tests"));
+		int idTest = testAlAzar(tests, azar);
+
+		// TestDetailScreen pide las tres a la vez al abrirse
+		long abierta = System.nanoTime();
+		List<Thread> lecturas = new ArrayList<>();
+		for (String tabla : List.of("tests", "preguntas", "pxa")) {
+			lecturas.add(Thread.ofVirtual().start(() -> medir(MOVIL + "leer " + tabla, abierta, anotar, () -> api.get("leer.php?tabla=" + tabla))));
+		}
+		for (Thread lectura : lecturas) {
+			lectura.join();
+		}
+
+		long pensar = opciones.entero("pensar");
+		if (pensar > 0) {
+			Thread.sleep(pensar / 2 + azar.nextLong(pensar + 1));
+		}
+		// Como la app: sin usuario identificado el intento no se guarda
+		if (idUsuario > 0 && idTest > 0) {
+			String intento = intento(idTest, idUsuario, resultados(azar));
+			medir(MOVIL + "insertar intentos", System.nanoTime(), anotar, () -> api.post("insertar.php", intento));
+		}
+		medir(MOVIL + "leer areas", System.nanoTime(), anotar, () -> api.get("leer.php?tabla=areas"));
+		if (anotar) {
+			medidas.get(MOVIL + "sesión").latencias.anotar((System.nanoTime() - prevista) / 1000);
+		}
+	}
+
+	private void sesionEscritorio(long prevista, boolean anotar) {
+		medir(ESCRITORIO + "login.php", prevista, anotar, () -> api.post("login.php", credenciales(1)));
+		for (String tabla : TABLAS_ESCRITORIO) {
+			medir(ESCRITORIO + "leer " + tabla, System.nanoTime(), anotar, () -> api.get("leer.php?tabla=" + tabla));
+		}
+		if (anotar) {
+			medidas.get(ESCRITORIO + "sesión").latencias.anotar((System.nanoTime() - prevista) / 1000);
+		}
+	}
+
+	// Null si falló la conexión; un estado distinto de 200 o un login rechazado cuentan como error
+	private ClienteApi.Respuesta medir(String nombre, long prevista, boolean anotar, Llamada llamada) {
+		peticiones.increment();
+		ClienteApi.Respuesta respuesta = null;
+		boolean error;
+		try {
+			respuesta = llamada.hacer();
+			error = !respuesta.esOk() || (nombre.endsWith("login.php") && !respuesta.cuerpo().contains("\"success\""));
+		} catch (IOException e) {
+			error = true;
+		}
+		if (anotar) {
+			Medidas m = medidas.get(nombre);
+			m.latencias.anotar((System.nanoTime() - prevista) / 1000);
+			if (error) {
+				m.errores.increment();
+			}
+		}
+		return respuesta;
+	}
+
+	private String credenciales(int usuario) {
+		JsonObject login = new JsonObject();
+		boolean fijas = !opciones.texto("usuario").isEmpty();
+		login.addProperty("usuario", fijas ? opciones.texto("usuario") : BaseSimulada.dni(usuario));
+		login.addProperty("contrasena", fijas ? opciones.texto("contrasena") : BaseSimulada.contrasena(usuario));
+		return login.toString();
+	}
+
+	private static int idUsuario(ClienteApi.Respuesta login) {
+		try {
+			JsonObject cuerpo = JsonParser.parseString(login.cuerpo()).getAsJsonObject();
+			return "success".equals(cuerpo.get("status").getAsString()) ? cuerpo.get("id").getAsInt() : 0;
+		} catch (RuntimeException e) {
+			return 0;
+		}
+	}
+
+	private static int testAlAzar(ClienteApi.Respuesta tests, Random azar) {
+		try {
+			List<Integer> ids = new ArrayList<>();
+			for (JsonElement test : JsonParser.parseString(tests.cuerpo()).getAsJsonObject().getAsJsonArray("tests")) {
+				ids.add(test.getAsJsonObject().get("id").getAsInt());
+			}
+			return ids.isEmpty() ? 0 : ids.get(azar.nextInt(ids.size()));
+		} catch (RuntimeException e) {
+			return 0;
+		}
+	}
+
+	// El cuerpo de insertar.php que manda TestDetailScreen
+	private static String intento(int idTest, int idUsuario, String resultados) {
+		LocalDateTime ahora = LocalDateTime.now();
+		JsonObject datos = new JsonObject();
+		datos.addProperty("idtest", idTest);
+		datos.addProperty("idusuario", idUsuario);
+		datos.addProperty("fecha", ahora.format(FECHA));
+		datos.addProperty("hora", ahora.format(HORA));
+		datos.addProperty("resultados", resultados);
+		JsonObject intento = new JsonObject();
+		intento.addProperty("tabla", "intentos");
+		intento.add("datos", datos);
+		return intento.toString();
+	}
+
+	private String resultados(Random azar) {
+		StringJoiner valores = new StringJoiner(";");
+		for (int area = 0; area < opciones.entero("areas"); area++) {
+			valores.add(String.format(Locale.ROOT, "%.1f", azar.nextInt(101) / 10.0));
+		}
+		return valores.toString();
+	}
+
+	private void informe(double ritmo, long lanzadas, long segundos, boolean todas) {
+		System.out.printf(Locale.ROOT, "%nSesiones: %d lanzadas a %.1f/s, %d terminadas%s; como mucho %d a la vez; retraso máximo del generador %.1f ms%n",
+				lanzadas, ritmo, terminadas.get(), todas ? "" : " (las demás no acabaron a tiempo)", maximoActivas.get(),
+				retrasoMaximo.get() / 1e6);
+		System.out.printf(Locale.ROOT, "Medido durante %d s, sin el calentamiento. Latencias en ms desde que la petición debía salir%n%n", segundos);
+		System.out.printf(Locale.ROOT, "%-32s %8s %8s %8s %9s %9s %9s %9s %9s %9s%n",
+				"", "n", "errores", "por s", "media", "p50", "p90", "p99", "p99.9", "máx");
+		medidas.forEach((nombre, m) -> {
+			Histograma h = m.latencias;
+			if (h.total() == 0) {
+				return;
+			}
+			System.out.printf(Locale.ROOT, "%-32s %8d %8d %8.1f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+					nombre, h.total(), m.errores.sum(), (double) h.total() / Math.max(1, segundos), h.media() / 1000,
+					h.percentil(0.5) / 1000.0, h.percentil(0.9) / 1000.0, h.percentil(0.99) / 1000.0,
+					h.percentil(0.999) / 1000.0, h.maximo() / 1000.0);
+		});
+	}
+}
@@ -0,0 +1,84 @@
+package ej.Carga;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias en microsegundos al estilo de HdrHistogram: cubetas
+ * exactas hasta {@link #LINEALES} µs y, por encima, 64 cubetas por cada
+ * potencia de dos, así que cualquier percentil sale con menos de un 2 % de
+ * error sin guardar las muestras. Se puede anotar desde muchos hilos a la vez.
+ */
+final class Histograma {
+
+	static final int LINEALES = 128;
+	private static final int SUBCUBETAS = 64;
+	// Por encima de 2^36 µs (unas 19 horas) todo va a la última cubeta
+	private static final int MAGNITUD_MAXIMA = 36;
+
+	private final AtomicLongArray cuentas = new AtomicLongArray(LINEALES + (MAGNITUD_MAXIMA - 6) * SUBCUBETAS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong suma = new AtomicLong();
+	private final AtomicLong maximo = new AtomicLong();
+
+	void anotar(long micros) {
+		long valor = Math.max(0, micros);
+		cuentas.incrementAndGet(cubeta(valor));
+		total.incrementAndGet();
+		suma.addAndGet(valor);
+		maximo.accumulateAndGet(valor, Math::max);
+	}
+
+	long total() {
+		return total.get();
+	}
+
+	long maximo() {
+		return maximo.get();
+	}
+
+	double media() {
+		long n = total.get();
+		return n == 0 ? 0 : (double) suma.get() / n;
+	}
+
+	// El valor por debajo del cual queda esa fracción de las muestras (0.99 es el p99); 0 si no hay ninguna
+	long percentil(double fraccion) {
+		long n = total.get();
+		if (n == 0) {
+			return 0;
+		}
+		long objetivo = Math.max(1, (long) Math.ceil(fraccion * n));
+		long acumuladas = 0;
+		for (int i = 0; i < cuentas.length(); i++) {
+			acumuladas += cuentas.get(i);
+			if (acumuladas >= objetivo) {
+				return Math.min(techo(i), maximo.get());
+			}
+		}
+		return maximo.get();
+	}
+
+	private static int cubeta(long valor) {
+		if (valor < LINEALES) {
+			return (int) valor;
+		}
+		int magnitud = 63 - Long.numberOfLeadingZeros(valor);
+		if (magnitud >= MAGNITUD_MAXIMA) {
+			return LINEALES + (MAGNITUD_MAXIMA - 7) * SUBCUBETAS + SUBCUBETAS - 1;
+		}
+		int sub = (int) (valor >>> (magnitud - 6)) & (SUBCUBETAS - 1);
+		return LINEALES + (magnitud - 7) * SUBCUBETAS + sub;
+	}
+
+	// El mayor valor que cae en la cubeta
+	private static long techo(int cubeta) {
+		if (cubeta < LINEALES) {
+			return cubeta;
+		}
+		int magnitud = 7 + (cubeta - LINEALES) / SUBCUBETAS;
+		int sub = (cubeta - LINEALES) % SUBCUBETAS;
+		long inicio = (1L << magnitud) + ((long) sub << (magnitud - 6));
+		return inicio + (1L << (magnitud - 6)) - 1;
+	}
+}
@@ -0,0 +1,473 @@
+package ej.Simulador;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Las tablas de la base de datos en memoria, con datos sintéticos del tamaño
+ * que se pida y siempre iguales para la misma semilla. Hace lo que hacen
+ * API/tablas/*.php y basedatos/Cambios.php: cada escritura apunta una versión,
+ * los borrados arrastran a las filas hijas y las lecturas se contestan como
+ * leer.php, con los valores en texto como los devuelve mysqli.
+ * <p>
+ * Para poder entrar con login.php, la contraseña de cada usuario es
+ * {@link #contrasena(int)} y el usuario 1 es un profesor orientador.
+ */
+public class BaseSimulada {
+
+	// Con más filas cambiadas que esto, since devuelve la tabla entera (como $maxCambios en leer.php)
+	static final int MAX_CAMBIOS = 1000;
+	static final int MAX_LOTE = 1000;
+
+	private static final Map<String, List<String>> COLUMNAS = Map.of(
+			"usuarios", List.of("id", "nombre", "email", "contraseña", "foto", "tipo_usuario", "fecha_nacimiento", "dni", "is_orientador", "id_centro"),
+			"areas", List.of("id", "nombre", "descripción", "logo"),
+			"preguntas", List.of("id", "idtest", "enunciado", "titulo"),
+			"intentos", List.of("id", "idtest", "idusuario", "fecha", "hora", "resultados"),
+			"pxa", List.of("id", "idpregunta", "idarea"),
+			"tests", List.of("id", "nombretest", "isVisible"),
+			"centros", List.of("id", "comunidad_autonoma", "provincia", "localidad", "denominacion_generica", "denominacion_especifica",
+					"codigo", "naturaleza", "domicilio", "codigo_postal", "telefono", "telefono_secundario"));
+
+	// Al borrar una fila desaparecen las que apuntan a ella, como con las claves ajenas en cascada
+	private static final Map<String, Map<String, String>> DEPENDIENTES = Map.of(
+			"usuarios", Map.of("intentos", "idusuario"),
+			"tests", Map.of("preguntas", "idtest", "intentos", "idtest"),
+			"preguntas", Map.of("pxa", "idpregunta"),
+			"areas", Map.of("pxa", "idarea"));
+
+	private static final Set<String> CON_LOTE = Set.of("pxa");
+
+	// Las filas no se modifican una vez guardadas: actualizar pone un mapa nuevo, así que una lectura puede
+	// serializarlas fuera del candado
+	private final Map<String, TreeMap<Integer, Map<String, String>>> tablas = new HashMap<>();
+	// Posición i: tabla e id tocados en la versión i + 1. La primera es la carga inicial
+	private final List<Cambio> cambios = new ArrayList<>();
+	private final ReadWriteLock candado = new ReentrantReadWriteLock();
+
+	public BaseSimulada(Dimensiones dimensiones) {
+		for (String tabla : COLUMNAS.keySet()) {
+			tablas.put(tabla, new TreeMap<>());
+		}
+		generar(dimensiones);
+		cambios.add(new Cambio("", 0));
+	}
+
+	public record Dimensiones(int centros, int tests, int preguntas, int areas, int usuarios, int intentos, long semilla) {
+
+		// Un centro grande
+		public static final Dimensiones POR_DEFECTO = new Dimensiones(10, 20, 600, 5, 5_000, 50_000, 42);
+
+		public Dimensiones {
+			if (centros < 1 || tests < 1 || areas < 1 || usuarios < 1 || preguntas < 0 || intentos < 0) {
+				throw new IllegalArgumentException("Hace falta al menos un centro, un test, un área y un usuario");
+			}
+		}
+	}
+
+	// Petición que leer.php o los demás rechazan con 400
+	public static class PeticionNoValida extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		public PeticionNoValida(String mensaje) {
+			super(mensaje);
+		}
+	}
+
+	public static String nombreUsuario(int id) {
+		return "Alumno " + id + " Núñez";
+	}
+
+	public static String dni(int id) {
+		return String.format(Locale.ROOT, "%08d", 10_000_000 + id) + (char) ('A' + id % 23);
+	}
+
+	public static String contrasena(int id) {
+		return "Clave." + id;
+	}
+
+	public static boolean existe(String tabla) {
+		return COLUMNAS.containsKey(tabla);
+	}
+
+	public long version() {
+		candado.readLock().lock();
+		try {
+			return cambios.size();
+		} finally {
+			candado.readLock().unlock();
+		}
+	}
+
+	public int filas(String tabla) {
+		candado.readLock().lock();
+		try {
+			return tablas.get(tabla).size();
+		} finally {
+			candado.readLock().unlock();
+		}
+	}
+
+	// La respuesta de leer.php para esos parámetros, lista para pasar a JSON; las ramas son las mismas
+	public Map<String, Object> leer(String tabla, Map<String, String> parametros) throws PeticionNoValida {
+		if (!existe(tabla)) {
+			throw new PeticionNoValida("Tabla no reconocida o no especificada");
+		}
+		candado.readLock().lock();
+		try {
+			TreeMap<Integer, Map<String, String>> filas = tablas.get(tabla);
+			List<String> campos = campos(tabla, parametros.get("fields"));
+			Map<String, Object> respuesta = new LinkedHashMap<>();
+			boolean paginada = parametros.containsKey("limit") || parametros.containsKey("offset")
+					|| parametros.containsKey("after_id") || parametros.containsKey("fields");
+			boolean filtrada = parametros.containsKey("dni") || parametros.containsKey("id_centro") || parametros.containsKey("localidad")
+					|| parametros.containsKey("ultima") || parametros.containsKey("idpregunta");
+
+			if (parametros.containsKey("since")) {
+				int desde = entero(parametros.get("since"), 0, Integer.MAX_VALUE, "Parámetro since no válido");
+				long version = cambios.size();
+				Set<Integer> cambiadas = desde > 0 && desde <= version ? idsCambiados(tabla, desde) : null;
+				if (cambiadas != null && cambiadas.size() <= MAX_CAMBIOS) {
+					List<Map<String, String>> leidas = new ArrayList<>();
+					List<Integer> borrados = new ArrayList<>();
+					for (int id : cambiadas) {
+						Map<String, String> fila = filas.get(id);
+						if (fila == null) {
+							borrados.add(id);
+						} else {
+							leidas.add(proyectar(fila, campos));
+						}
+					}
+					respuesta.put(tabla, leidas);
+					respuesta.put("version", version);
+					respuesta.put("delta", true);
+					respuesta.put("borrados", borrados);
+				} else {
+					respuesta.put(tabla, proyectar(filas.values(), campos));
+					respuesta.put("version", version);
+					respuesta.put("delta", false);
+				}
+				return respuesta;
+			}
+
+			List<Map<String, String>> resultado;
+			if (parametros.containsKey("nombre") && Set.of("usuarios", "tests", "areas").contains(tabla)) {
+				String columna = tabla.equals("tests") ? "nombretest" : "nombre";
+				// Como leerPorTexto: distingue mayúsculas salvo con mayusculas=no
+				String nombre = parametros.get("nombre");
+				boolean distinguir = !"no".equals(parametros.get("mayusculas"));
+				resultado = proyectar(filas.values().stream()
+						.filter(fila -> distinguir ? nombre.equals(fila.get(columna)) : nombre.equalsIgnoreCase(fila.get(columna))).toList(), campos);
+			} else if (paginada && !filtrada) {
+				Integer limite = parametros.containsKey("limit") ? entero(parametros.get("limit"), 1, 1000, "Parámetros de paginación no válidos") : null;
+				Integer desplazamiento = parametros.containsKey("offset") ? entero(parametros.get("offset"), 0, Integer.MAX_VALUE, "Parámetros de paginación no válidos") : null;
+				Integer despuesDe = parametros.containsKey("after_id") ? entero(parametros.get("after_id"), 0, Integer.MAX_VALUE, "Parámetros de paginación no válidos") : null;
+				if (desplazamiento != null && limite == null) {
+					throw new PeticionNoValida("Parámetros de paginación no válidos");
+				}
+				Collection<Map<String, String>> elegidas;
+				if (parametros.containsKey("id")) {
+					Map<String, String> fila = filas.get(enteroLibre(parametros.get("id")));
+					elegidas = fila == null ? List.of() : List.of(fila);
+				} else {
+					elegidas = despuesDe != null ? filas.tailMap(despuesDe, false).values() : filas.values();
+				}
+				resultado = proyectar(elegidas.stream()
+						.skip(limite != null && desplazamiento != null ? desplazamiento : 0)
+						.limit(limite != null ? limite : Long.MAX_VALUE)
+						.toList(), campos);
+			} else if (parametros.containsKey("id")) {
+				Map<String, String> fila = filas.get(enteroLibre(parametros.get("id")));
+				resultado = fila == null ? List.of() : List.of(fila);
+			} else if (tabla.equals("usuarios") && parametros.containsKey("dni")) {
+				resultado = donde(filas, "dni", parametros.get("dni"));
+			} else if (tabla.equals("usuarios") && parametros.containsKey("id_centro")) {
+				resultado = donde(filas, "id_centro", parametros.get("id_centro"));
+			} else if (tabla.equals("centros") && parametros.containsKey("localidad")) {
+				resultado = proyectar(donde(filas, "localidad", parametros.get("localidad")), List.of("denominacion_especifica", "id"));
+			} else if (tabla.equals("intentos") && parametros.containsKey("id_centro")) {
+				TreeMap<Integer, Map<String, String>> usuarios = tablas.get("usuarios");
+				String centro = parametros.get("id_centro");
+				resultado = filas.values().stream().filter(intento -> {
+					Map<String, String> usuario = usuarios.get(enteroLibre(intento.get("idusuario")));
+					return usuario != null && centro.equals(usuario.get("id_centro"));
+				}).toList();
+			} else if (tabla.equals("preguntas") && "true".equals(parametros.get("ultima"))) {
+				resultado = filas.isEmpty() ? List.of() : List.of(filas.lastEntry().getValue());
+			} else if (tabla.equals("pxa") && parametros.containsKey("idpregunta")) {
+				resultado = donde(filas, "idpregunta", parametros.get("idpregunta"));
+			} else {
+				resultado = List.copyOf(filas.values());
+			}
+			respuesta.put(tabla, resultado);
+			return respuesta;
+		} finally {
+			candado.readLock().unlock();
+		}
+	}
+
+	// Devuelve el id de la fila nueva
+	public int insertar(String tabla, Map<String, Object> datos) throws PeticionNoValida {
+		comprobarTabla(tabla);
+		candado.writeLock().lock();
+		try {
+			TreeMap<Integer, Map<String, String>> filas = tablas.get(tabla);
+			int id = filas.isEmpty() ? 1 : filas.lastKey() + 1;
+			Map<String, String> fila = new LinkedHashMap<>();
+			for (String columna : COLUMNAS.get(tabla)) {
+				Object valor = columna.equals("id") ? id : datos.get(columna);
+				fila.put(columna, valor == null ? "" : texto(valor));
+			}
+			filas.put(id, fila);
+			registrar(tabla, id);
+			return id;
+		} finally {
+			candado.writeLock().unlock();
+		}
+	}
+
+	// Como el UPDATE de MySQL, actualizar una fila que no existe no es un error
+	public void actualizar(String tabla, int id, Map<String, Object> datos) throws PeticionNoValida {
+		comprobarTabla(tabla);
+		candado.writeLock().lock();
+		try {
+			TreeMap<Integer, Map<String, String>> filas = tablas.get(tabla);
+			Map<String, String> actual = filas.get(id);
+			if (actual != null) {
+				Map<String, String> fila = new LinkedHashMap<>(actual);
+				datos.forEach((columna, valor) -> {
+					// Usuario.php no toca las columnas que llegan vacías
+					if (fila.containsKey(columna) && !columna.equals("id") && valor != null && !texto(valor).isEmpty()) {
+						fila.put(columna, texto(valor));
+					}
+				});
+				filas.put(id, fila);
+			}
+			registrar(tabla, id);
+		} finally {
+			candado.writeLock().unlock();
+		}
+	}
+
+	public void borrar(String tabla, int id) throws PeticionNoValida {
+		comprobarTabla(tabla);
+		candado.writeLock().lock();
+		try {
+			borrarEnCascada(tabla, id);
+		} finally {
+			candado.writeLock().unlock();
+		}
+	}
+
+	// Como lote.php: todas las operaciones o ninguna. Devuelve cuántas se aplicaron
+	public int aplicarLote(String tabla, List<Map<String, Object>> operaciones) throws PeticionNoValida {
+		if (!CON_LOTE.contains(tabla)) {
+			throw new PeticionNoValida("Tabla no reconocida o no admite lotes.");
+		}
+		if (operaciones.isEmpty() || operaciones.size() > MAX_LOTE) {
+			throw new PeticionNoValida("Se esperaban entre 1 y " + MAX_LOTE + " operaciones.");
+		}
+		for (int posicion = 0; posicion < operaciones.size(); posicion++) {
+			if (!Set.of("insertar", "actualizar", "borrar").contains(String.valueOf(operaciones.get(posicion).get("op")))) {
+				throw new PeticionNoValida("Operación desconocida en la posición " + posicion);
+			}
+		}
+		candado.writeLock().lock();
+		try {
+			for (Map<String, Object> operacion : operaciones) {
+				@SuppressWarnings("unchecked")
+				Map<String, Object> datos = operacion.get("datos") instanceof Map<?, ?> m ? (Map<String, Object>) m : Map.of();
+				int id = datos.get("id") == null ? 0 : enteroLibre(texto(datos.get("id")));
+				switch (String.valueOf(operacion.get("op"))) {
+					case "insertar" -> insertar(tabla, datos);
+					case "actualizar" -> actualizar(tabla, id, datos);
+					default -> borrar(tabla, id);
+				}
+			}
+			return operaciones.size();
+		} finally {
+			candado.writeLock().unlock();
+		}
+	}
+
+	// La fila del usuario si el usuario (email o DNI) y la contraseña coinciden; null si no
+	public Map<String, String> login(String usuario, String contrasena) {
+		String columna = usuario.contains("@") ? "email" : "dni";
+		candado.readLock().lock();
+		try {
+			for (Map<String, String> fila : tablas.get("usuarios").values()) {
+				if (usuario.equals(fila.get(columna))) {
+					return contrasena.equals(fila.get("contraseña")) ? fila : null;
+				}
+			}
+			return null;
+		} finally {
+			candado.readLock().unlock();
+		}
+	}
+
+	private void borrarEnCascada(String tabla, int id) {
+		TreeMap<Integer, Map<String, String>> filas = tablas.get(tabla);
+		if (filas.remove(id) == null) {
+			return;
+		}
+		registrar(tabla, id);
+		for (Map.Entry<String, String> hija : DEPENDIENTES.getOrDefault(tabla, Map.of()).entrySet()) {
+			String valor = String.valueOf(id);
+			List<Integer> ids = tablas.get(hija.getKey()).values().stream()
+					.filter(fila -> valor.equals(fila.get(hija.getValue())))
+					.map(fila -> enteroLibre(fila.get("id")))
+					.toList();
+			for (int idHija : ids) {
+				borrarEnCascada(hija.getKey(), idHija);
+			}
+		}
+	}
+
+	private void registrar(String tabla, int id) {
+		cambios.add(new Cambio(tabla, id));
+	}
+
+	private Set<Integer> idsCambiados(String tabla, int desde) {
+		Set<Integer> ids = new TreeSet<>();
+		for (Cambio cambio : cambios.subList(desde, cambios.size())) {
+			if (cambio.tabla().equals(tabla)) {
+				ids.add(cambio.id());
+			}
+		}
+		return ids;
+	}
+
+	private static void comprobarTabla(String tabla) throws PeticionNoValida {
+		if (!existe(tabla)) {
+			throw new PeticionNoValida("Tabla no reconocida o no especificada.");
+		}
+	}
+
+	// Solo columnas que existen, y siempre el id, como columnasPedidas() de Paginacion.php; null si son todas
+	private static List<String> campos(String tabla, String fields) {
+		if (fields == null || fields.isBlank()) {
+			return null;
+		}
+		List<String> pedidas = new ArrayList<>(List.of("id"));
+		for (String campo : fields.split(",")) {
+			campo = campo.trim();
+			if (COLUMNAS.get(tabla).contains(campo) && !pedidas.contains(campo)) {
+				pedidas.add(campo);
+			}
+		}
+		return pedidas;
+	}
+
+	private static List<Map<String, String>> proyectar(Collection<Map<String, String>> filas, List<String> campos) {
+		if (campos == null) {
+			return List.copyOf(filas);
+		}
+		List<Map<String, String>> proyectadas = new ArrayList<>(filas.size());
+		for (Map<String, String> fila : filas) {
+			proyectadas.add(proyectar(fila, campos));
+		}
+		return proyectadas;
+	}
+
+	private static Map<String, String> proyectar(Map<String, String> fila, List<String> campos) {
+		if (campos == null) {
+			return fila;
+		}
+		Map<String, String> proyectada = new LinkedHashMap<>();
+		for (String campo : campos) {
+			proyectada.put(campo, fila.get(campo));
+		}
+		return proyectada;
+	}
+
+	private static List<Map<String, String>> donde(TreeMap<Integer, Map<String, String>> filas, String columna, String valor) {
+		return filas.values().stream().filter(fila -> valor.equals(fila.get(columna))).toList();
+	}
+
+	private static int entero(String valor, int minimo, int maximo, String error) throws PeticionNoValida {
+		try {
+			int n = Integer.parseInt(valor.trim());
+			if (n >= minimo && n <= maximo) {
+				return n;
+			}
+		} catch (NumberFormatException e) {
+			// Igual que FILTER_VALIDATE_INT: cae en el 400
+		}
+		throw new PeticionNoValida(error);
+	}
+
+	// Como el (int) de PHP: lo que no es un número vale 0
+	private static int enteroLibre(String valor) {
+		try {
+			return Integer.parseInt(valor.trim());
+		} catch (NumberFormatException | NullPointerException e) {
+			return 0;
+		}
+	}
+
+	// Los números de un JSON llegan como Double: 3.0 se guarda como "3"
+	private static String texto(Object valor) {
+		if (valor instanceof Double d && d == Math.rint(d) && !d.isInfinite()) {
+			return String.valueOf(d.longValue());
+		}
+		return String.valueOf(valor);
+	}
+
+	private void generar(Dimensiones d) {
+		Random azar = new Random(d.semilla());
+		for (int i = 1; i <= d.centros(); i++) {
+			poner("centros", i, "Andalucía", "Cádiz", "Localidad " + (1 + i % 3), "Instituto de Educación Secundaria",
+					"IES Centro " + i, String.valueOf(11_000_000 + i), "Público", "Calle Mayor " + i,
+					String.valueOf(11_000 + i), String.format(Locale.ROOT, "956%06d", i), null);
+		}
+		for (int i = 1; i <= d.tests(); i++) {
+			poner("tests", i, "Test de orientación " + i, i % 4 == 0 ? "0" : "1");
+		}
+		for (int i = 1; i <= d.areas(); i++) {
+			poner("areas", i, "Área " + i, "Profesiones y estudios del área " + i, "");
+		}
+		for (int i = 1; i <= d.preguntas(); i++) {
+			poner("preguntas", i, String.valueOf(1 + i % d.tests()),
+					"¿Te gustaría trabajar en algo relacionado con la pregunta " + i + "? Valora del 0 al 10 cuánto te atrae.",
+					"Pregunta " + i);
+		}
+		// Cada pregunta en una o dos áreas
+		int pxa = 1;
+		for (int pregunta = 1; pregunta <= d.preguntas(); pregunta++) {
+			for (int area = 1; area <= Math.min(1 + pregunta % 2, d.areas()); area++) {
+				poner("pxa", pxa++, String.valueOf(pregunta), String.valueOf(1 + (pregunta + area) % d.areas()));
+			}
+		}
+		for (int i = 1; i <= d.usuarios(); i++) {
+			boolean profesor = i == 1 || i % 25 == 0;
+			poner("usuarios", i, nombreUsuario(i), "alumno" + i + "@centro" + (1 + i % d.centros()) + ".es", contrasena(i), "",
+					profesor ? "Profesor" : "Alumno", String.valueOf(2005 + i % 6), dni(i),
+					i == 1 || (profesor && i % 100 == 0) ? "1" : "0", String.valueOf(1 + i % d.centros()));
+		}
+		for (int i = 1; i <= d.intentos(); i++) {
+			StringBuilder resultados = new StringBuilder();
+			for (int area = 0; area < d.areas(); area++) {
+				resultados.append(area == 0 ? "" : ";").append(azar.nextInt(101) / 10.0);
+			}
+			poner("intentos", i, String.valueOf(1 + azar.nextInt(d.tests())), String.valueOf(1 + azar.nextInt(d.usuarios())),
+					String.format(Locale.ROOT, "2024-%02d-%02d", 1 + azar.nextInt(12), 1 + azar.nextInt(28)),
+					String.format(Locale.ROOT, "%02d:%02d:00", 8 + azar.nextInt(7), azar.nextInt(60)),
+					resultados.toString());
+		}
+	}
+
+	private void poner(String tabla, int id, String... valores) {
+		List<String> columnas = COLUMNAS.get(tabla);
+		Map<String, String> fila = new LinkedHashMap<>();
+		fila.put("id", String.valueOf(id));
+		for (int i = 0; i < valores.length; i++) {
+			fila.put(columnas.get(i + 1), valores[i]);
+		}
+		tablas.get(tabla).put(id, fila);
+	}
+
+	private record Cambio(String tabla, int id) {
+	}
+}
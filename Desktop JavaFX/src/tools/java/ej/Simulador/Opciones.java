@@ -0,0 +1,68 @@
+package ej.Simulador;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opciones {@code --nombre valor} de las herramientas de línea de órdenes
+ * (el servidor simulado, el generador de carga). Solo se aceptan las que
+ * tienen valor por defecto; con una desconocida se muestra la lista y se sale.
+ */
+public final class Opciones {
+
+	private final Map<String, String> valores;
+
+	private Opciones(Map<String, String> valores) {
+		this.valores = valores;
+	}
+
+	public static Opciones leer(String[] args, Map<String, String> porDefecto) {
+		Map<String, String> valores = new LinkedHashMap<>(porDefecto);
+		for (int i = 0; i < args.length; i += 2) {
+			String opcion = args[i].replaceFirst("^--", "");
+			if (!valores.containsKey(opcion) || i + 1 >= args.length) {
+				System.err.println("Opción no válida: " + args[i]);
+				porDefecto.forEach((nombre, valor) -> System.err.println("  --" + nombre + " (" + (valor.isEmpty() ? "sin valor" : valor) + ")"));
+				System.exit(2);
+			}
+			valores.put(opcion, args[i + 1]);
+		}
+		return new Opciones(valores);
+	}
+
+	public String texto(String nombre) {
+		return valores.get(nombre);
+	}
+
+	public long entero(String nombre) {
+		return Long.parseLong(valores.get(nombre));
+	}
+
+	public double decimal(String nombre) {
+		return Double.parseDouble(valores.get(nombre));
+	}
+
+	// Las dimensiones de la BaseSimulada, con POR_DEFECTO para las que no se den
+	public static Map<String, String> dimensionesPorDefecto() {
+		BaseSimulada.Dimensiones d = BaseSimulada.Dimensiones.POR_DEFECTO;
+		Map<String, String> valores = new LinkedHashMap<>();
+		valores.put("centros", String.valueOf(d.centros()));
+		valores.put("tests", String.valueOf(d.tests()));
+		valores.put("preguntas", String.valueOf(d.preguntas()));
+		valores.put("areas", String.valueOf(d.areas()));
+		valores.put("usuarios", String.valueOf(d.usuarios()));
+		valores.put("intentos", String.valueOf(d.intentos()));
+		valores.put("semilla", String.valueOf(d.semilla()));
+		return valores;
+	}
+
+	public BaseSimulada.Dimensiones dimensiones() {
+		return new BaseSimulada.Dimensiones((int) entero("centros"), (int) entero("tests"), (int) entero("preguntas"),
+				(int) entero("areas"), (int) entero("usuarios"), (int) entero("intentos"), entero("semilla"));
+	}
+
+	// El enlace del ServidorSimulado; kbps en kilobits por segundo como se suele dar una conexión
+	public ServidorSimulado.Enlace enlace() {
+		return new ServidorSimulado.Enlace(entero("latencia"), entero("variacion"), entero("kbps") * 1000 / 8);
+	}
+}
@@ -0,0 +1,347 @@
+package ej.Simulador;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Servidor HTTP local que contesta como API/crud/*.php (leer, insertar,
+ * actualizar, borrar, lote y login) sobre una {@link BaseSimulada}, para medir
+ * el cliente sin el servidor real. Cada respuesta espera la latencia del
+ * {@link Enlace} y sale como mucho a su ancho de banda, así que las mismas
+ * condiciones de red se repiten en cualquier portátil.
+ * <p>
+ * estadisticas.php no está: responde 404 y el cliente calcula las
+ * estadísticas en local, como con un servidor antiguo.
+ * <pre>
+ * gradle simulador -Popciones="--puerto 8080 --latencia 40 --kbps 2000"
+ * gradle run -Papi=http://localhost:8080/crud/
+ * </pre>
+ */
+public class ServidorSimulado implements AutoCloseable {
+
+	private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+	private static final int TROZO = 16 * 1024;
+	// Conexiones pendientes de aceptar: con la cola por defecto una ráfaga del generador de carga se rechaza
+	private static final int COLA_CONEXIONES = 1024;
+
+	private final BaseSimulada base;
+	private final Enlace enlace;
+	private final HttpServer http;
+	private final ExecutorService hilos;
+
+	/**
+	 * Condiciones de red de cada respuesta: espera {@code latenciaMs} más un
+	 * extra al azar de hasta {@code variacionMs} antes de contestar, y envía el
+	 * cuerpo (ya comprimido) a {@code bytesPorSegundo}; 0 es sin límite.
+	 */
+	public record Enlace(long latenciaMs, long variacionMs, long bytesPorSegundo) {
+
+		public static final Enlace SIN_LIMITES = new Enlace(0, 0, 0);
+
+		public Enlace {
+			if (latenciaMs < 0 || variacionMs < 0 || bytesPorSegundo < 0) {
+				throw new IllegalArgumentException("Latencia, variación y ancho de banda no pueden ser negativos");
+			}
+		}
+	}
+
+	// Puerto 0 elige uno libre; getUrl() dice cuál
+	public ServidorSimulado(int puerto, BaseSimulada base, Enlace enlace) throws IOException {
+		this.base = base;
+		this.enlace = enlace;
+		this.http = HttpServer.create(new InetSocketAddress("localhost", puerto), COLA_CONEXIONES);
+		// La latencia se simula durmiendo: con hilos virtuales cada petición en espera no ocupa un hilo del sistema
+		this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+		http.setExecutor(hilos);
+		http.createContext("/crud/", this::atender);
+		http.start();
+	}
+
+	public String getUrl() {
+		return "http://localhost:" + http.getAddress().getPort() + "/crud/";
+	}
+
+	public BaseSimulada getBase() {
+		return base;
+	}
+
+	@Override
+	public void close() {
+		http.stop(0);
+		hilos.shutdownNow();
+	}
+
+	private void atender(HttpExchange intercambio) throws IOException {
+		try (intercambio) {
+			String ruta = intercambio.getRequestURI().getPath();
+			String script = ruta.substring(ruta.lastIndexOf('/') + 1);
+			esperar(enlace.latenciaMs() + (enlace.variacionMs() > 0 ? ThreadLocalRandom.current().nextLong(enlace.variacionMs() + 1) : 0));
+			try {
+				switch (script) {
+					case "leer.php" -> leer(intercambio);
+					case "insertar.php" -> insertar(intercambio);
+					case "actualizar.php" -> actualizar(intercambio);
+					case "borrar.php" -> borrar(intercambio);
+					case "lote.php" -> lote(intercambio);
+					case "login.php" -> login(intercambio);
+					default -> responder(intercambio, 404, Map.of("message", "No existe " + script), null);
+				}
+			} catch (BaseSimulada.PeticionNoValida e) {
+				responder(intercambio, 400, Map.of("status", "error", "message", e.getMessage()), null);
+			} catch (RuntimeException e) {
+				responder(intercambio, 500, Map.of("status", "error", "message", String.valueOf(e.getMessage())), null);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void leer(HttpExchange intercambio) throws IOException, InterruptedException, BaseSimulada.PeticionNoValida {
+		String consulta = intercambio.getRequestURI().getRawQuery();
+		Map<String, String> parametros = parametros(consulta);
+		String tabla = parametros.remove("tabla");
+		if (tabla == null || !BaseSimulada.existe(tabla)) {
+			throw new BaseSimulada.PeticionNoValida("Tabla no reconocida o no especificada");
+		}
+		// El mismo ETag que leer.php con registro de cambios: la versión y la consulta exacta
+		String etag = "\"v" + base.version() + "-" + md5(consulta == null ? "" : consulta) + "\"";
+		if (etagCoincide(intercambio.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+			intercambio.getResponseHeaders().set("ETag", etag);
+			intercambio.sendResponseHeaders(304, -1);
+			return;
+		}
+		Map<String, Object> respuesta = base.leer(tabla, parametros);
+		intercambio.getResponseHeaders().set("Cache-Control", "no-cache");
+		responder(intercambio, 200, respuesta, etag);
+	}
+
+	private void insertar(HttpExchange intercambio) throws IOException, InterruptedException, BaseSimulada.PeticionNoValida {
+		Map<String, Object> datos = cuerpo(intercambio);
+		String tabla = tabla(datos);
+		if (!(datos.get("datos") instanceof Map<?, ?>)) {
+			throw new BaseSimulada.PeticionNoValida("Datos no especificados para la inserción.");
+		}
+		int id = base.insertar(tabla, mapa(datos.get("datos")));
+		responder(intercambio, 200, Map.of("status", "success", "id", id,
+				"message", "El registro de la tabla " + mayuscula(tabla) + " fue creado con éxito."), null);
+	}
+
+	private void actualizar(HttpExchange intercambio) throws IOException, InterruptedException, BaseSimulada.PeticionNoValida {
+		Map<String, Object> datos = cuerpo(intercambio);
+		String tabla = tabla(datos);
+		if (!(datos.get("datos") instanceof Map<?, ?>) || datos.get("id") == null) {
+			throw new BaseSimulada.PeticionNoValida("Datos no especificados para la actualización o ID no proporcionado.");
+		}
+		base.actualizar(tabla, id(datos), mapa(datos.get("datos")));
+		responder(intercambio, 200, Map.of("message", "El registro de la tabla " + mayuscula(tabla) + " fue actualizado con éxito."), null);
+	}
+
+	private void borrar(HttpExchange intercambio) throws IOException, InterruptedException, BaseSimulada.PeticionNoValida {
+		Map<String, Object> datos = cuerpo(intercambio);
+		String tabla = tabla(datos);
+		if (datos.get("id") == null) {
+			throw new BaseSimulada.PeticionNoValida("ID no especificado.");
+		}
+		int id = id(datos);
+		base.borrar(tabla, id);
+		responder(intercambio, 200, Map.of("status", "success", "message", "El registro con ID " + id + " fue borrado con éxito."), null);
+	}
+
+	private void lote(HttpExchange intercambio) throws IOException, InterruptedException, BaseSimulada.PeticionNoValida {
+		Map<String, Object> datos = cuerpo(intercambio);
+		List<Map<String, Object>> operaciones = new ArrayList<>();
+		if (datos.get("operaciones") instanceof List<?> lista) {
+			for (Object operacion : lista) {
+				operaciones.add(mapa(operacion));
+			}
+		}
+		String tabla = String.valueOf(datos.get("tabla"));
+		int aplicadas = base.aplicarLote(tabla, operaciones);
+		responder(intercambio, 200, Map.of("status", "success", "aplicadas", aplicadas,
+				"message", "Se aplicaron " + aplicadas + " operaciones en la tabla " + mayuscula(tabla) + "."), null);
+	}
+
+	// login.php contesta siempre 200; el resultado va en status
+	private void login(HttpExchange intercambio) throws IOException, InterruptedException {
+		Map<String, Object> datos;
+		try {
+			datos = cuerpo(intercambio);
+		} catch (BaseSimulada.PeticionNoValida e) {
+			responder(intercambio, 200, Map.of("status", "error", "message", "JSON inválido"), null);
+			return;
+		}
+		if (datos.get("usuario") == null || datos.get("contrasena") == null) {
+			responder(intercambio, 200, Map.of("status", "error", "message", "Faltan parámetros necesarios"), null);
+			return;
+		}
+		Map<String, String> usuario = base.login(String.valueOf(datos.get("usuario")).trim(), String.valueOf(datos.get("contrasena")).trim());
+		if (usuario == null) {
+			responder(intercambio, 200, Map.of("status", "error", "message", "Credenciales incorrectas"), null);
+			return;
+		}
+		Map<String, Object> respuesta = new LinkedHashMap<>();
+		respuesta.put("status", "success");
+		respuesta.put("message", "Login exitoso");
+		respuesta.put("id", usuario.get("id"));
+		respuesta.put("nombre", usuario.get("nombre"));
+		respuesta.put("dni", usuario.get("dni"));
+		respuesta.put("tipo", usuario.get("tipo_usuario"));
+		respuesta.put("is_orientador", "Profesor".equals(usuario.get("tipo_usuario")) ? usuario.get("is_orientador") : 0);
+		respuesta.put("id_centro", usuario.get("id_centro"));
+		responder(intercambio, 200, respuesta, null);
+	}
+
+	private void responder(HttpExchange intercambio, int estado, Object json, String etag) throws IOException, InterruptedException {
+		intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		if (etag != null) {
+			intercambio.getResponseHeaders().set("ETag", etag);
+		}
+		String aceptada = intercambio.getRequestHeaders().getFirst("Accept-Encoding");
+		boolean gzip = aceptada != null && aceptada.toLowerCase(Locale.ROOT).contains("gzip");
+		if (gzip) {
+			intercambio.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		byte[] cuerpo = GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+		if (gzip) {
+			ByteArrayOutputStream comprimido = new ByteArrayOutputStream(cuerpo.length / 4 + 64);
+			try (GZIPOutputStream salida = new GZIPOutputStream(comprimido)) {
+				salida.write(cuerpo);
+			}
+			cuerpo = comprimido.toByteArray();
+		}
+		intercambio.sendResponseHeaders(estado, cuerpo.length);
+		OutputStream salida = intercambio.getResponseBody();
+		long inicio = System.nanoTime();
+		for (int enviados = 0; enviados < cuerpo.length; enviados += TROZO) {
+			int trozo = Math.min(TROZO, cuerpo.length - enviados);
+			salida.write(cuerpo, enviados, trozo);
+			if (enlace.bytesPorSegundo() > 0) {
+				// Se duerme lo que se haya adelantado respecto al ritmo del enlace
+				long debido = (enviados + trozo) * 1_000_000_000L / enlace.bytesPorSegundo();
+				esperar((debido - (System.nanoTime() - inicio)) / 1_000_000);
+			}
+		}
+	}
+
+	private static void esperar(long ms) throws InterruptedException {
+		if (ms > 0) {
+			Thread.sleep(ms);
+		}
+	}
+
+	private static Map<String, Object> cuerpo(HttpExchange intercambio) throws IOException, BaseSimulada.PeticionNoValida {
+		String texto = new String(intercambio.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+		try {
+			Map<String, Object> datos = GSON.fromJson(texto, new TypeToken<Map<String, Object>>() {
+			}.getType());
+			if (datos == null) {
+				throw new BaseSimulada.PeticionNoValida("JSON inválido");
+			}
+			return datos;
+		} catch (JsonParseException e) {
+			throw new BaseSimulada.PeticionNoValida("JSON inválido");
+		}
+	}
+
+	private static String tabla(Map<String, Object> datos) throws BaseSimulada.PeticionNoValida {
+		Object tabla = datos.get("tabla");
+		if (tabla == null || !BaseSimulada.existe(tabla.toString())) {
+			throw new BaseSimulada.PeticionNoValida("Tabla no reconocida o no especificada.");
+		}
+		return tabla.toString();
+	}
+
+	private static int id(Map<String, Object> datos) throws BaseSimulada.PeticionNoValida {
+		Object id = datos.get("id");
+		try {
+			return id instanceof Number n ? n.intValue() : Integer.parseInt(String.valueOf(id).trim());
+		} catch (NumberFormatException e) {
+			throw new BaseSimulada.PeticionNoValida("ID no válido.");
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> mapa(Object valor) {
+		return valor instanceof Map<?, ?> m ? (Map<String, Object>) m : Map.of();
+	}
+
+	private static Map<String, String> parametros(String consulta) {
+		Map<String, String> parametros = new LinkedHashMap<>();
+		if (consulta == null || consulta.isEmpty()) {
+			return parametros;
+		}
+		for (String par : consulta.split("&")) {
+			int igual = par.indexOf('=');
+			String clave = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+			String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+			parametros.put(clave, valor);
+		}
+		return parametros;
+	}
+
+	// Las mismas reglas que etagCoincide() de Etag.php
+	private static boolean etagCoincide(String cabecera, String etag) {
+		if (cabecera == null) {
+			return false;
+		}
+		for (String candidata : cabecera.split(",")) {
+			candidata = candidata.trim();
+			if (candidata.equals("*") || candidata.equals(etag) || candidata.equals("W/" + etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String md5(String texto) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(texto.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String mayuscula(String tabla) {
+		return Character.toUpperCase(tabla.charAt(0)) + tabla.substring(1);
+	}
+
+	// Opciones del enlace para quien arranque el servidor desde otra herramienta
+	public static Map<String, String> enlacePorDefecto() {
+		Map<String, String> valores = new LinkedHashMap<>();
+		valores.put("latencia", "0");
+		valores.put("variacion", "0");
+		valores.put("kbps", "0");
+		return valores;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> porDefecto = new LinkedHashMap<>();
+		porDefecto.put("puerto", "8080");
+		porDefecto.putAll(enlacePorDefecto());
+		porDefecto.putAll(Opciones.dimensionesPorDefecto());
+		Opciones opciones = Opciones.leer(args, porDefecto);
+		BaseSimulada base = new BaseSimulada(opciones.dimensiones());
+		Enlace enlace = opciones.enlace();
+		ServidorSimulado servidor = new ServidorSimulado((int) opciones.entero("puerto"), base, enlace);
+		Runtime.getRuntime().addShutdownHook(new Thread(servidor::close));
+		System.out.println("API simulada en " + servidor.getUrl() + " (" + base.filas("usuarios") + " usuarios, "
+				+ base.filas("intentos") + " intentos, " + enlace + ")");
+		System.out.println("Usuario orientador: DNI " + BaseSimulada.dni(1) + ", contraseña " + BaseSimulada.contrasena(1));
+	}
+}